@@ -18,11 +18,16 @@
  */
 package com.google.code.tickconverter.application;
 
+import java.io.IOException;
+import java.util.List;
+
 import javax.xml.bind.PropertyException;
 
 import org.apache.commons.cli.ParseException;
 
+import com.google.code.tickconverter.util.AppProperties;
 import com.google.code.tickconverter.util.CommandLineProperties;
+import com.google.code.tickconverter.util.Log;
 
 /**
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
@@ -30,6 +35,18 @@ import com.google.code.tickconverter.util.CommandLineProperties;
 public final class Application
 {
 
+    private static final Log LOG = Log.getLog( Application.class );
+
+    /**
+     * The exit code, if at least one file of a batch couldn't be converted.
+     */
+    public static final int EXIT_FAILED = 1;
+
+    /**
+     * The exit code, if the command line is invalid.
+     */
+    public static final int EXIT_INVALID = 2;
+
     public static void main( final String[] args )
     {
         try
@@ -37,11 +54,40 @@ public final class Application
             CommandLineProperties cmd = new CommandLineProperties( args );
             cmd.loadConfigProperties();
             Controller controller = new Controller();
-            controller.process();
+            if ( AppProperties.isBatch() )
+            {
+                List<ConversionJob> jobs =
+                    BatchProcessor.findJobs( AppProperties.getInputFile(), AppProperties.getOutputFile(),
+                                             AppProperties.getFxtFile() );
+                if ( 0 < new BatchProcessor( controller, jobs, AppProperties.getWorkers() ).process() )
+                {
+                    System.exit( EXIT_FAILED );
+                }
+            }
+            else
+            {
+                controller.process();
+            }
+        }
+        catch ( ParseException e )
+        {
+            // the parser has already printed the error
+            System.exit( EXIT_INVALID );
+        }
+        catch ( PropertyException e )
+        {
+            System.out.println( e.getMessage() );
+            System.exit( EXIT_INVALID );
+        }
+        catch ( IOException e )
+        {
+            LOG.error( "there is an error by searching the input files", e );
+            System.exit( EXIT_FAILED );
         }
-        catch ( ParseException | PropertyException e )
+        catch ( InterruptedException e )
         {
-            // ignore
+            LOG.error( "the conversion was interrupted", e );
+            System.exit( EXIT_FAILED );
         }
     }
 }
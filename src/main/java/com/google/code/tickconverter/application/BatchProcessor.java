@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.PropertyException;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.util.AppProperties;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class converts a batch of {@link ConversionJob}s on a fixed pool of worker threads. Every job is converted by
+ * {@link Controller#convert(ConversionJob)} in one worker thread, so the workers don't compete with the threads of a
+ * single conversion. The status of every job is printed, when the job is finished.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class BatchProcessor
+{
+    private static final Log LOG = Log.getLog( BatchProcessor.class );
+
+    private final Controller controller;
+
+    private final List<ConversionJob> jobs;
+
+    private final int workers;
+
+    /**
+     * Create an object of the class {@link BatchProcessor}.
+     * 
+     * @param controller <br>
+     *            the {@link Controller} to convert a job
+     * @param jobs <br>
+     *            the {@link ConversionJob}s to convert
+     * @param workers <br>
+     *            the number of worker threads
+     */
+    public BatchProcessor( final Controller controller, final List<ConversionJob> jobs, final int workers )
+    {
+        this.controller = controller;
+        this.jobs = jobs;
+        this.workers = workers;
+    }
+
+    /**
+     * Find the csv, gzip and zip files of a directory, including the subdirectories, or the files which match a glob
+     * pattern like <code>data/*&#47;2012*.csv</code>, and create a {@link ConversionJob} for each file.
+     * 
+     * @param input <br>
+     *            a directory or a glob pattern
+     * @param outputTemplate <br>
+     *            the template of the outputfiles
+     * @param fxtTemplate <br>
+     *            the template of the tick files of the strategy tester, or a blank string
+     * @return the {@link ConversionJob}s sorted by the inputfiles
+     * @throws IOException will throws if a directory can't be read
+     * @throws PropertyException will throws if several inputfiles have the same outputfile or tick file
+     * @see ConversionJob#create(Path, String, String)
+     */
+    public static List<ConversionJob> findJobs( final String input, final String outputTemplate,
+                                                final String fxtTemplate )
+        throws IOException, PropertyException
+    {
+        final PathMatcher matcher;
+        Path start;
+        if ( Files.isDirectory( Paths.get( input ) ) )
+        {
+            start = Paths.get( input );
+            matcher = FileSystems.getDefault().getPathMatcher( "glob:**.{csv,gz,zip}" );
+        }
+        else
+        {
+            int glob = StringUtils.indexOfAny( input, AppProperties.GLOB_CHARACTERS );
+            int separator = Math.max( input.lastIndexOf( '/', glob ), input.lastIndexOf( '\\', glob ) );
+            start = Paths.get( input.substring( 0, separator + 1 ) );
+            matcher = FileSystems.getDefault().getPathMatcher( "glob:" + input );
+        }
+
+        final List<Path> inputFiles = new ArrayList<>();
+        if ( Files.isDirectory( start ) )
+        {
+            Files.walkFileTree( start, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( final Path file, final BasicFileAttributes attrs )
+                {
+                    if ( attrs.isRegularFile() && matcher.matches( file ) )
+                    {
+                        inputFiles.add( file );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        Collections.sort( inputFiles );
+
+        List<ConversionJob> jobs = new ArrayList<>();
+        // the workers write the files at the same time, so every file belongs to one job
+        Map<String, ConversionJob> outputFiles = new HashMap<>();
+        for ( Path inputFile : inputFiles )
+        {
+            ConversionJob job = ConversionJob.create( inputFile, outputTemplate, fxtTemplate );
+            checkSameFile( outputFiles, job.getOutputFile(), job );
+            if ( StringUtils.isNotBlank( job.getFxtFile() ) )
+            {
+                checkSameFile( outputFiles, job.getFxtFile(), job );
+            }
+            jobs.add( job );
+        }
+        return jobs;
+    }
+
+    private static void checkSameFile( final Map<String, ConversionJob> outputFiles, final String file,
+                                       final ConversionJob job )
+        throws PropertyException
+    {
+        ConversionJob other = outputFiles.put( file, job );
+        if ( null != other )
+        {
+            throw new PropertyException( "same output file of " + other.getInputFile() + " and "
+                + job.getInputFile() + ": " + file );
+        }
+    }
+
+    /**
+     * Convert all jobs and print the status of every job. The method returns after all jobs are finished.
+     * 
+     * @return the number of failed jobs
+     * @throws InterruptedException will throws if the method was interrupted while waiting for the jobs
+     */
+    public int process()
+        throws InterruptedException
+    {
+        LOG.info( "convert {} files with {} workers", jobs.size(), workers );
+        ExecutorService pool = Executors.newFixedThreadPool( workers );
+        int failed = 0;
+        try
+        {
+            CompletionService<String> completion = new ExecutorCompletionService<>( pool );
+            Map<Future<String>, ConversionJob> futures = new HashMap<>();
+            for ( final ConversionJob job : jobs )
+            {
+                Future<String> future = completion.submit( new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                        throws IOException, ParseException, InterruptedException
+                    {
+                        long start = System.currentTimeMillis();
+                        createDirectories( job );
+                        controller.convert( job );
+                        return "OK     " + job + " (" + ( System.currentTimeMillis() - start ) + " ms)";
+                    }
+                } );
+                futures.put( future, job );
+            }
+            for ( int finished = 0; finished < jobs.size(); finished++ )
+            {
+                Future<String> result = completion.take();
+                try
+                {
+                    System.out.println( result.get() );
+                }
+                catch ( ExecutionException e )
+                {
+                    failed++;
+                    ConversionJob job = futures.get( result );
+                    System.out.println( "FAILED " + job + ": " + e.getCause() );
+                    LOG.error( "there is an error by converting the file: {}", job.getInputFile(), e.getCause() );
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        System.out.println( "converted " + ( jobs.size() - failed ) + " of " + jobs.size() + " files, " + failed
+            + " failed" );
+        return failed;
+    }
+
+    private static void createDirectories( final ConversionJob job )
+        throws IOException
+    {
+        List<String> files = new ArrayList<>();
+        for ( Timeframe timeframe : AppProperties.getTimeframes() )
+        {
+            files.add( job.getOutputFile( timeframe ) );
+        }
+        if ( StringUtils.isNotBlank( job.getFxtFile() ) )
+        {
+            files.add( job.getFxtFile() );
+        }
+        for ( String file : files )
+        {
+            Path parent = Paths.get( file ).toAbsolutePath().getParent();
+            if ( null != parent )
+            {
+                Files.createDirectories( parent );
+            }
+        }
+    }
+}
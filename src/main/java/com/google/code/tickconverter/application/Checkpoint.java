@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.convert.MetatraderConverter;
+import com.google.code.tickconverter.convert.Timeframe;
+
+/**
+ * This class is the state of a conversion at the end of a {@link TickBlock}: the offset of the inputfile after the
+ * converted ticks, and for every {@link Timeframe} the position of the outputfile after the written bars and the
+ * values of the current bar of the {@link MetatraderConverter}. A conversion restarted from a checkpoint writes the
+ * same bytes as a conversion without interruption. The checkpoint is saved as a properties file.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class Checkpoint
+{
+    private static final String INPUT_FILE = "input.file";
+
+    private static final String INPUT_OFFSET = "input.offset";
+
+    private static final String OUTPUT_POSITION = ".output.position";
+
+    private static final String BAR_START = ".bar.start";
+
+    private static final String BAR_TICKS = ".bar.ticks";
+
+    private static final String BAR_DIGITS = ".bar.digits";
+
+    private static final String BAR_OPEN_TIME = ".bar.openTime";
+
+    private static final String BAR_CLOSE_TIME = ".bar.closeTime";
+
+    private static final String BAR_OPEN = ".bar.open";
+
+    private static final String BAR_MAX = ".bar.max";
+
+    private static final String BAR_MIN = ".bar.min";
+
+    private static final String BAR_CLOSE = ".bar.close";
+
+    private static final String BAR_VOLUME = ".bar.volume";
+
+    private static final String LAST_TIME = ".last.time";
+
+    private static final String LAST_ASK = ".last.ask";
+
+    private static final String LAST_BID = ".last.bid";
+
+    private static final String LAST_ASK_VOLUME = ".last.askVolume";
+
+    private static final String LAST_BID_VOLUME = ".last.bidVolume";
+
+    private final Properties properties;
+
+    private Checkpoint( final Properties properties )
+    {
+        this.properties = properties;
+    }
+
+    /**
+     * Create a new checkpoint of the inputfile.
+     * 
+     * @param inputFile <br>
+     *            the name of the inputfile
+     * @param inputOffset <br>
+     *            the offset after the last converted tick
+     */
+    public Checkpoint( final String inputFile, final long inputOffset )
+    {
+        this( new Properties() );
+        properties.setProperty( INPUT_FILE, inputFile );
+        properties.setProperty( INPUT_OFFSET, Long.toString( inputOffset ) );
+    }
+
+    /**
+     * Load a checkpoint from a properties file.
+     * 
+     * @param file <br>
+     *            the file of the checkpoint
+     * @return
+     * @throws IOException will throws if the file can't be read or isn't a checkpoint
+     */
+    public static Checkpoint load( final Path file )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream( file ))
+        {
+            properties.load( in );
+        }
+        Checkpoint checkpoint = new Checkpoint( properties );
+        checkpoint.getInputFile();
+        checkpoint.getInputOffset();
+        return checkpoint;
+    }
+
+    /**
+     * Save the checkpoint into a properties file. The file is replaced atomically, so a crash leaves the previous or
+     * the new checkpoint.
+     * 
+     * @param file <br>
+     *            the file of the checkpoint
+     * @throws IOException will throws if the file can't be written
+     */
+    public void save( final Path file )
+        throws IOException
+    {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling( absolute.getFileName() + ".tmp" );
+        try (OutputStream out = Files.newOutputStream( temp ))
+        {
+            properties.store( out, "checkpoint of the conversion" );
+        }
+        Files.move( temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Returns the name of the inputfile.
+     * 
+     * @return
+     * @throws IOException will throws if the value is missing
+     */
+    public String getInputFile()
+        throws IOException
+    {
+        return get( INPUT_FILE );
+    }
+
+    /**
+     * Returns the offset of the inputfile after the last converted tick.
+     * 
+     * @return
+     * @throws IOException will throws if the value is missing or invalid
+     */
+    public long getInputOffset()
+        throws IOException
+    {
+        return getLong( INPUT_OFFSET );
+    }
+
+    /**
+     * Set the state of a {@link Timeframe}.
+     * 
+     * @param timeframe <br>
+     *            the {@link Timeframe}
+     * @param outputPosition <br>
+     *            the position of the outputfile after the written bars
+     * @param converter <br>
+     *            the {@link MetatraderConverter} with the current bar, or <code>null</code> if no tick was converted
+     */
+    public void setTimeframe( final Timeframe timeframe, final long outputPosition,
+                              final MetatraderConverter converter )
+    {
+        properties.setProperty( timeframe + OUTPUT_POSITION, Long.toString( outputPosition ) );
+        if ( null == converter )
+        {
+            return;
+        }
+        properties.setProperty( timeframe + BAR_START, Long.toString( converter.getStartMillis() ) );
+        properties.setProperty( timeframe + BAR_TICKS, Integer.toString( converter.getTickCount() ) );
+        properties.setProperty( timeframe + BAR_DIGITS, Integer.toString( converter.getDigits() ) );
+        properties.setProperty( timeframe + BAR_OPEN_TIME, Long.toString( converter.getOpenTime() ) );
+        properties.setProperty( timeframe + BAR_CLOSE_TIME, Long.toString( converter.getCloseTime() ) );
+        // the string of a double is parsed to the same value, so the restarted bar is equal
+        properties.setProperty( timeframe + BAR_OPEN, Double.toString( converter.getOpen() ) );
+        properties.setProperty( timeframe + BAR_MAX, Double.toString( converter.getMax() ) );
+        properties.setProperty( timeframe + BAR_MIN, Double.toString( converter.getMin() ) );
+        properties.setProperty( timeframe + BAR_CLOSE, Double.toString( converter.getClose() ) );
+        properties.setProperty( timeframe + BAR_VOLUME, Double.toString( converter.getVolume() ) );
+        // the last tick skips its duplicate after the restart like in an uninterrupted conversion
+        properties.setProperty( timeframe + LAST_TIME, Long.toString( converter.getLastTime() ) );
+        properties.setProperty( timeframe + LAST_ASK, Long.toString( converter.getLastAsk() ) );
+        properties.setProperty( timeframe + LAST_BID, Long.toString( converter.getLastBid() ) );
+        properties.setProperty( timeframe + LAST_ASK_VOLUME, Double.toString( converter.getLastAskVolume() ) );
+        properties.setProperty( timeframe + LAST_BID_VOLUME, Double.toString( converter.getLastBidVolume() ) );
+    }
+
+    /**
+     * Returns the position of the outputfile of the {@link Timeframe} after the written bars.
+     * 
+     * @param timeframe
+     * @return
+     * @throws IOException will throws if the {@link Timeframe} wasn't converted at the checkpoint
+     */
+    public long getOutputPosition( final Timeframe timeframe )
+        throws IOException
+    {
+        return getLong( timeframe + OUTPUT_POSITION );
+    }
+
+    /**
+     * Create a {@link MetatraderConverter} with the current bar of the {@link Timeframe}.
+     * 
+     * @param timeframe
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @return the converter, or <code>null</code> if no tick was converted
+     * @throws IOException will throws if a value is invalid
+     */
+    public MetatraderConverter createConverter( final Timeframe timeframe, final DateTimeZone zone )
+        throws IOException
+    {
+        if ( null == properties.getProperty( timeframe + BAR_START ) )
+        {
+            return null;
+        }
+        // the checkpoints without digits have double prices
+        int digits =
+            null == properties.getProperty( timeframe + BAR_DIGITS ) ? TickBlock.FLOATING
+                            : (int) getLong( timeframe + BAR_DIGITS );
+        MetatraderConverter converter =
+            new MetatraderConverter( timeframe, getLong( timeframe + BAR_START ), digits, zone );
+        // the checkpoints without the last tick don't skip a duplicate, the time of no tick matches
+        boolean lastTick = null != properties.getProperty( timeframe + LAST_TIME );
+        converter.restore( (int) getLong( timeframe + BAR_TICKS ), getLong( timeframe + BAR_OPEN_TIME ),
+                           getLong( timeframe + BAR_CLOSE_TIME ), getDouble( timeframe + BAR_OPEN ),
+                           getDouble( timeframe + BAR_MAX ), getDouble( timeframe + BAR_MIN ),
+                           getDouble( timeframe + BAR_CLOSE ), getDouble( timeframe + BAR_VOLUME ),
+                           lastTick ? getLong( timeframe + LAST_TIME ) : Long.MIN_VALUE,
+                           lastTick ? getLong( timeframe + LAST_ASK ) : 0,
+                           lastTick ? getLong( timeframe + LAST_BID ) : 0,
+                           lastTick ? getDouble( timeframe + LAST_ASK_VOLUME ) : 0,
+                           lastTick ? getDouble( timeframe + LAST_BID_VOLUME ) : 0 );
+        return converter;
+    }
+
+    private String get( final String key )
+        throws IOException
+    {
+        String value = properties.getProperty( key );
+        if ( null == value )
+        {
+            throw new IOException( "the checkpoint has no value of " + key );
+        }
+        return value;
+    }
+
+    private long getLong( final String key )
+        throws IOException
+    {
+        try
+        {
+            return Long.parseLong( get( key ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IOException( "the checkpoint has an invalid value of " + key, e );
+        }
+    }
+
+    private double getDouble( final String key )
+        throws IOException
+    {
+        try
+        {
+            return Double.parseDouble( get( key ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new IOException( "the checkpoint has an invalid value of " + key, e );
+        }
+    }
+}
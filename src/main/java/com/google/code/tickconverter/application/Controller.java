@@ -18,9 +18,18 @@
  */
 package com.google.code.tickconverter.application;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.commons.lang.StringUtils;
@@ -31,13 +40,28 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 import org.apache.log4j.PropertyConfigurator;
+import org.joda.time.DateTime;
 
-import com.google.code.tickconverter.bean.IDukascopyRO;
 import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.TickBlock;
 import com.google.code.tickconverter.convert.ConvertAdapter;
+import com.google.code.tickconverter.convert.TickListener;
+import com.google.code.tickconverter.convert.TimeShift;
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.io.DukascopyBi5Reader;
 import com.google.code.tickconverter.io.DukascopyCsvReader;
+import com.google.code.tickconverter.io.InputFormat;
 import com.google.code.tickconverter.io.MetatraderCsvWriter;
+import com.google.code.tickconverter.io.MetatraderFxtWriter;
+import com.google.code.tickconverter.io.MetatraderHstWriter;
+import com.google.code.tickconverter.io.MetatraderWriter;
+import com.google.code.tickconverter.io.ParallelDukascopyReader;
+import com.google.code.tickconverter.io.TickCacheReader;
 import com.google.code.tickconverter.util.AppProperties;
+import com.google.code.tickconverter.util.ExecutionMode;
+import com.google.code.tickconverter.util.Log;
+import com.google.code.tickconverter.util.SpscRingBuffer;
+import com.google.code.tickconverter.util.WaitStrategy;
 
 /**
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
@@ -45,6 +69,8 @@ import com.google.code.tickconverter.util.AppProperties;
 public final class Controller
 {
 
+    private static final Log LOG = Log.getLog( Controller.class );
+
     /**
      * Default constructor and configure the logging framework for the application
      */
@@ -70,23 +96,293 @@ public final class Controller
         }
     }
 
+    private static <E> BlockingQueue<E> createQueue( final int capacity )
+    {
+        WaitStrategy waitStrategy = AppProperties.getWaitStrategy();
+        if ( null == waitStrategy )
+        {
+            return new LinkedBlockingQueue<>( capacity );
+        }
+        return new SpscRingBuffer<>( capacity, waitStrategy );
+    }
+
+    private DukascopyCsvReader createReader( final BlockingQueue<TickBlock> dukasQueue, final ConversionJob job )
+    {
+        DukascopyCsvReader reader;
+        if ( InputFormat.BI5 == AppProperties.getInputFormat() )
+        {
+            // the integer prices of the binary files have the digits of Dukascopy, independent of the history file
+            reader =
+                new DukascopyBi5Reader( dukasQueue, job.getInputFile(), AppProperties.getParallelism(),
+                                        DukascopyBi5Reader.getDigits( job.getSymbol() ) );
+        }
+        else if ( 0 < AppProperties.getParallelism() && !DukascopyCsvReader.isCompressed( job.getInputFile() ) )
+        {
+            reader =
+                new ParallelDukascopyReader( dukasQueue, job.getInputFile(), AppProperties.getParallelism() );
+        }
+        else
+        {
+            reader = new DukascopyCsvReader( dukasQueue, job.getInputFile() );
+        }
+        reader.setBatchSize( AppProperties.getBatchSize() );
+        Path cacheDirectory = AppProperties.getCacheDirectory();
+        if ( null != cacheDirectory )
+        {
+            reader =
+                new TickCacheReader( dukasQueue, reader, TickCacheReader.getCacheFile( cacheDirectory,
+                                                                                       job.getInputFile() ) );
+        }
+        if ( AppProperties.isFixedPoint() )
+        {
+            reader.setPriceDigits( AppProperties.getDigits( job.getSymbol() ) );
+        }
+        reader.setZone( job.getZone() );
+        return reader;
+    }
+
+    private MetatraderWriter createWriter( final BlockingQueue<IMetatraderRO> metatraderQueue,
+                                          final Timeframe timeframe, final ConversionJob job )
+    {
+        String outputFile = job.getOutputFile( timeframe );
+        MetatraderWriter writer;
+        switch ( AppProperties.getFormat() )
+        {
+            case HST400:
+                writer =
+                    new MetatraderHstWriter( metatraderQueue, outputFile, MetatraderHstWriter.VERSION_400,
+                                             job.getSymbol(), timeframe.getMinutes(),
+                                             AppProperties.getDigits( job.getSymbol() ) );
+                break;
+            case HST401:
+                writer =
+                    new MetatraderHstWriter( metatraderQueue, outputFile, MetatraderHstWriter.VERSION_401,
+                                             job.getSymbol(), timeframe.getMinutes(),
+                                             AppProperties.getDigits( job.getSymbol() ) );
+                break;
+            default:
+                writer = new MetatraderCsvWriter( metatraderQueue, outputFile );
+        }
+        // at least one thread compresses gzip files, so the writer encodes the next bars meanwhile
+        writer.setCompressionThreads( Math.max( 1, AppProperties.getParallelism() ) );
+        writer.setBatchSize( AppProperties.getBarBatchSize() );
+        writer.setZone( job.getZone() );
+        return writer;
+    }
+
+    private TickListener createTickListener( final Timeframe timeframe, final ConversionJob job )
+    {
+        if ( StringUtils.isBlank( job.getFxtFile() ) )
+        {
+            return null;
+        }
+        MetatraderFxtWriter fxtWriter =
+            new MetatraderFxtWriter( job.getFxtFile(), job.getSymbol(), timeframe.getMinutes(),
+                                     AppProperties.getDigits( job.getSymbol() ) );
+        fxtWriter.setZone( job.getZone() );
+        return fxtWriter;
+    }
+
+    /**
+     * Create the {@link TimeShift} into the time of the broker with a table of the transitions of the time window.
+     * 
+     * @param job <br>
+     *            the {@link ConversionJob}, whose time zone is the zone of the time window
+     * @return the {@link TimeShift}, or <code>null</code> if the times aren't shifted
+     */
+    private TimeShift createTimeShift( final ConversionJob job )
+    {
+        if ( !AppProperties.isTimeShifted() )
+        {
+            return null;
+        }
+        return new TimeShift( AppProperties.getTimeZone(), AppProperties.getOffset(),
+                              AppProperties.getFromTime( job.getZone() ), AppProperties.getToTime( job.getZone() ) );
+    }
+
+    /**
+     * Set the time window of the reader to the times of the command line. On append the reader starts at the latest of
+     * the start time and the start of the earliest last bar of the existing outputfiles, and the resume time of the
+     * writers is set to this bar. The partial last bars are replaced, the bars of the other timeframes after this time
+     * too. The bars are in the time of the broker, so the reader starts at the first tick shifted into this bar.
+     */
+    private void resume( final DukascopyCsvReader reader, final Collection<MetatraderWriter> writers,
+                         final TimeShift timeShift )
+        throws IOException
+    {
+        reader.setEndTime( AppProperties.getToTime( reader.getZone() ) );
+        long startTime = AppProperties.getFromTime( reader.getZone() );
+        if ( AppProperties.isAppend() )
+        {
+            long resumeTime = Long.MAX_VALUE;
+            for ( MetatraderWriter writer : writers )
+            {
+                resumeTime = Math.min( resumeTime, writer.readLastBarTime() );
+            }
+            LOG.info( "resume at {}",
+                      Long.MIN_VALUE == resumeTime ? "the beginning" : new DateTime( resumeTime, reader.getZone() ) );
+            for ( MetatraderWriter writer : writers )
+            {
+                writer.setResumeTime( resumeTime );
+            }
+            startTime = Math.max( startTime, null == timeShift ? resumeTime : timeShift.unshift( resumeTime ) );
+        }
+        reader.setStartTime( startTime );
+    }
+
+    /**
+     * Returns whether the {@link ConversionJob} is converted by a {@link FusedPipeline} in the thread of the caller.
+     * 
+     * @param job <br>
+     *            the {@link ConversionJob} to convert
+     * @return <code>true</code> for a checkpoint, the {@link ExecutionMode#FUSED} or a small inputfile
+     */
+    static boolean isFused( final ConversionJob job )
+    {
+        if ( null != AppProperties.getCheckpointFile() )
+        {
+            // only the single thread has a consistent state between two blocks
+            return true;
+        }
+        switch ( AppProperties.getMode() )
+        {
+            case FUSED:
+                return true;
+            case THREADS:
+                return false;
+            default:
+                try
+                {
+                    return Files.size( Paths.get( job.getInputFile() ) ) <= AppProperties.getFusedSize();
+                }
+                catch ( IOException e )
+                {
+                    return false;
+                }
+        }
+    }
+
+    /**
+     * Method to start the convert process. Small inputfiles, the {@link ExecutionMode#FUSED} and conversions with
+     * checkpoints are converted in the thread of the caller by a {@link FusedPipeline}, otherwise the process runs in
+     * independent threads.
+     * 
+     * @see #processThreads(ConversionJob)
+     * @see FusedPipeline#process()
+     */
+    public void process()
+    {
+        ConversionJob job =
+            new ConversionJob( AppProperties.getInputFile(), AppProperties.getOutputFile(),
+                               AppProperties.getFxtFile() );
+        try
+        {
+            if ( isFused( job ) )
+            {
+                createFusedPipeline( job ).run();
+            }
+            else
+            {
+                processThreads( job );
+            }
+        }
+        catch ( IOException e )
+        {
+            LOG.error( "there is an error by reading the existing output files", e );
+        }
+    }
+
     /**
-     * Method to start the convert process in three indipendent different threads.
+     * Convert the inputfile of the {@link ConversionJob} by a {@link FusedPipeline} in the thread of the caller.
      * 
+     * @param job <br>
+     *            the {@link ConversionJob} to convert
+     * @throws IOException will throws if any I/O errors where occur of the process
+     * @throws ParseException will throws if a line isn't a valid tick
+     * @throws InterruptedException will throws if the process was interrupted
+     */
+    public void convert( final ConversionJob job )
+        throws IOException, ParseException, InterruptedException
+    {
+        createFusedPipeline( job ).process();
+    }
+
+    private FusedPipeline createFusedPipeline( final ConversionJob job )
+        throws IOException
+    {
+        Map<Timeframe, MetatraderWriter> writers = new EnumMap<>( Timeframe.class );
+        for ( Timeframe timeframe : AppProperties.getTimeframes() )
+        {
+            // the fused writers get the bars without a queue
+            writers.put( timeframe, createWriter( null, timeframe, job ) );
+        }
+        DukascopyCsvReader reader = createReader( null, job );
+        TimeShift timeShift = createTimeShift( job );
+        resume( reader, writers.values(), timeShift );
+        FusedPipeline pipeline = new FusedPipeline( reader, writers );
+        pipeline.setTimeShift( timeShift );
+        pipeline.setZone( job.getZone() );
+        Timeframe timeframe = AppProperties.getTimeframes().get( 0 );
+        TickListener tickListener = createTickListener( timeframe, job );
+        if ( null != tickListener )
+        {
+            pipeline.setTickListener( timeframe, tickListener );
+        }
+        if ( null != AppProperties.getCheckpointFile() )
+        {
+            pipeline.setCheckpoint( AppProperties.getCheckpointFile(), AppProperties.getCheckpointSize() );
+        }
+        return pipeline;
+    }
+
+    /**
+     * Method to start the convert process in indipendent different threads. The ticks are read and converted in one
+     * thread each, and every configured {@link Timeframe} is written by his own writer thread. The tick file of the
+     * strategy tester is written by the convert thread. The queues between the threads are bounded, so a stage waits
+     * if the following stage is slower and the memory doesn't grow with the size of the inputfile. Every queue has
+     * exactly one producer and one consumer, so a lock-free {@link SpscRingBuffer} can be used instead of a
+     * {@link LinkedBlockingQueue}.
+     * 
+     * @param job <br>
+     *            the {@link ConversionJob} to convert
+     * @throws IOException will throws if the existing outputfiles can't be read to append the bars
      * @see DukascopyCsvReader#read()
      * @see ConvertAdapter#convertProcess()
-     * @see MetatraderCsvWriter#write()
+     * @see MetatraderWriter#write()
      */
-    public void process()
+    public void processThreads( final ConversionJob job )
+        throws IOException
     {
-        LinkedBlockingQueue<IDukascopyRO> dukasQueue = new LinkedBlockingQueue<>();
-        LinkedBlockingQueue<IMetatraderRO> metatraderQueue = new LinkedBlockingQueue<>();
-        Thread reader = new Thread( new DukascopyCsvReader( dukasQueue, AppProperties.getInputFile() ) );
-        Thread convert = new Thread( new ConvertAdapter( dukasQueue, metatraderQueue ) );
-        Thread writer = new Thread( new MetatraderCsvWriter( metatraderQueue, AppProperties.getOutputFile() ) );
+        BlockingQueue<TickBlock> dukasQueue = createQueue( AppProperties.getTickQueueCapacity() );
+        Map<Timeframe, BlockingQueue<IMetatraderRO>> metatraderQueues = new EnumMap<>( Timeframe.class );
+        List<MetatraderWriter> writers = new ArrayList<>();
+        for ( Timeframe timeframe : AppProperties.getTimeframes() )
+        {
+            BlockingQueue<IMetatraderRO> metatraderQueue = createQueue( AppProperties.getBarQueueCapacity() );
+            metatraderQueues.put( timeframe, metatraderQueue );
+            writers.add( createWriter( metatraderQueue, timeframe, job ) );
+        }
+        DukascopyCsvReader dukascopyReader = createReader( dukasQueue, job );
+        TimeShift timeShift = createTimeShift( job );
+        resume( dukascopyReader, writers, timeShift );
+        Thread reader = new Thread( dukascopyReader );
+        ConvertAdapter convertAdapter = new ConvertAdapter( dukasQueue, metatraderQueues );
+        convertAdapter.setTimeShift( timeShift );
+        convertAdapter.setZone( job.getZone() );
+        convertAdapter.setBatchSize( AppProperties.getTickBatchSize() );
+        Timeframe timeframe = AppProperties.getTimeframes().get( 0 );
+        TickListener tickListener = createTickListener( timeframe, job );
+        if ( null != tickListener )
+        {
+            convertAdapter.setTickListener( timeframe, tickListener );
+        }
+        Thread convert = new Thread( convertAdapter );
 
         reader.start();
         convert.start();
-        writer.start();
+        for ( MetatraderWriter writer : writers )
+        {
+            new Thread( writer ).start();
+        }
     }
 }
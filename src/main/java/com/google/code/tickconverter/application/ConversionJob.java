@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.nio.file.Path;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.io.DukascopyCsvReader;
+import com.google.code.tickconverter.util.AppProperties;
+
+/**
+ * This class describes the conversion of one inputfile: the inputfile, the outputfile of the bars, the optional tick
+ * file of the strategy tester, the symbol and the time zone of the ticks and bars. The other settings of the
+ * conversion are taken from the {@link AppProperties}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class ConversionJob
+{
+    /**
+     * The placeholder of the outputfile for the name of the inputfile without extension.
+     */
+    public static final String NAME = "{name}";
+
+    /**
+     * The placeholder of the outputfile for the name of the directory of the inputfile.
+     */
+    public static final String PARENT = "{parent}";
+
+    /**
+     * The placeholder of the outputfile for the symbol.
+     */
+    public static final String SYMBOL = "{symbol}";
+
+    private final String inputFile;
+
+    private final String outputFile;
+
+    private final String fxtFile;
+
+    private final String symbol;
+
+    private final DateTimeZone zone;
+
+    /**
+     * Create an object of the class {@link ConversionJob} in the time zone of the {@link AppProperties}.
+     * 
+     * @param inputFile <br>
+     *            the csv file of the ticks
+     * @param outputFile <br>
+     *            the outputfile of the bars
+     * @param fxtFile <br>
+     *            the tick file of the strategy tester, or a blank string
+     * @see AppProperties#getZone()
+     */
+    public ConversionJob( final String inputFile, final String outputFile, final String fxtFile )
+    {
+        this( inputFile, outputFile, fxtFile, AppProperties.getZone() );
+    }
+
+    /**
+     * Create an object of the class {@link ConversionJob}.
+     * 
+     * @param inputFile <br>
+     *            the csv file of the ticks
+     * @param outputFile <br>
+     *            the outputfile of the bars
+     * @param fxtFile <br>
+     *            the tick file of the strategy tester, or a blank string
+     * @param zone <br>
+     *            the time zone of the timestamps of the inputfile and of the bars
+     */
+    public ConversionJob( final String inputFile, final String outputFile, final String fxtFile,
+                          final DateTimeZone zone )
+    {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.fxtFile = StringUtils.defaultString( fxtFile );
+        this.symbol = AppProperties.getSymbol( inputFile );
+        this.zone = zone;
+    }
+
+    /**
+     * Create a {@link ConversionJob} of an inputfile, whose outputfiles are build by templates. The placeholders
+     * {@link #NAME}, {@link #PARENT} and {@link #SYMBOL} of the templates are replaced by the values of the inputfile.
+     * 
+     * @param inputFile <br>
+     *            the csv file of the ticks
+     * @param outputTemplate <br>
+     *            the template of the outputfile, like <code>out/{parent}/{name}.hst</code>
+     * @param fxtTemplate <br>
+     *            the template of the tick file of the strategy tester, or a blank string
+     * @return
+     */
+    public static ConversionJob create( final Path inputFile, final String outputTemplate, final String fxtTemplate )
+    {
+        String input = inputFile.toString();
+        String name = inputFile.getFileName().toString();
+        if ( name.toLowerCase().endsWith( DukascopyCsvReader.GZIP_EXTENSION ) )
+        {
+            name = name.substring( 0, name.length() - DukascopyCsvReader.GZIP_EXTENSION.length() );
+        }
+        if ( 0 < name.lastIndexOf( '.' ) )
+        {
+            name = name.substring( 0, name.lastIndexOf( '.' ) );
+        }
+        Path parent = inputFile.toAbsolutePath().getParent();
+        String parentName = null == parent || null == parent.getFileName() ? "" : parent.getFileName().toString();
+        String[] placeholders = { NAME, PARENT, SYMBOL };
+        String[] values = { name, parentName, AppProperties.getSymbol( input ) };
+        return new ConversionJob( input, StringUtils.replaceEach( outputTemplate, placeholders, values ),
+                                  StringUtils.replaceEach( fxtTemplate, placeholders, values ) );
+    }
+
+    /**
+     * Returns the csv file of the ticks.
+     * 
+     * @return
+     */
+    public String getInputFile()
+    {
+        return inputFile;
+    }
+
+    /**
+     * Returns the outputfile of the bars.
+     * 
+     * @return
+     */
+    public String getOutputFile()
+    {
+        return outputFile;
+    }
+
+    /**
+     * Returns the outputfile of a timeframe.
+     * 
+     * @param timeframe
+     * @return
+     * @see AppProperties#getOutputFile(String, Timeframe)
+     */
+    public String getOutputFile( final Timeframe timeframe )
+    {
+        return AppProperties.getOutputFile( outputFile, timeframe );
+    }
+
+    /**
+     * Returns the tick file of the strategy tester. If this was not set the return value is a blank string.
+     * 
+     * @return
+     */
+    public String getFxtFile()
+    {
+        return fxtFile;
+    }
+
+    /**
+     * Returns the symbol of the history and tick files.
+     * 
+     * @return
+     */
+    public String getSymbol()
+    {
+        return symbol;
+    }
+
+    /**
+     * Returns the time zone of the timestamps of the inputfile and of the bars.
+     * 
+     * @return
+     */
+    public DateTimeZone getZone()
+    {
+        return zone;
+    }
+
+    @Override
+    public String toString()
+    {
+        return inputFile + " -> " + outputFile;
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.convert.BarHandler;
+import com.google.code.tickconverter.convert.MetatraderConverter;
+import com.google.code.tickconverter.convert.TickConverter;
+import com.google.code.tickconverter.convert.TickListener;
+import com.google.code.tickconverter.convert.TimeShift;
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.io.DukascopyCsvReader;
+import com.google.code.tickconverter.io.MetatraderWriter;
+import com.google.code.tickconverter.io.TickBlockHandler;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class runs the reader, the converter and the writers as one loop in the thread of the caller. Every
+ * {@link TickBlock} is converted directly after it was parsed, and every completed bar is encoded directly into the
+ * buffer of his writer, so there are no queues and no handoff between threads. For small files this costs less than
+ * starting the threads of {@link Controller#process()}. Because all stages run in one thread, the state between two
+ * blocks is consistent and can be saved as a {@link Checkpoint}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class FusedPipeline
+    implements Runnable
+{
+
+    private static final Log LOG = Log.getLog( FusedPipeline.class );
+
+    private final DukascopyCsvReader reader;
+
+    private final Map<Timeframe, MetatraderWriter> writers;
+
+    private final TickConverter converter;
+
+    private Path checkpointFile;
+
+    private long checkpointInterval;
+
+    private long lastCheckpoint;
+
+    /**
+     * Create an object of the class {@link FusedPipeline}.
+     * 
+     * @param reader <br>
+     *            the reader of the inputfile
+     * @param writers <br>
+     *            a writer for each {@link Timeframe} to convert
+     */
+    public FusedPipeline( final DukascopyCsvReader reader, final Map<Timeframe, MetatraderWriter> writers )
+    {
+        this.reader = reader;
+        this.writers = new EnumMap<>( writers );
+        this.converter = new TickConverter( writers.keySet(), new BarHandler()
+        {
+            @Override
+            public void barCompleted( final Timeframe timeframe, final IMetatraderRO bar )
+                throws IOException
+            {
+                FusedPipeline.this.writers.get( timeframe ).append( bar );
+            }
+        } );
+    }
+
+    /**
+     * Set the {@link TickListener} of the bars of the {@link Timeframe}.
+     * 
+     * @param timeframe <br>
+     *            one of the converted {@link Timeframe}s
+     * @param listener <br>
+     *            the {@link TickListener}
+     * @see TickConverter#setTickListener(Timeframe, TickListener)
+     */
+    public void setTickListener( final Timeframe timeframe, final TickListener listener )
+    {
+        converter.setTickListener( timeframe, listener );
+    }
+
+    /**
+     * Set the {@link TimeShift} into the time of the broker.
+     * 
+     * @param timeShift <br>
+     *            the {@link TimeShift}, or <code>null</code> to convert the timestamps of the ticks unchanged
+     * @see TickConverter#setTimeShift(TimeShift)
+     */
+    public void setTimeShift( final TimeShift timeShift )
+    {
+        converter.setTimeShift( timeShift );
+    }
+
+    /**
+     * Set the time zone, in which the bars are aligned.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @see TickConverter#setZone(DateTimeZone)
+     */
+    public void setZone( final DateTimeZone zone )
+    {
+        converter.setZone( zone );
+    }
+
+    /**
+     * Save a {@link Checkpoint} into the file every time the reader has passed the interval of bytes. If the file
+     * exists at the start of {@link #process()}, the conversion restarts at the saved state. The file is deleted after
+     * the inputfile was converted completely.
+     * 
+     * @param file <br>
+     *            the file of the {@link Checkpoint}
+     * @param interval <br>
+     *            the bytes of the inputfile between two checkpoints
+     */
+    public void setCheckpoint( final Path file, final long interval )
+    {
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Read, convert and write the whole inputfile in the thread of the caller.
+     * 
+     * @throws IOException will throws if any I/O errors where occur of the process
+     * @throws ParseException will throws if a line isn't a valid tick
+     * @throws InterruptedException will throws if the process was interrupted
+     */
+    public void process()
+        throws IOException, ParseException, InterruptedException
+    {
+        boolean completed = false;
+        try
+        {
+            if ( null != checkpointFile && Files.exists( checkpointFile ) )
+            {
+                restore( Checkpoint.load( checkpointFile ) );
+            }
+            for ( MetatraderWriter writer : writers.values() )
+            {
+                writer.open();
+            }
+            reader.read( new TickBlockHandler()
+            {
+                @Override
+                public void blockRead( final TickBlock block )
+                    throws IOException, InterruptedException
+                {
+                    converter.addBlock( block );
+                    checkpoint();
+                }
+            } );
+            converter.finish();
+            completed = true;
+        }
+        finally
+        {
+            // the writers write the last buffer and the header by closing, so a failed close is a failed conversion
+            IOException error = close( converter, null );
+            for ( MetatraderWriter writer : writers.values() )
+            {
+                error = close( writer, error );
+            }
+            if ( null != error )
+            {
+                if ( completed )
+                {
+                    throw error;
+                }
+                LOG.error( "there is an error by closing the file", error );
+            }
+        }
+        if ( null != checkpointFile )
+        {
+            Files.deleteIfExists( checkpointFile );
+        }
+    }
+
+    private void restore( final Checkpoint checkpoint )
+        throws IOException
+    {
+        if ( !reader.getFilename().equals( checkpoint.getInputFile() ) )
+        {
+            throw new IOException( "the checkpoint " + checkpointFile + " belongs to the inputfile "
+                + checkpoint.getInputFile() );
+        }
+        for ( Map.Entry<Timeframe, MetatraderWriter> entry : writers.entrySet() )
+        {
+            entry.getValue().setResumePosition( checkpoint.getOutputPosition( entry.getKey() ) );
+            MetatraderConverter barConverter = checkpoint.createConverter( entry.getKey(), converter.getZone() );
+            if ( null != barConverter )
+            {
+                converter.setConverter( entry.getKey(), barConverter );
+            }
+        }
+        lastCheckpoint = checkpoint.getInputOffset();
+        reader.setStartOffset( lastCheckpoint );
+        LOG.info( "restart from checkpoint at byte {}", lastCheckpoint );
+    }
+
+    private void checkpoint()
+        throws IOException
+    {
+        long position = reader.getPosition();
+        if ( null == checkpointFile || 0 > position || position - lastCheckpoint < checkpointInterval )
+        {
+            return;
+        }
+        Checkpoint checkpoint = new Checkpoint( reader.getFilename(), position );
+        for ( Map.Entry<Timeframe, MetatraderWriter> entry : writers.entrySet() )
+        {
+            // the bars must be on the disk before the checkpoint refers to them
+            checkpoint.setTimeframe( entry.getKey(), entry.getValue().flush(),
+                                     converter.getConverter( entry.getKey() ) );
+        }
+        checkpoint.save( checkpointFile );
+        lastCheckpoint = position;
+    }
+
+    private static IOException close( final Closeable closeable, final IOException error )
+    {
+        try
+        {
+            closeable.close();
+            return error;
+        }
+        catch ( IOException e )
+        {
+            if ( null == error )
+            {
+                return e;
+            }
+            error.addSuppressed( e );
+            return error;
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            LOG.info( "start to convert in one thread" );
+            process();
+            LOG.info( "finished converting" );
+        }
+        catch ( IOException | ParseException | InterruptedException e )
+        {
+            LOG.error( "there is an error by converting the file", e );
+        }
+    }
+}
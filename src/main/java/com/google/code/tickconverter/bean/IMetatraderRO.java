@@ -70,4 +70,43 @@ public interface IMetatraderRO
      */
     double getVolume();
 
+    /**
+     * Return the number of digits of the fixed-point prices.
+     * 
+     * @return the digits, or {@link TickBlock#FLOATING} if the prices are only <code>double</code> values
+     */
+    int getDigits();
+
+    /**
+     * Return the open value in points of the digits.
+     * 
+     * @return the open
+     * @see #getDigits()
+     */
+    long getOpenPoints();
+
+    /**
+     * Return the max value in points of the digits.
+     * 
+     * @return the max
+     * @see #getDigits()
+     */
+    long getMaxPoints();
+
+    /**
+     * Return the min value in points of the digits.
+     * 
+     * @return the min
+     * @see #getDigits()
+     */
+    long getMinPoints();
+
+    /**
+     * Return the close value in points of the digits.
+     * 
+     * @return the close
+     * @see #getDigits()
+     */
+    long getClosePoints();
+
 }
\ No newline at end of file
@@ -26,13 +26,20 @@ import org.joda.time.DateTime;
 
 /**
  * This class represent the output bean for the csv file. It includes a timestamp as class {@link DateTime} and many
- * number attributes with the primativ datatype <code>double</code>.
+ * number attributes with the primativ datatype <code>double</code>. A copy of a fixed-point bar keeps the points of
+ * the prices too.
  * 
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
  */
 public class MetatraderBean
     implements IMetatraderRO
 {
+    /**
+     * Marker object which is put into a {@link java.util.concurrent.BlockingQueue} of {@link IMetatraderRO} after the
+     * last bar. It's compared by identity.
+     */
+    public static final IMetatraderRO END_OF_STREAM = new MetatraderBean();
+
     private DateTime timeStamp;
 
     private double open;
@@ -45,6 +52,16 @@ public class MetatraderBean
 
     private double volume;
 
+    private int digits;
+
+    private long openPoints;
+
+    private long maxPoints;
+
+    private long minPoints;
+
+    private long closePoints;
+
     /**
      * Standard constructor to instance a new {@link MetatraderBean} object with the current time and zero values.
      */
@@ -56,6 +73,7 @@ public class MetatraderBean
         min = 0;
         close = 0;
         volume = 0;
+        digits = TickBlock.FLOATING;
     }
 
     /**
@@ -73,6 +91,14 @@ public class MetatraderBean
         min = traderObject.getMin();
         close = traderObject.getClose();
         volume = traderObject.getVolume();
+        digits = traderObject.getDigits();
+        if ( TickBlock.FLOATING != digits )
+        {
+            openPoints = traderObject.getOpenPoints();
+            maxPoints = traderObject.getMaxPoints();
+            minPoints = traderObject.getMinPoints();
+            closePoints = traderObject.getClosePoints();
+        }
     }
 
     /*
@@ -195,6 +221,36 @@ public class MetatraderBean
         this.volume = volume;
     }
 
+    @Override
+    public int getDigits()
+    {
+        return digits;
+    }
+
+    @Override
+    public long getOpenPoints()
+    {
+        return openPoints;
+    }
+
+    @Override
+    public long getMaxPoints()
+    {
+        return maxPoints;
+    }
+
+    @Override
+    public long getMinPoints()
+    {
+        return minPoints;
+    }
+
+    @Override
+    public long getClosePoints()
+    {
+        return closePoints;
+    }
+
     @Override
     public boolean equals( final Object obj )
     {
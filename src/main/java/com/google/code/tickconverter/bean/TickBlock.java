@@ -0,0 +1,480 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.bean;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.joda.time.DateTime;
+
+/**
+ * This class represent a block of ticks of the input csv file. The values are saved in parallel arrays of primitive
+ * datatypes, the timestamp as milliseconds of the epoch and the number attributes as <code>double</code>. So a block
+ * needs only a few objects for some thousand ticks. The {@link #get(int)} method returns a tick as
+ * {@link IDukascopyRO} view.
+ * <p>
+ * A block with a number of digits saves the ask and bid values as fixed-point <code>long</code> points instead, e.g.
+ * 80.928 as 80928 with 3 digits. The <code>double</code> getters divide the points, so every consumer can read such a
+ * block, but the converter can aggregate the points without rounding.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class TickBlock
+{
+    /**
+     * The default number of ticks of one block.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Marker object which is put into a {@link java.util.concurrent.BlockingQueue} of {@link TickBlock} after the last
+     * block of the input. It's compared by identity.
+     */
+    public static final TickBlock END_OF_STREAM = new TickBlock( 0 );
+
+    /**
+     * The digits of a block, which saves the ask and bid values as <code>double</code>.
+     */
+    public static final int FLOATING = -1;
+
+    /**
+     * The maximal number of digits of the fixed-point prices.
+     */
+    public static final int MAX_DIGITS = 9;
+
+    // the bars have one digit more than the ticks, and the powers up to 18 are long values
+    private static final long[] SCALES = new long[19];
+
+    static
+    {
+        SCALES[0] = 1;
+        for ( int i = 1; i < SCALES.length; i++ )
+        {
+            SCALES[i] = SCALES[i - 1] * 10;
+        }
+    }
+
+    private final long[] timeStamps;
+
+    private final int digits;
+
+    private final double[] asks;
+
+    private final double[] bids;
+
+    private final long[] askPoints;
+
+    private final long[] bidPoints;
+
+    private final double[] askVolumes;
+
+    private final double[] bidVolumes;
+
+    private int size;
+
+    /**
+     * Simple constructor to instance a block with the {@link #DEFAULT_CAPACITY}.
+     */
+    public TickBlock()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * This constructor instance a block for the given number of ticks.
+     * 
+     * @param capacity <br>
+     *            the maximum number of ticks of this block
+     */
+    public TickBlock( final int capacity )
+    {
+        this( capacity, FLOATING );
+    }
+
+    /**
+     * This constructor instance a block for the given number of ticks, which saves the ask and bid values as
+     * fixed-point points with the given number of digits after the decimal point.
+     * 
+     * @param capacity <br>
+     *            the maximum number of ticks of this block
+     * @param digits <br>
+     *            the number of digits of the points up to {@link #MAX_DIGITS}, or {@link #FLOATING} for
+     *            <code>double</code> values
+     * @throws IllegalArgumentException will threw if the digits aren't valid
+     */
+    public TickBlock( final int capacity, final int digits )
+    {
+        if ( FLOATING > digits || MAX_DIGITS < digits )
+        {
+            throw new IllegalArgumentException( "invalid number of digits: " + digits );
+        }
+        this.digits = digits;
+        timeStamps = new long[capacity];
+        if ( FLOATING == digits )
+        {
+            asks = new double[capacity];
+            bids = new double[capacity];
+            askPoints = null;
+            bidPoints = null;
+        }
+        else
+        {
+            asks = null;
+            bids = null;
+            askPoints = new long[capacity];
+            bidPoints = new long[capacity];
+        }
+        askVolumes = new double[capacity];
+        bidVolumes = new double[capacity];
+        size = 0;
+    }
+
+    /**
+     * Returns the factor between a price and its points: 10 to the power of the digits.
+     * 
+     * @param digits <br>
+     *            the number of digits up to 18
+     * @return
+     */
+    public static long getScale( final int digits )
+    {
+        return SCALES[digits];
+    }
+
+    /**
+     * Add a tick at the end of this block.
+     * 
+     * @param timeStamp <br>
+     *            the timestamp of the tick in milliseconds of the epoch
+     * @param ask
+     * @param bid
+     * @param askVolume
+     * @param bidVolume
+     * @throws IndexOutOfBoundsException will threw if the block is full
+     */
+    public void add( final long timeStamp, final double ask, final double bid, final double askVolume,
+                     final double bidVolume )
+    {
+        if ( FLOATING != digits )
+        {
+            // the nearest points of the values
+            addPoints( timeStamp, Math.round( ask * SCALES[digits] ), Math.round( bid * SCALES[digits] ), askVolume,
+                       bidVolume );
+            return;
+        }
+        if ( isFull() )
+        {
+            throw new IndexOutOfBoundsException( "the block is full with " + size + " ticks" );
+        }
+        timeStamps[size] = timeStamp;
+        asks[size] = ask;
+        bids[size] = bid;
+        askVolumes[size] = askVolume;
+        bidVolumes[size] = bidVolume;
+        size++;
+    }
+
+    /**
+     * Add a tick with fixed-point prices at the end of this block.
+     * 
+     * @param timeStamp <br>
+     *            the timestamp of the tick in milliseconds of the epoch
+     * @param askPoint <br>
+     *            the ask value in points of the digits of this block
+     * @param bidPoint <br>
+     *            the bid value in points of the digits of this block
+     * @param askVolume
+     * @param bidVolume
+     * @throws IndexOutOfBoundsException will threw if the block is full
+     * @throws IllegalStateException will threw if the block saves <code>double</code> values
+     */
+    public void addPoints( final long timeStamp, final long askPoint, final long bidPoint, final double askVolume,
+                           final double bidVolume )
+    {
+        if ( FLOATING == digits )
+        {
+            throw new IllegalStateException( "the block has no fixed-point prices" );
+        }
+        if ( isFull() )
+        {
+            throw new IndexOutOfBoundsException( "the block is full with " + size + " ticks" );
+        }
+        timeStamps[size] = timeStamp;
+        askPoints[size] = askPoint;
+        bidPoints[size] = bidPoint;
+        askVolumes[size] = askVolume;
+        bidVolumes[size] = bidVolume;
+        size++;
+    }
+
+    /**
+     * Add a tick of another block at the end of this block. The points are copied if both blocks have the same digits.
+     * 
+     * @param block <br>
+     *            the block of the tick
+     * @param index <br>
+     *            the index of the tick in the other block
+     * @throws IndexOutOfBoundsException will threw if this block is full
+     */
+    public void add( final TickBlock block, final int index )
+    {
+        if ( FLOATING != digits && digits == block.digits )
+        {
+            addPoints( block.timeStamps[index], block.askPoints[index], block.bidPoints[index],
+                       block.askVolumes[index], block.bidVolumes[index] );
+        }
+        else
+        {
+            add( block.timeStamps[index], block.getAsk( index ), block.getBid( index ), block.askVolumes[index],
+                 block.bidVolumes[index] );
+        }
+    }
+
+    /**
+     * Returns the number of digits of the fixed-point prices.
+     * 
+     * @return the digits, or {@link #FLOATING} if the block saves <code>double</code> values
+     */
+    public int getDigits()
+    {
+        return digits;
+    }
+
+    /**
+     * Returns <code>true</code> if the block saves the ask and bid values as fixed-point points.
+     * 
+     * @return
+     */
+    public boolean isFixedPoint()
+    {
+        return FLOATING != digits;
+    }
+
+    /**
+     * Returns the number of ticks of this block.
+     * 
+     * @return
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of ticks of this block.
+     * 
+     * @return
+     */
+    public int capacity()
+    {
+        return timeStamps.length;
+    }
+
+    /**
+     * Returns <code>true</code> if this block contains no ticks.
+     * 
+     * @return
+     */
+    public boolean isEmpty()
+    {
+        return 0 == size;
+    }
+
+    /**
+     * Returns <code>true</code> if no more tick can be added.
+     * 
+     * @return
+     */
+    public boolean isFull()
+    {
+        return timeStamps.length == size;
+    }
+
+    /**
+     * Remove all ticks of this block, so the block can be used again.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Returns the timestamp of the tick in milliseconds of the epoch.
+     * 
+     * @param index
+     * @return
+     */
+    public long getTimeStamp( final int index )
+    {
+        return timeStamps[index];
+    }
+
+    /**
+     * Returns the ask value of the tick.
+     * 
+     * @param index
+     * @return
+     */
+    public double getAsk( final int index )
+    {
+        return FLOATING == digits ? asks[index] : (double) askPoints[index] / SCALES[digits];
+    }
+
+    /**
+     * Returns the ask value of the tick in points of the digits of this block.
+     * 
+     * @param index
+     * @return
+     * @throws NullPointerException will threw if the block saves <code>double</code> values
+     */
+    public long getAskPoints( final int index )
+    {
+        return askPoints[index];
+    }
+
+    /**
+     * Returns the bid value of the tick.
+     * 
+     * @param index
+     * @return
+     */
+    public double getBid( final int index )
+    {
+        return FLOATING == digits ? bids[index] : (double) bidPoints[index] / SCALES[digits];
+    }
+
+    /**
+     * Returns the bid value of the tick in points of the digits of this block.
+     * 
+     * @param index
+     * @return
+     * @throws NullPointerException will threw if the block saves <code>double</code> values
+     */
+    public long getBidPoints( final int index )
+    {
+        return bidPoints[index];
+    }
+
+    /**
+     * Returns the askvolume of the tick.
+     * 
+     * @param index
+     * @return
+     */
+    public double getAskVolume( final int index )
+    {
+        return askVolumes[index];
+    }
+
+    /**
+     * Returns the bidvolume of the tick.
+     * 
+     * @param index
+     * @return
+     */
+    public double getBidVolume( final int index )
+    {
+        return bidVolumes[index];
+    }
+
+    /**
+     * Returns a read-only view of the tick. The view reads the values of this block, so it changes if the block is
+     * cleared and filled again.
+     * 
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException will threw if the index is not lower than {@link #size()}
+     */
+    public IDukascopyRO get( final int index )
+    {
+        if ( index < 0 || index >= size )
+        {
+            throw new IndexOutOfBoundsException( "index " + index + " is not in range of the block size " + size );
+        }
+        return new TickView( index );
+    }
+
+    @Override
+    public String toString()
+    {
+        ToStringBuilder builder = new ToStringBuilder( this, ToStringStyle.SHORT_PREFIX_STYLE );
+        builder.append( "size", size );
+        if ( 0 < size )
+        {
+            builder.append( "first", new DateTime( timeStamps[0] ) );
+            builder.append( "last", new DateTime( timeStamps[size - 1] ) );
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The {@link IDukascopyRO} view of one tick of the block.
+     */
+    private final class TickView
+        implements IDukascopyRO
+    {
+        private final int index;
+
+        private TickView( final int index )
+        {
+            this.index = index;
+        }
+
+        @Override
+        public DateTime getTimeStamp()
+        {
+            return new DateTime( timeStamps[index] );
+        }
+
+        @Override
+        public double getAsk()
+        {
+            return TickBlock.this.getAsk( index );
+        }
+
+        @Override
+        public double getBid()
+        {
+            return TickBlock.this.getBid( index );
+        }
+
+        @Override
+        public double getAskVolume()
+        {
+            return askVolumes[index];
+        }
+
+        @Override
+        public double getBidVolume()
+        {
+            return bidVolumes[index];
+        }
+
+        @Override
+        public String toString()
+        {
+            ToStringBuilder builder = new ToStringBuilder( this, ToStringStyle.SHORT_PREFIX_STYLE );
+            builder.append( "timestamp", getTimeStamp() );
+            builder.append( "ask", getAsk() );
+            builder.append( "bid", getBid() );
+            builder.append( "askVolume", getAskVolume() );
+            builder.append( "bidVolume", getBidVolume() );
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.io.IOException;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.MetatraderBean;
+
+/**
+ * A handler of the bars completed by the {@link TickConverter}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public interface BarHandler
+{
+    /**
+     * Called after the last tick of a bar was added.
+     * 
+     * @param timeframe <br>
+     *            the {@link Timeframe} of the bar
+     * @param bar <br>
+     *            the completed bar; the reference is only valid during the call, a copy like
+     *            {@link MetatraderBean#MetatraderBean(IMetatraderRO)} is necessary to keep the values
+     * @throws IOException will threw if the bar can't be written
+     * @throws InterruptedException will threw if the handler is interrupted while it waits
+     */
+    void barCompleted( Timeframe timeframe, IMetatraderRO bar )
+        throws IOException, InterruptedException;
+}
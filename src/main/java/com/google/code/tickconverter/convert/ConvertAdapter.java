@@ -18,21 +18,27 @@
  */
 package com.google.code.tickconverter.convert;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
 
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeFieldType;
-import org.joda.time.Period;
+import org.joda.time.DateTimeZone;
 
-import com.google.code.tickconverter.bean.IDukascopyRO;
 import com.google.code.tickconverter.bean.IMetatraderRO;
 import com.google.code.tickconverter.bean.MetatraderBean;
-import com.google.code.tickconverter.util.LoggerUtils;
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.Log;
+import com.google.code.tickconverter.util.SpscRingBuffer;
 
 /**
- * This class convert the {@link IDukascopyRO} object of the reference from a {@link BlockingQueue} and create a
- * {@link IMetatraderRO} object.
+ * This class convert the ticks of the {@link TickBlock}s of the reference from a {@link BlockingQueue} and create
+ * {@link IMetatraderRO} objects. Every tick is converted into all configured {@link Timeframe}s at once by a
+ * {@link TickConverter}, so the ticks have to read only one time. Each {@link Timeframe} puts his bars into his own
+ * {@link BlockingQueue}.
  * 
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
  */
@@ -40,101 +46,215 @@ public class ConvertAdapter
     implements Runnable
 {
 
-    private final BlockingQueue<IDukascopyRO> dukaQueue;
+    private static final Log LOG = Log.getLog( ConvertAdapter.class );
 
-    private final BlockingQueue<IMetatraderRO> traderQueue;
+    /**
+     * The default number of {@link TickBlock}s taken at once from the {@link BlockingQueue}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    private final BlockingQueue<TickBlock> dukaQueue;
+
+    private final Map<Timeframe, BlockingQueue<IMetatraderRO>> traderQueues;
+
+    private final Map<Timeframe, List<IMetatraderRO>> pendingBars;
+
+    private final TickConverter converter;
 
-    private MetatraderConverter converter;
+    private int batchSize = DEFAULT_BATCH_SIZE;
 
     /**
      * Create an object of the class {@link ConvertAdapter} and save the references of {@link BlockingQueue}s of
-     * {@link IDukascopyRO} and {@link IMetatraderRO}
+     * {@link TickBlock} and {@link IMetatraderRO}. The ticks will converted into {@link Timeframe#M1} bars.
      * 
      * @param dukaQueue <br>
-     *            reference from a {@link BlockingQueue} of {@link IDukascopyRO} to poll the objects
+     *            reference from a {@link BlockingQueue} of {@link TickBlock} to take the ticks
      * @param traderQueue <br>
      *            reference from a {@link BlockingQueue} of {@link IMetatraderRO} to put the converted objects
      */
-    public ConvertAdapter( final BlockingQueue<IDukascopyRO> dukaQueue, final BlockingQueue<IMetatraderRO> traderQueue )
+    public ConvertAdapter( final BlockingQueue<TickBlock> dukaQueue, final BlockingQueue<IMetatraderRO> traderQueue )
     {
-        this.dukaQueue = dukaQueue;
-        this.traderQueue = traderQueue;
+        this( dukaQueue, Collections.singletonMap( Timeframe.M1, traderQueue ) );
     }
 
     /**
-     * This method is the main method of the convert process. While the {@link BlockingQueue} of {@link IDukascopyRO}
-     * have for 10 seconds no objects in the {@link BlockingQueue} add this method this object into the
-     * {@link MetatraderConverter}. If an {@link InvalidTimeException} will threw the converter put a new
-     * {@link MetatraderBean} into the {@link BlockingQueue} of {@link IMetatraderRO} and get the information of the
-     * values from the {@link MetatraderConverter} object.
+     * Create an object of the class {@link ConvertAdapter} which converts the ticks into several {@link Timeframe}s.
      * 
-     * @throws InterruptedException will threw if {@link Thread#interrupt()} is called in the poll phase
-     * @throws InvalidTimeException will threw if {@link MetatraderConverter#incrementInterval()} have a low range for
-     *             the new object after the creation of a new {@link MetatraderBean}
+     * @param dukaQueue <br>
+     *            reference from a {@link BlockingQueue} of {@link TickBlock} to take the ticks
+     * @param traderQueues <br>
+     *            a {@link BlockingQueue} of {@link IMetatraderRO} for each {@link Timeframe} to put the converted
+     *            objects
      */
-    public void convertProcess()
-        throws InterruptedException
+    public ConvertAdapter( final BlockingQueue<TickBlock> dukaQueue,
+                           final Map<Timeframe, BlockingQueue<IMetatraderRO>> traderQueues )
     {
-        while ( true )
+        this.dukaQueue = dukaQueue;
+        this.traderQueues = new EnumMap<>( traderQueues );
+        this.pendingBars = new EnumMap<>( Timeframe.class );
+        for ( Timeframe timeframe : traderQueues.keySet() )
         {
-            IDukascopyRO object = dukaQueue.poll( 2, TimeUnit.SECONDS );
-            LoggerUtils.createDebugLog( "poll object: " + object );
-            if ( null == object )
+            pendingBars.put( timeframe, new ArrayList<IMetatraderRO>() );
+        }
+        this.converter = new TickConverter( traderQueues.keySet(), new BarHandler()
+        {
+            @Override
+            public void barCompleted( final Timeframe timeframe, final IMetatraderRO bar )
             {
-                if ( null != converter && converter.hasElements() )
-                {
-                    putMetatraderObject();
-                }
-
-                break;
+                pendingBars.get( timeframe ).add( new MetatraderBean( bar ) );
             }
+        } );
+    }
 
-            if ( null == converter )
-            {
-                DateTime timestamp = object.getTimeStamp();
-                DateTime start =
-                    new DateTime( timestamp.get( DateTimeFieldType.year() ),
-                                  timestamp.get( DateTimeFieldType.monthOfYear() ),
-                                  timestamp.get( DateTimeFieldType.dayOfMonth() ),
-                                  timestamp.get( DateTimeFieldType.hourOfDay() ),
-                                  timestamp.get( DateTimeFieldType.minuteOfHour() ) );
-                converter = new MetatraderConverter( start, Period.minutes( 1 ) );
-            }
+    /**
+     * Set the maximal number of {@link TickBlock}s, which are taken at once from the {@link BlockingQueue} and
+     * converted in one loop. The bars completed by these blocks are put together into the {@link BlockingQueue}s of
+     * {@link IMetatraderRO}. The default is {@link #DEFAULT_BATCH_SIZE}.
+     * 
+     * @param batchSize <br>
+     *            the number of blocks, at least 1
+     */
+    public void setBatchSize( final int batchSize )
+    {
+        this.batchSize = Math.max( 1, batchSize );
+    }
+
+    /**
+     * Set the {@link TickListener}, which is notified after every tick added to the bar of the {@link Timeframe}. The
+     * listener is closed by the {@link #run()} method after the last tick.
+     * 
+     * @param timeframe <br>
+     *            one of the converted {@link Timeframe}s
+     * @param listener <br>
+     *            the {@link TickListener}
+     * @throws IllegalArgumentException will threw if the {@link Timeframe} isn't converted
+     * @see TickConverter#setTickListener(Timeframe, TickListener)
+     */
+    public void setTickListener( final Timeframe timeframe, final TickListener listener )
+    {
+        converter.setTickListener( timeframe, listener );
+    }
+
+    /**
+     * Set the {@link TimeShift} into the time of the broker.
+     * 
+     * @param timeShift <br>
+     *            the {@link TimeShift}, or <code>null</code> to convert the timestamps of the ticks unchanged
+     * @see TickConverter#setTimeShift(TimeShift)
+     */
+    public void setTimeShift( final TimeShift timeShift )
+    {
+        converter.setTimeShift( timeShift );
+    }
+
+    /**
+     * Set the time zone, in which the bars are aligned.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @see TickConverter#setZone(DateTimeZone)
+     */
+    public void setZone( final DateTimeZone zone )
+    {
+        converter.setZone( zone );
+    }
+
+    /**
+     * This method is the main method of the convert process. Until {@link TickBlock#END_OF_STREAM} is taken from the
+     * {@link BlockingQueue} of {@link TickBlock} this method passes the ticks to the {@link TickConverter}. All waiting
+     * blocks up to the batch size are drained at once, and the bars completed by a batch are put together into the
+     * {@link BlockingQueue} of {@link IMetatraderRO} of their {@link Timeframe}, by one
+     * {@link SpscRingBuffer#putAll(List)} into a ring buffer. The last bars are put after the
+     * marker, and the {@link #run()} method puts {@link MetatraderBean#END_OF_STREAM} into every {@link BlockingQueue}
+     * of {@link IMetatraderRO} after this method.
+     * 
+     * @throws InterruptedException will threw if {@link Thread#interrupt()} is called in the take phase
+     * @throws IOException will threw if the {@link TickListener} can't handle a tick
+     * @throws RuntimeException will threw if a tick can't be converted, the remaining ticks are discarded like after
+     *             an {@link IOException}
+     */
+    public void convertProcess()
+        throws InterruptedException, IOException
+    {
+        List<TickBlock> blocks = new ArrayList<>( batchSize );
+        boolean endOfStream = false;
+        while ( !endOfStream )
+        {
+            blocks.add( dukaQueue.take() );
+            dukaQueue.drainTo( blocks, batchSize - 1 );
             try
             {
-                converter.addDukascopy( object );
+                endOfStream = convertBlocks( blocks );
             }
-            catch ( InvalidTimeException e )
+            catch ( IOException | RuntimeException e )
             {
-                putMetatraderObject();
-                incrementWhileAdd( object );
+                if ( !blocks.contains( TickBlock.END_OF_STREAM ) )
+                {
+                    discardTicks();
+                }
+                throw e;
             }
+            blocks.clear();
+            publishBars();
         }
+
+        LOG.debug( "end of the ticks" );
+        converter.finish();
+        publishBars();
     }
 
-    private void incrementWhileAdd( final IDukascopyRO object )
+    private boolean convertBlocks( final List<TickBlock> blocks )
+        throws InterruptedException, IOException
     {
-        while ( true )
+        for ( TickBlock block : blocks )
         {
-            try
-            {
-                converter.incrementInterval();
-                converter.addDukascopy( object );
-                break;
-            }
-            catch ( InvalidTimeException e )
+            if ( TickBlock.END_OF_STREAM == block )
             {
+                return true;
             }
+            converter.addBlock( block );
         }
+        return false;
     }
 
-    private void putMetatraderObject()
+    /**
+     * Take the blocks until {@link TickBlock#END_OF_STREAM} after an error, so the reader isn't blocked by a full
+     * {@link BlockingQueue}.
+     */
+    private void discardTicks()
         throws InterruptedException
     {
-        LoggerUtils.createDebugLog( "converter has elements" );
-        IMetatraderRO bean = new MetatraderBean( converter );
-        traderQueue.put( bean );
-        LoggerUtils.createDebugLog( "put new object: " + bean );
+        while ( TickBlock.END_OF_STREAM != dukaQueue.take() )
+        {
+            // discard
+        }
+    }
+
+    private void publishBars()
+        throws InterruptedException
+    {
+        for ( Map.Entry<Timeframe, List<IMetatraderRO>> entry : pendingBars.entrySet() )
+        {
+            List<IMetatraderRO> bars = entry.getValue();
+            if ( !bars.isEmpty() )
+            {
+                BlockingQueue<IMetatraderRO> traderQueue = traderQueues.get( entry.getKey() );
+                if ( traderQueue instanceof SpscRingBuffer )
+                {
+                    ( (SpscRingBuffer<IMetatraderRO>) traderQueue ).putAll( bars );
+                }
+                else
+                {
+                    // a LinkedBlockingQueue has no bulk put
+                    for ( IMetatraderRO bar : bars )
+                    {
+                        traderQueue.put( bar );
+                    }
+                }
+                LOG.debugSampled( "put {} objects of {}", bars.size(), entry.getKey() );
+                bars.clear();
+            }
+        }
     }
 
     /*
@@ -146,13 +266,43 @@ public class ConvertAdapter
     {
         try
         {
-            LoggerUtils.createInfoLog( "start thread to convert dukascopy to metatrader" );
+            LOG.info( "start thread to convert dukascopy to metatrader" );
             convertProcess();
-            LoggerUtils.createInfoLog( "finished converting" );
+            LOG.info( "finished converting" );
         }
         catch ( InterruptedException e )
         {
 
         }
+        catch ( IOException e )
+        {
+            LOG.error( "there is an error by writing the ticks", e );
+        }
+        catch ( RuntimeException e )
+        {
+            LOG.error( "there is an error by converting the ticks", e );
+        }
+        finally
+        {
+            try
+            {
+                converter.close();
+            }
+            catch ( IOException e )
+            {
+                LOG.error( "there is an error by closing the tick listener", e );
+            }
+            for ( BlockingQueue<IMetatraderRO> traderQueue : traderQueues.values() )
+            {
+                try
+                {
+                    traderQueue.put( MetatraderBean.END_OF_STREAM );
+                }
+                catch ( InterruptedException e )
+                {
+                    traderQueue.offer( MetatraderBean.END_OF_STREAM );
+                }
+            }
+        }
     }
 }
@@ -18,11 +18,8 @@
  */
 package com.google.code.tickconverter.convert;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.MutableInterval;
 import org.joda.time.ReadWritableInterval;
 import org.joda.time.ReadableInstant;
@@ -31,27 +28,78 @@ import org.joda.time.ReadablePeriod;
 
 import com.google.code.tickconverter.bean.IDukascopyRO;
 import com.google.code.tickconverter.bean.IMetatraderRO;
-import com.google.code.tickconverter.util.DukascopyAskBidComparator;
-import com.google.code.tickconverter.util.DukascopyDateComparator;
-import com.google.code.tickconverter.util.LoggerUtils;
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.Log;
 
 /**
- * This class represent the converter between {@link IDukascopyRO} objects and {@link IMetatraderRO}. All
- * {@link IDukascopyRO} objects holds in a {@link HashSet}. The {@link #addDukascopy(IDukascopyRO)} method adds objects
- * only if the timestamp contains in the assigned {@link ReadWritableInterval}. The {@link #incrementInterval()} method
- * remove all objects of the {@link HashSet} and increment the interval.
+ * This class represent the converter between {@link IDukascopyRO} objects and {@link IMetatraderRO}. The open, max,
+ * min, close and volume values of the current bar are accumulated while the ticks arrive, so no tick is held after
+ * {@link #addDukascopy(IDukascopyRO)} returns. The {@link #addDukascopy(IDukascopyRO)} method adds objects only if the
+ * timestamp contains in the assigned {@link ReadWritableInterval}. The {@link #incrementInterval()} method reset the
+ * accumulated values and increment the interval, and {@link #moveTo(long)} jumps over a gap to any later bar. The
+ * bounds of the interval are kept as milliseconds, so {@link #contains(long)} needs no object.
+ * <p>
+ * A converter with digits accumulates fixed-point prices with integer arithmetic. The points of a bar have one digit
+ * more than the points of the ticks, so the mean of ask and bid is exact: 5 times the sum of the tick points.
  * 
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
  */
 public class MetatraderConverter
     implements IMetatraderRO
 {
-    private final HashSet<IDukascopyRO> validTickSet;
+    private static final Log LOG = Log.getLog( MetatraderConverter.class );
 
     private final ReadWritableInterval currentInterval;
 
     private final ReadablePeriod period;
 
+    private final Timeframe timeframe;
+
+    private final DateTimeZone zone;
+
+    private long startMillis;
+
+    private long endMillis;
+
+    private int tickCount;
+
+    private long openTime;
+
+    private long closeTime;
+
+    private double open;
+
+    private double max;
+
+    private double min;
+
+    private double close;
+
+    private double volume;
+
+    private final int digits;
+
+    private final double pointScale;
+
+    private long openPoints;
+
+    private long maxPoints;
+
+    private long minPoints;
+
+    private long closePoints;
+
+    // the last tick of the current bar, an exact duplicate of it is skipped
+    private long lastTime;
+
+    private long lastAsk;
+
+    private long lastBid;
+
+    private double lastAskVolume;
+
+    private double lastBidVolume;
+
     /**
      * Standard constructor to initalize the {@link MetatraderConverter} object. It's only one object necessary.
      * 
@@ -59,10 +107,63 @@ public class MetatraderConverter
      */
     public MetatraderConverter( final ReadableInstant start, final ReadablePeriod period )
     {
-        validTickSet = new HashSet<>();
+        this( start, period, TickBlock.FLOATING );
+    }
+
+    /**
+     * Create a converter, which accumulates fixed-point prices.
+     * 
+     * @param start <br>
+     *            the start of the first interval
+     * @param period <br>
+     *            the length of the intervals
+     * @param digits <br>
+     *            the digits of the points of the bars, one more than the digits of the ticks, or
+     *            {@link TickBlock#FLOATING} for <code>double</code> prices
+     */
+    public MetatraderConverter( final ReadableInstant start, final ReadablePeriod period, final int digits )
+    {
+        this( start, period, null, digits );
+    }
+
+    /**
+     * Create a converter for the bars of the {@link Timeframe}. The intervals end at the start of the next bar of the
+     * {@link Timeframe} in the time zone, so they stay aligned at the transitions of the daylight saving time.
+     * 
+     * @param timeframe <br>
+     *            the {@link Timeframe} of the bars
+     * @param start <br>
+     *            the start of the first bar in milliseconds of the epoch, e.g. of
+     *            {@link Timeframe#getStartMillis(long, DateTimeZone)}
+     * @param digits <br>
+     *            the digits of the points of the bars, one more than the digits of the ticks, or
+     *            {@link TickBlock#FLOATING} for <code>double</code> prices
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @see Timeframe#getEndMillis(long, DateTimeZone)
+     */
+    public MetatraderConverter( final Timeframe timeframe, final long start, final int digits,
+                                final DateTimeZone zone )
+    {
+        this( new DateTime( start, zone ), timeframe.getPeriod(), timeframe, digits );
+    }
+
+    private MetatraderConverter( final ReadableInstant start, final ReadablePeriod period, final Timeframe timeframe,
+                                 final int digits )
+    {
+        this.digits = digits;
+        this.pointScale = TickBlock.FLOATING == digits ? 1 : TickBlock.getScale( digits );
         this.period = period;
-        currentInterval = new MutableInterval( start, period );
-        LoggerUtils.createInfoLog( "create interval: " + currentInterval );
+        this.timeframe = timeframe;
+        this.zone = start.getZone();
+        currentInterval =
+            null == timeframe ? new MutableInterval( start, period )
+                            : new MutableInterval( start.getMillis(), timeframe.getEndMillis( start.getMillis(), zone ),
+                                                   start.getChronology() );
+        startMillis = currentInterval.getStartMillis();
+        endMillis = currentInterval.getEndMillis();
+        clearTicks();
+        LOG.info( "create interval: {}", currentInterval );
     }
 
     @Override
@@ -71,67 +172,86 @@ public class MetatraderConverter
         return currentInterval.getStart();
     }
 
+    /**
+     * Returns the start of the current interval in milliseconds since 1970 without creating a {@link DateTime}.
+     * 
+     * @return
+     */
+    public long getStartMillis()
+    {
+        return startMillis;
+    }
+
+    /**
+     * Returns <code>true</code> if the timestamp is in the current interval.
+     * 
+     * @param time <br>
+     *            the timestamp in milliseconds of the epoch
+     * @return
+     */
+    public boolean contains( final long time )
+    {
+        return time >= startMillis && time < endMillis;
+    }
+
     @Override
     public double getOpen()
     {
-        if ( validTickSet.size() == 0 )
-        {
-            return 0;
-        }
-
-        ArrayList<IDukascopyRO> tmpList = new ArrayList<>( validTickSet );
-        Collections.sort( tmpList, new DukascopyDateComparator() );
-        IDukascopyRO firstTick = tmpList.get( 0 );
-        return ( firstTick.getAsk() + firstTick.getBid() ) / 2;
+        return TickBlock.FLOATING == digits ? open : openPoints / pointScale;
     }
 
     @Override
     public double getMax()
     {
-        if ( validTickSet.size() == 0 )
-        {
-            return 0;
-        }
-
-        IDukascopyRO maxValue = Collections.max( validTickSet, new DukascopyAskBidComparator() );
-        return ( maxValue.getAsk() + maxValue.getBid() ) / 2;
+        return TickBlock.FLOATING == digits ? max : maxPoints / pointScale;
     }
 
     @Override
     public double getMin()
     {
-        if ( validTickSet.size() == 0 )
-        {
-            return 0;
-        }
-
-        IDukascopyRO minValue = Collections.min( validTickSet, new DukascopyAskBidComparator() );
-        return ( minValue.getAsk() + minValue.getBid() ) / 2;
+        return TickBlock.FLOATING == digits ? min : minPoints / pointScale;
     }
 
     @Override
     public double getClose()
     {
-        if ( validTickSet.size() == 0 )
-        {
-            return 0;
-        }
+        return TickBlock.FLOATING == digits ? close : closePoints / pointScale;
+    }
 
-        ArrayList<IDukascopyRO> tmpList = new ArrayList<>( validTickSet );
-        Collections.sort( tmpList, Collections.reverseOrder( new DukascopyDateComparator() ) );
-        IDukascopyRO firstTick = tmpList.get( 0 );
-        return ( firstTick.getAsk() + firstTick.getBid() ) / 2;
+    @Override
+    public int getDigits()
+    {
+        return digits;
+    }
+
+    @Override
+    public long getOpenPoints()
+    {
+        return openPoints;
+    }
+
+    @Override
+    public long getMaxPoints()
+    {
+        return maxPoints;
+    }
+
+    @Override
+    public long getMinPoints()
+    {
+        return minPoints;
+    }
+
+    @Override
+    public long getClosePoints()
+    {
+        return closePoints;
     }
 
     @Override
     public double getVolume()
     {
-        double totalVolume = 0;
-        for ( IDukascopyRO dukasObject : validTickSet )
-        {
-            totalVolume = totalVolume + dukasObject.getAskVolume() + dukasObject.getBidVolume();
-        }
-        return totalVolume;
+        return volume;
     }
 
     /**
@@ -146,10 +266,11 @@ public class MetatraderConverter
     public void addDukascopy( final IDukascopyRO object )
         throws InvalidTimeException
     {
-        if ( currentInterval.contains( object.getTimeStamp() ) )
+        long time = object.getTimeStamp().getMillis();
+        if ( contains( time ) )
         {
-            validTickSet.add( object );
-            LoggerUtils.createDebugLog( "add valid object: " + object );
+            accumulate( time, object.getAsk(), object.getBid(), object.getAskVolume(), object.getBidVolume() );
+            LOG.debugSampled( "add valid object: {}", object );
         }
         else
         {
@@ -159,31 +280,382 @@ public class MetatraderConverter
     }
 
     /**
-     * Returns a boolean value to query if this object has elements in his {@link HashSet}
+     * Try to add a tick of a {@link com.google.code.tickconverter.bean.TickBlock}. It's only possible if the timestamp
+     * is in range of the {@link #currentInterval}. This method works without an {@link IDukascopyRO} object.
+     * 
+     * @param time <br>
+     *            the timestamp of the tick in milliseconds of the epoch
+     * @param ask
+     * @param bid
+     * @param askVolume
+     * @param bidVolume
+     * @throws InvalidTimeException throws if the timestamp don't contains the current interval
+     */
+    public void addTick( final long time, final double ask, final double bid, final double askVolume,
+                         final double bidVolume )
+        throws InvalidTimeException
+    {
+        if ( contains( time ) )
+        {
+            accumulate( time, ask, bid, askVolume, bidVolume );
+        }
+        else
+        {
+            throw new InvalidTimeException( new DateTime( time ) + " is not in range of the current interval: "
+                + currentInterval );
+        }
+    }
+
+    /**
+     * Try to add a tick with fixed-point prices of a {@link TickBlock}. It's only possible if the timestamp is in range
+     * of the {@link #currentInterval}.
+     * 
+     * @param time <br>
+     *            the timestamp of the tick in milliseconds of the epoch
+     * @param askPoints <br>
+     *            the ask value in points with one digit less than this converter
+     * @param bidPoints <br>
+     *            the bid value in points with one digit less than this converter
+     * @param askVolume
+     * @param bidVolume
+     * @throws InvalidTimeException throws if the timestamp don't contains the current interval
+     * @throws IllegalStateException throws if this converter accumulates <code>double</code> prices
+     */
+    public void addTickPoints( final long time, final long askPoints, final long bidPoints, final double askVolume,
+                               final double bidVolume )
+        throws InvalidTimeException
+    {
+        if ( contains( time ) )
+        {
+            accumulatePoints( time, askPoints, bidPoints, askVolume, bidVolume );
+        }
+        else
+        {
+            throw new InvalidTimeException( new DateTime( time ) + " is not in range of the current interval: "
+                + currentInterval );
+        }
+    }
+
+    /**
+     * Update the values of the current bar with one tick with fixed-point prices. The caller checks the interval by
+     * {@link #contains(long)}.
+     * 
+     * @return <code>true</code> if the tick was added, <code>false</code> if it's a duplicate of the last tick
+     * @throws IllegalStateException throws if this converter accumulates <code>double</code> prices
+     */
+    boolean accumulatePoints( final long time, final long askPoints, final long bidPoints, final double askVolume,
+                              final double bidVolume )
+    {
+        if ( TickBlock.FLOATING == digits )
+        {
+            throw new IllegalStateException( "the converter has no fixed-point prices" );
+        }
+        if ( isDuplicate( time, askPoints, bidPoints, askVolume, bidVolume ) )
+        {
+            return false;
+        }
+        accumulateMean( time, 5 * ( askPoints + bidPoints ), askVolume, bidVolume );
+        return true;
+    }
+
+    /**
+     * Update the values of the current bar with one tick. The open and close values follow the earliest and the latest
+     * timestamp, so the result doesn't depend on the order of the ticks inside the interval. The caller checks the
+     * interval by {@link #contains(long)}.
+     * 
+     * @return <code>true</code> if the tick was added, <code>false</code> if it's a duplicate of the last tick
+     */
+    boolean accumulate( final long time, final double ask, final double bid, final double askVolume,
+                        final double bidVolume )
+    {
+        if ( isDuplicate( time, Double.doubleToLongBits( ask ), Double.doubleToLongBits( bid ), askVolume, bidVolume ) )
+        {
+            return false;
+        }
+        if ( TickBlock.FLOATING != digits )
+        {
+            accumulateMean( time, Math.round( ( ask + bid ) / 2 * pointScale ), askVolume, bidVolume );
+            return true;
+        }
+        double value = ( ask + bid ) / 2;
+        if ( 0 == tickCount )
+        {
+            openTime = time;
+            closeTime = time;
+            open = value;
+            max = value;
+            min = value;
+            close = value;
+        }
+        else
+        {
+            if ( time < openTime )
+            {
+                openTime = time;
+                open = value;
+            }
+            if ( time >= closeTime )
+            {
+                closeTime = time;
+                close = value;
+            }
+            if ( value > max )
+            {
+                max = value;
+            }
+            if ( value < min )
+            {
+                min = value;
+            }
+        }
+        volume = volume + askVolume + bidVolume;
+        tickCount++;
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the tick equals the last tick of the current bar. The ticks were collected in a set
+     * before, which dropped the exact duplicates of the input, so a repeated tick isn't added twice to the volume.
+     */
+    private boolean isDuplicate( final long time, final long ask, final long bid, final double askVolume,
+                                 final double bidVolume )
+    {
+        if ( 0 < tickCount && time == lastTime && ask == lastAsk && bid == lastBid && askVolume == lastAskVolume
+            && bidVolume == lastBidVolume )
+        {
+            return true;
+        }
+        lastTime = time;
+        lastAsk = ask;
+        lastBid = bid;
+        lastAskVolume = askVolume;
+        lastBidVolume = bidVolume;
+        return false;
+    }
+
+    /**
+     * Update the fixed-point values of the current bar with the mean of ask and bid in points, like
+     * {@link #accumulate(long, double, double, double, double)}.
+     */
+    private void accumulateMean( final long time, final long value, final double askVolume, final double bidVolume )
+    {
+        if ( 0 == tickCount )
+        {
+            openTime = time;
+            closeTime = time;
+            openPoints = value;
+            maxPoints = value;
+            minPoints = value;
+            closePoints = value;
+        }
+        else
+        {
+            if ( time < openTime )
+            {
+                openTime = time;
+                openPoints = value;
+            }
+            if ( time >= closeTime )
+            {
+                closeTime = time;
+                closePoints = value;
+            }
+            if ( value > maxPoints )
+            {
+                maxPoints = value;
+            }
+            if ( value < minPoints )
+            {
+                minPoints = value;
+            }
+        }
+        volume = volume + askVolume + bidVolume;
+        tickCount++;
+    }
+
+    /**
+     * Returns the number of ticks accumulated in the current interval.
+     * 
+     * @return
+     */
+    public int getTickCount()
+    {
+        return tickCount;
+    }
+
+    /**
+     * Returns the timestamp of the earliest tick of the current interval in milliseconds since 1970.
+     * 
+     * @return
+     */
+    public long getOpenTime()
+    {
+        return openTime;
+    }
+
+    /**
+     * Returns the timestamp of the latest tick of the current interval in milliseconds since 1970.
+     * 
+     * @return
+     */
+    public long getCloseTime()
+    {
+        return closeTime;
+    }
+
+    /**
+     * Returns the timestamp of the last added tick, which is compared with the next tick to skip a duplicate.
+     * 
+     * @return
+     */
+    public long getLastTime()
+    {
+        return lastTime;
+    }
+
+    /**
+     * Returns the ask value of the last added tick, as points or as the bits of the <code>double</code> value.
+     * 
+     * @return
+     */
+    public long getLastAsk()
+    {
+        return lastAsk;
+    }
+
+    /**
+     * Returns the bid value of the last added tick, as points or as the bits of the <code>double</code> value.
+     * 
+     * @return
+     */
+    public long getLastBid()
+    {
+        return lastBid;
+    }
+
+    /**
+     * Returns the ask volume of the last added tick.
+     * 
+     * @return
+     */
+    public double getLastAskVolume()
+    {
+        return lastAskVolume;
+    }
+
+    /**
+     * Returns the bid volume of the last added tick.
+     * 
+     * @return
+     */
+    public double getLastBidVolume()
+    {
+        return lastBidVolume;
+    }
+
+    /**
+     * Set the accumulated values of the current interval and the last tick, like they were returned by the getters of
+     * a saved converter. The following ticks are accumulated as if they were added to the saved converter, so a
+     * duplicate of the last tick is skipped too. A fixed-point converter rounds the values to its points.
+     * 
+     * @param tickCount
+     * @param openTime
+     * @param closeTime
+     * @param open
+     * @param max
+     * @param min
+     * @param close
+     * @param volume
+     * @param lastTime
+     * @param lastAsk
+     * @param lastBid
+     * @param lastAskVolume
+     * @param lastBidVolume
+     */
+    public void restore( final int tickCount, final long openTime, final long closeTime, final double open,
+                         final double max, final double min, final double close, final double volume,
+                         final long lastTime, final long lastAsk, final long lastBid, final double lastAskVolume,
+                         final double lastBidVolume )
+    {
+        this.lastTime = lastTime;
+        this.lastAsk = lastAsk;
+        this.lastBid = lastBid;
+        this.lastAskVolume = lastAskVolume;
+        this.lastBidVolume = lastBidVolume;
+        this.tickCount = tickCount;
+        this.openTime = openTime;
+        this.closeTime = closeTime;
+        this.open = open;
+        this.max = max;
+        this.min = min;
+        this.close = close;
+        this.volume = volume;
+        if ( TickBlock.FLOATING != digits )
+        {
+            openPoints = Math.round( open * pointScale );
+            maxPoints = Math.round( max * pointScale );
+            minPoints = Math.round( min * pointScale );
+            closePoints = Math.round( close * pointScale );
+        }
+    }
+
+    /**
+     * Returns a boolean value to query if this object has accumulated ticks in the current interval
      * 
      * @return
      */
     public boolean hasElements()
     {
-        return 0 < validTickSet.size();
+        return 0 < tickCount;
     }
 
     /**
-     * Remove all entries of the current set
+     * Reset the accumulated values of the current interval
      */
     public void clearTicks()
     {
-        validTickSet.clear();
+        tickCount = 0;
+        open = 0;
+        max = 0;
+        min = 0;
+        close = 0;
+        volume = 0;
+        openPoints = 0;
+        maxPoints = 0;
+        minPoints = 0;
+        closePoints = 0;
     }
 
     /**
-     * Remove all entries like {@link #clearTicks()} and set the end time to the new start time.
+     * Reset the accumulated values like {@link #clearTicks()} and set the end time to the new start time.
      */
     public void incrementInterval()
+    {
+        moveTo( endMillis );
+    }
+
+    /**
+     * Reset the accumulated values like {@link #clearTicks()} and move the interval to the bar of the start time, so a
+     * gap of any length is skipped in one step.
+     * 
+     * @param start <br>
+     *            the start of the new bar in milliseconds of the epoch, e.g. of
+     *            {@link Timeframe#getStartMillis(long, DateTimeZone)}
+     */
+    public void moveTo( final long start )
     {
         clearTicks();
-        currentInterval.setStart( currentInterval.getEnd() );
-        currentInterval.setPeriodAfterStart( period );
-        LoggerUtils.createDebugLog( "new interval: " + currentInterval );
+        if ( null == timeframe )
+        {
+            currentInterval.setInterval( start, start );
+            currentInterval.setPeriodAfterStart( period );
+        }
+        else
+        {
+            currentInterval.setInterval( start, timeframe.getEndMillis( start, zone ) );
+        }
+        startMillis = currentInterval.getStartMillis();
+        endMillis = currentInterval.getEndMillis();
+        LOG.debugSampled( "new interval: {}", currentInterval );
     }
 }
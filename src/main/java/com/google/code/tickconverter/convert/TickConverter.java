@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class converts the ticks of {@link TickBlock}s into the bars of several {@link Timeframe}s at once, so the
+ * ticks have to read only one time. Every {@link Timeframe} has his own {@link MetatraderConverter}. If a tick is
+ * after the interval of the current bar, the bar is passed to the {@link BarHandler} and the converter jumps to the
+ * bar of the tick in one step, so a gap like a weekend costs no more than one bar. A tick before the current bar is
+ * skipped and counted, because the bars before are passed on already. With a {@link TimeShift} the timestamps of a
+ * block are shifted once into the time of the broker before the bars of all {@link Timeframe}s are built. The class
+ * doesn't start a thread, the {@link ConvertAdapter} runs it between two {@link java.util.concurrent.BlockingQueue}s.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class TickConverter
+    implements Closeable
+{
+
+    private static final Log LOG = Log.getLog( TickConverter.class );
+
+    private final Timeframe[] timeframes;
+
+    private final MetatraderConverter[] converters;
+
+    private final BarHandler barHandler;
+
+    private TickListener tickListener;
+
+    private int tickListenerIndex = -1;
+
+    private long lateTicks;
+
+    private TimeShift timeShift;
+
+    private DateTimeZone zone = DateTimeZone.getDefault();
+
+    private long[] shiftedTimes = new long[0];
+
+    /**
+     * Create an object of the class {@link TickConverter}.
+     * 
+     * @param timeframes <br>
+     *            the {@link Timeframe}s to convert
+     * @param barHandler <br>
+     *            the {@link BarHandler} of the completed bars
+     */
+    public TickConverter( final Collection<Timeframe> timeframes, final BarHandler barHandler )
+    {
+        EnumSet<Timeframe> sorted = EnumSet.copyOf( timeframes );
+        this.timeframes = sorted.toArray( new Timeframe[sorted.size()] );
+        this.converters = new MetatraderConverter[this.timeframes.length];
+        this.barHandler = barHandler;
+    }
+
+    /**
+     * Set the {@link TickListener}, which is notified after every tick added to the bar of the {@link Timeframe}. The
+     * listener is closed by {@link #close()}.
+     * 
+     * @param timeframe <br>
+     *            one of the converted {@link Timeframe}s
+     * @param listener <br>
+     *            the {@link TickListener}
+     * @throws IllegalArgumentException will threw if the {@link Timeframe} isn't converted
+     */
+    public void setTickListener( final Timeframe timeframe, final TickListener listener )
+    {
+        int index = Arrays.asList( timeframes ).indexOf( timeframe );
+        if ( 0 > index )
+        {
+            throw new IllegalArgumentException( "timeframe isn't converted: " + timeframe );
+        }
+        this.tickListener = listener;
+        this.tickListenerIndex = index;
+    }
+
+    /**
+     * Set the {@link TimeShift} into the time of the broker, which is applied to every tick before it is added to the
+     * bars.
+     * 
+     * @param timeShift <br>
+     *            the {@link TimeShift}, or <code>null</code> to convert the timestamps of the ticks unchanged
+     */
+    public void setTimeShift( final TimeShift timeShift )
+    {
+        this.timeShift = timeShift;
+    }
+
+    /**
+     * Set the time zone, in which the bars are aligned. The default is the default time zone of the JVM, with a
+     * {@link TimeShift} it's {@link DateTimeZone#UTC}.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     */
+    public void setZone( final DateTimeZone zone )
+    {
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the time zone, in which the bars are aligned.
+     * 
+     * @return
+     */
+    public DateTimeZone getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * Returns the {@link MetatraderConverter} with the current bar of the {@link Timeframe}.
+     * 
+     * @param timeframe <br>
+     *            one of the converted {@link Timeframe}s
+     * @return the converter, or <code>null</code> if no tick was added
+     */
+    public MetatraderConverter getConverter( final Timeframe timeframe )
+    {
+        int index = Arrays.asList( timeframes ).indexOf( timeframe );
+        return 0 > index ? null : converters[index];
+    }
+
+    /**
+     * Replace the {@link MetatraderConverter} of the {@link Timeframe}, like a converter restored from a checkpoint.
+     * 
+     * @param timeframe <br>
+     *            one of the converted {@link Timeframe}s
+     * @param converter <br>
+     *            the converter with the current bar
+     * @throws IllegalArgumentException will threw if the {@link Timeframe} isn't converted
+     */
+    public void setConverter( final Timeframe timeframe, final MetatraderConverter converter )
+    {
+        int index = Arrays.asList( timeframes ).indexOf( timeframe );
+        if ( 0 > index )
+        {
+            throw new IllegalArgumentException( "timeframe isn't converted: " + timeframe );
+        }
+        converters[index] = converter;
+    }
+
+    /**
+     * Add the ticks of the block into the {@link MetatraderConverter} of every {@link Timeframe}.
+     * 
+     * @param block <br>
+     *            the ticks in the order of time
+     * @throws IOException will threw if the {@link BarHandler} or the {@link TickListener} can't write
+     * @throws InterruptedException will threw if the {@link BarHandler} is interrupted
+     */
+    public void addBlock( final TickBlock block )
+        throws IOException, InterruptedException
+    {
+        if ( block.isEmpty() )
+        {
+            return;
+        }
+        long[] times = null == timeShift ? null : shift( block );
+        for ( int i = 0; i < timeframes.length; i++ )
+        {
+            addBlock( i, block, times );
+        }
+    }
+
+    private long[] shift( final TickBlock block )
+    {
+        if ( shiftedTimes.length < block.size() )
+        {
+            shiftedTimes = new long[block.capacity()];
+        }
+        for ( int i = 0; i < block.size(); i++ )
+        {
+            shiftedTimes[i] = timeShift.shift( block.getTimeStamp( i ) );
+        }
+        return shiftedTimes;
+    }
+
+    private void addBlock( final int index, final TickBlock block, final long[] times )
+        throws IOException, InterruptedException
+    {
+        Timeframe timeframe = timeframes[index];
+        MetatraderConverter converter = converters[index];
+        if ( null == converter )
+        {
+            long start = timeframe.getStartMillis( null == times ? block.getTimeStamp( 0 ) : times[0], zone );
+            // the bars of fixed-point ticks have one digit more for the mean of ask and bid
+            int digits = block.isFixedPoint() ? block.getDigits() + 1 : TickBlock.FLOATING;
+            converter = new MetatraderConverter( timeframe, start, digits, zone );
+            converters[index] = converter;
+        }
+
+        TickListener listener = index == tickListenerIndex ? tickListener : null;
+        boolean points = block.isFixedPoint() && block.getDigits() + 1 == converter.getDigits();
+        for ( int i = 0; i < block.size(); i++ )
+        {
+            long time = null == times ? block.getTimeStamp( i ) : times[i];
+            if ( !converter.contains( time ) )
+            {
+                if ( time < converter.getStartMillis() )
+                {
+                    // the bars before are passed on already
+                    lateTicks++;
+                    continue;
+                }
+                barHandler.barCompleted( timeframe, converter );
+                converter.moveTo( timeframe.getStartMillis( time, zone ) );
+            }
+            boolean added;
+            if ( points )
+            {
+                added = converter.accumulatePoints( time, block.getAskPoints( i ), block.getBidPoints( i ),
+                                                    block.getAskVolume( i ), block.getBidVolume( i ) );
+            }
+            else
+            {
+                added = converter.accumulate( time, block.getAsk( i ), block.getBid( i ), block.getAskVolume( i ),
+                                              block.getBidVolume( i ) );
+            }
+            // the skipped duplicate isn't a tick of the bar
+            if ( added && null != listener )
+            {
+                listener.tickAdded( converter, time );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of ticks, which were skipped because they are earlier than the current bar of their
+     * {@link Timeframe}. The ticks of a sorted input are never skipped.
+     * 
+     * @return the sum of the skipped ticks of all {@link Timeframe}s
+     */
+    public long getLateTicks()
+    {
+        return lateTicks;
+    }
+
+    /**
+     * Pass the last bar of every {@link Timeframe} to the {@link BarHandler} after the last tick.
+     * 
+     * @throws IOException will threw if the {@link BarHandler} can't write
+     * @throws InterruptedException will threw if the {@link BarHandler} is interrupted
+     */
+    public void finish()
+        throws IOException, InterruptedException
+    {
+        if ( 0 < lateTicks )
+        {
+            LOG.warn( "skipped ticks before their current bar: {}", lateTicks );
+        }
+        for ( int i = 0; i < converters.length; i++ )
+        {
+            if ( null != converters[i] && converters[i].hasElements() )
+            {
+                barHandler.barCompleted( timeframes[i], converters[i] );
+            }
+        }
+    }
+
+    /**
+     * Close the {@link TickListener}.
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( null != tickListener )
+        {
+            tickListener.close();
+        }
+    }
+}
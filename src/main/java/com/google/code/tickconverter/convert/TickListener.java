@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A listener of the {@link ConvertAdapter}, which is notified after every tick is added to the bar of a
+ * {@link Timeframe}. The listener is called in the thread of the {@link ConvertAdapter} and gets the
+ * {@link MetatraderConverter} itself, so the running values of the bar are read without a copy. The listener is closed
+ * after the last tick.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public interface TickListener
+    extends Closeable
+{
+    /**
+     * Called after a tick was added to the bar.
+     * 
+     * @param bar <br>
+     *            the bar with the running values including the tick; the reference is only valid during the call
+     * @param timeStamp <br>
+     *            the timestamp of the tick in milliseconds since 1970
+     * @throws IOException will threw if the tick can't be written
+     */
+    void tickAdded( MetatraderConverter bar, long timeStamp )
+        throws IOException;
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.util.Arrays;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * This class shifts the timestamps of the ticks into the time of a broker, the offset of a {@link DateTimeZone} with
+ * its daylight saving time plus a fixed offset. A broker at GMT+2 in winter and GMT+3 in summer with the rules of New
+ * York is <code>America/New_York</code> plus 7 hours. The transitions of the zone are precomputed into a table, and
+ * the segment between two transitions of the last tick is cached, so a tick costs a comparison and an addition and
+ * only a tick of another segment searches the table. Outside of the table the zone is asked for the segment.
+ * <p>
+ * The time of the broker repeats at a transition to a smaller offset. The brokers switch on weekends without ticks,
+ * otherwise the repeated ticks are earlier than the current bars and skipped by the {@link TickConverter}. An instance
+ * isn't thread-safe, every converter needs his own.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public final class TimeShift
+{
+
+    /**
+     * The earliest start of the table of the transitions, 1970-01-01 UTC.
+     */
+    public static final long FIRST_TRANSITION = 0L;
+
+    /**
+     * The latest end of the table of the transitions, 2100-01-01 UTC.
+     */
+    public static final long LAST_TRANSITION = 4102444800000L;
+
+    // the offsets are less than a day, the sum with the fixed offset less than two days
+    private static final long MAX_SHIFT = 2L * 24 * 60 * 60 * 1000;
+
+    private final DateTimeZone zone;
+
+    private final long offset;
+
+    private final long[] starts;
+
+    private final long[] offsets;
+
+    private final long tableEnd;
+
+    private long segmentStart;
+
+    private long segmentEnd;
+
+    private long segmentOffset;
+
+    /**
+     * Create an object of the class {@link TimeShift} with a table of the transitions between the start and the end,
+     * which are limited to {@link #FIRST_TRANSITION} and {@link #LAST_TRANSITION}.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the broker, or <code>null</code> for a fixed offset
+     * @param offset <br>
+     *            the milliseconds added to the offset of the zone
+     * @param start <br>
+     *            the time of the first tick in milliseconds of the epoch, or {@link Long#MIN_VALUE}
+     * @param end <br>
+     *            the time after the last tick in milliseconds of the epoch, or {@link Long#MAX_VALUE}
+     */
+    public TimeShift( final DateTimeZone zone, final long offset, final long start, final long end )
+    {
+        this.zone = null == zone ? DateTimeZone.UTC : zone;
+        this.offset = offset;
+        long time = Math.max( start, FIRST_TRANSITION );
+        this.tableEnd = Math.max( time + 1, Math.min( end, LAST_TRANSITION ) );
+        long[] transitions = new long[16];
+        int size = 0;
+        while ( time < tableEnd )
+        {
+            if ( size == transitions.length )
+            {
+                transitions = Arrays.copyOf( transitions, size * 2 );
+            }
+            transitions[size++] = time;
+            long next = this.zone.nextTransition( time );
+            // a zone without further transitions returns the same time
+            time = next > time ? next : tableEnd;
+        }
+        this.starts = Arrays.copyOf( transitions, size );
+        this.offsets = new long[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            offsets[i] = this.zone.getOffset( starts[i] ) + offset;
+        }
+    }
+
+    /**
+     * Returns the time of the broker.
+     * 
+     * @param time <br>
+     *            the time of a tick in milliseconds of the epoch
+     * @return the time plus the offset of the broker at this time
+     */
+    public long shift( final long time )
+    {
+        if ( time < segmentStart || time >= segmentEnd )
+        {
+            seek( time );
+        }
+        return time + segmentOffset;
+    }
+
+    /**
+     * Returns the earliest time, whose time of the broker is at or after the time, like the first tick of a bar of the
+     * broker.
+     * 
+     * @param brokerTime <br>
+     *            a time of the broker in milliseconds of the epoch
+     * @return the earliest time in milliseconds of the epoch, which is shifted at or after the time of the broker
+     */
+    public long unshift( final long brokerTime )
+    {
+        if ( Long.MIN_VALUE + MAX_SHIFT > brokerTime || Long.MAX_VALUE - MAX_SHIFT < brokerTime )
+        {
+            return brokerTime;
+        }
+        long time = brokerTime - MAX_SHIFT;
+        while ( true )
+        {
+            seek( time );
+            if ( Long.MAX_VALUE == segmentEnd || segmentEnd - 1 + segmentOffset >= brokerTime )
+            {
+                return Math.max( time, brokerTime - segmentOffset );
+            }
+            time = segmentEnd;
+        }
+    }
+
+    private void seek( final long time )
+    {
+        if ( time >= starts[0] && time < tableEnd )
+        {
+            int index = Arrays.binarySearch( starts, time );
+            if ( 0 > index )
+            {
+                // the segment before the insertion point
+                index = -index - 2;
+            }
+            segmentStart = starts[index];
+            segmentEnd = index + 1 < starts.length ? starts[index + 1] : tableEnd;
+            segmentOffset = offsets[index];
+            return;
+        }
+        // the zone returns the same time without a previous or next transition
+        long previous = zone.previousTransition( time + 1 );
+        long next = zone.nextTransition( time );
+        segmentStart = previous <= time ? previous : Long.MIN_VALUE;
+        segmentEnd = next > time ? next : Long.MAX_VALUE;
+        if ( time < starts[0] )
+        {
+            segmentEnd = Math.min( segmentEnd, starts[0] );
+        }
+        else
+        {
+            segmentStart = Math.max( segmentStart, tableEnd );
+        }
+        segmentOffset = zone.getOffset( time ) + offset;
+    }
+
+    @Override
+    public String toString()
+    {
+        return zone.getID() + ( 0 > offset ? "" : "+" ) + offset + "ms";
+    }
+}
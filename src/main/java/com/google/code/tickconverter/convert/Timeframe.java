@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
+import org.joda.time.ReadablePeriod;
+
+/**
+ * This enum specify the timeframes of the metatrader bars. Every timeframe knows his {@link Period} and how to align a
+ * tick timestamp to the start of his bar. Weeks start on sunday like the weekly bars of metatrader. The bars shorter
+ * than a day are aligned with integer arithmetic on the local milliseconds, the calendar bars with a {@link DateTime}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public enum Timeframe
+{
+    S10( Period.seconds( 10 ) ),
+
+    S30( Period.seconds( 30 ) ),
+
+    M1( Period.minutes( 1 ) ),
+
+    M5( Period.minutes( 5 ) ),
+
+    M15( Period.minutes( 15 ) ),
+
+    M30( Period.minutes( 30 ) ),
+
+    H1( Period.hours( 1 ) ),
+
+    H4( Period.hours( 4 ) ),
+
+    D1( Period.days( 1 ) ),
+
+    W1( Period.weeks( 1 ) ),
+
+    MN1( Period.months( 1 ) );
+
+    private final Period period;
+
+    // the length in milliseconds of the bars shorter than a day, 0 for the calendar bars
+    private final long length;
+
+    private Timeframe( final Period period )
+    {
+        this.period = period;
+        this.length =
+            0 < period.getDays() + period.getWeeks() + period.getMonths() ? 0
+                            : period.toStandardDuration().getMillis();
+    }
+
+    /**
+     * Returns the period of one bar.
+     * 
+     * @return
+     */
+    public ReadablePeriod getPeriod()
+    {
+        return period;
+    }
+
+    /**
+     * Returns the length of one bar in minutes like the period of a metatrader chart. A month counts 30 days, the
+     * timeframes shorter than a minute return <code>0</code>.
+     * 
+     * @return
+     */
+    public int getMinutes()
+    {
+        return period.getMinutes() + 60 * ( period.getHours() + 24 * ( period.getDays() + 7 * period.getWeeks() + 30
+            * period.getMonths() ) );
+    }
+
+    /**
+     * Returns the start of the bar which contains the timestamp.
+     * 
+     * @param timestamp <br>
+     *            the timestamp of a tick
+     * @return the aligned start of the bar
+     */
+    public DateTime getStart( final DateTime timestamp )
+    {
+        if ( 0 < period.getSeconds() )
+        {
+            int second = timestamp.getSecondOfMinute();
+            return timestamp.secondOfMinute().roundFloorCopy().withSecondOfMinute( second - second
+                % period.getSeconds() );
+        }
+        if ( 0 < period.getMinutes() )
+        {
+            int minute = timestamp.getMinuteOfHour();
+            return timestamp.minuteOfHour().roundFloorCopy().withMinuteOfHour( minute - minute % period.getMinutes() );
+        }
+        if ( 0 < period.getHours() )
+        {
+            int hour = timestamp.getHourOfDay();
+            return timestamp.hourOfDay().roundFloorCopy().withHourOfDay( hour - hour % period.getHours() );
+        }
+        if ( 0 < period.getWeeks() )
+        {
+            return timestamp.withTimeAtStartOfDay().minusDays( timestamp.getDayOfWeek() % 7 );
+        }
+        if ( 0 < period.getMonths() )
+        {
+            return timestamp.withDayOfMonth( 1 ).withTimeAtStartOfDay();
+        }
+        return timestamp.withTimeAtStartOfDay();
+    }
+
+    /**
+     * Returns the start of the bar which contains the timestamp like {@link #getStart(DateTime)}, but without creating
+     * a {@link DateTime} for the bars shorter than a day. The local time of the time zone is rounded down to a multiple
+     * of the bar length, which divides a day.
+     * 
+     * @param time <br>
+     *            the timestamp of a tick in milliseconds of the epoch
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @return the start of the bar in milliseconds of the epoch
+     */
+    public long getStartMillis( final long time, final DateTimeZone zone )
+    {
+        if ( 0 == length )
+        {
+            return getStart( new DateTime( time, zone ) ).getMillis();
+        }
+        return zone.convertLocalToUTC( floorLocal( zone.convertUTCToLocal( time ) ), false, time );
+    }
+
+    /**
+     * Returns the end of the bar, which is the start of the next bar. The bars shorter than a day end at the next
+     * multiple of the bar length in local time, so a bar at a transition of the daylight saving time is shorter or
+     * longer and the following bars stay aligned like {@link #getStart(DateTime)}.
+     * 
+     * @param start <br>
+     *            the start of the bar in milliseconds of the epoch
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @return the end of the bar in milliseconds of the epoch
+     */
+    public long getEndMillis( final long start, final DateTimeZone zone )
+    {
+        if ( 0 == length )
+        {
+            return new DateTime( start, zone ).plus( period ).getMillis();
+        }
+        // a start in the gap of a transition is moved behind the gap, so round it down again
+        return zone.convertLocalToUTC( floorLocal( zone.convertUTCToLocal( start ) ) + length, false, start );
+    }
+
+    private long floorLocal( final long local )
+    {
+        long rest = local % length;
+        return local - ( rest < 0 ? rest + length : rest );
+    }
+}
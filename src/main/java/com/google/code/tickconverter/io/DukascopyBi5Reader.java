@@ -0,0 +1,419 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+import org.tukaani.xz.BasicArrayCache;
+import org.tukaani.xz.LZMAInputStream;
+
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class is a {@link DukascopyCsvReader} of the binary files of Dukascopy instead of a csv file. Every file
+ * contains the ticks of one hour as LZMA compressed records of 20 bytes: the milliseconds since the start of the hour,
+ * the ask and the bid as integer points and the ask and bid volumes as floats, all big endian. The hour is taken from
+ * the directory layout <code>yyyy/MM/dd/HHh_ticks.bi5</code> of Dukascopy, where the month counts from 00. The
+ * filename is one of these files or a directory, which contains them in any depth. The hours are decoded in parallel
+ * and passed on in the order of their time, only a limited number of hours is decoded ahead. The timestamps are local
+ * times of the default time zone like the timestamps of the csv files exported by Dukascopy.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class DukascopyBi5Reader
+    extends DukascopyCsvReader
+{
+    private static final Log LOG = Log.getLog( DukascopyBi5Reader.class );
+
+    /**
+     * The extension of the binary files of Dukascopy.
+     */
+    public static final String EXTENSION = ".bi5";
+
+    /**
+     * The number of bytes of one tick.
+     */
+    public static final int RECORD_LENGTH = 20;
+
+    private static final String HOUR_SUFFIX = "h_ticks" + EXTENSION;
+
+    // the volumes are floats, this rounds them to the decimals of the csv files
+    private static final double VOLUME_SCALE = 1e6;
+
+    private final int parallelism;
+
+    private final int digits;
+
+    /**
+     * Constructor of class {@link DukascopyBi5Reader}.
+     * 
+     * @param dukaQueue <br>
+     *            the {@link BlockingQueue} of {@link TickBlock} to process
+     * @param filename <br>
+     *            a file of one hour or a directory with the files of the hours
+     * @param parallelism <br>
+     *            the number of threads to decode the hours, 0 decodes them in the thread of the caller
+     * @param digits <br>
+     *            the number of digits after the decimal point of the integer prices
+     * @see #getDigits(String)
+     */
+    public DukascopyBi5Reader( final BlockingQueue<TickBlock> dukaQueue, final String filename,
+                               final int parallelism, final int digits )
+    {
+        super( dukaQueue, filename );
+        this.parallelism = parallelism;
+        this.digits = digits;
+    }
+
+    /**
+     * Returns the number of digits of the integer prices of Dukascopy for the symbol: 3 for the pairs of the yen, gold
+     * and silver and 5 for the other pairs.
+     * 
+     * @param symbol <br>
+     *            the symbol like EURUSD
+     * @return
+     */
+    public static int getDigits( final String symbol )
+    {
+        String name = symbol.toUpperCase();
+        if ( name.contains( "JPY" ) || name.startsWith( "XAU" ) || name.startsWith( "XAG" ) )
+        {
+            return 3;
+        }
+        return 5;
+    }
+
+    /**
+     * Returns the start of the hour of the file from the directory layout <code>yyyy/MM/dd/HHh_ticks.bi5</code>.
+     * 
+     * @param file <br>
+     *            the file of the hour
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the directory layout
+     * @return the time in milliseconds of the epoch
+     * @throws ParseException will throws if the path doesn't match the layout
+     */
+    public static long getHour( final Path file, final DateTimeZone zone )
+        throws ParseException
+    {
+        Path path = file.toAbsolutePath();
+        int count = path.getNameCount();
+        String name = path.getFileName().toString();
+        if ( 4 > count || !name.endsWith( HOUR_SUFFIX ) )
+        {
+            throw new ParseException( "the file isn't in the layout yyyy/MM/dd/HHh_ticks.bi5: " + file, 0 );
+        }
+        try
+        {
+            int year = Integer.parseInt( path.getName( count - 4 ).toString() );
+            int month = Integer.parseInt( path.getName( count - 3 ).toString() ) + 1;
+            int day = Integer.parseInt( path.getName( count - 2 ).toString() );
+            int hour = Integer.parseInt( name.substring( 0, name.length() - HOUR_SUFFIX.length() ) );
+            long localMillis = ISOChronology.getInstanceUTC().getDateTimeMillis( year, month, day, hour, 0, 0, 0 );
+            return zone.convertLocalToUTC( localMillis, false );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new ParseException( "the file isn't in the layout yyyy/MM/dd/HHh_ticks.bi5: " + file, 0 );
+        }
+    }
+
+    /**
+     * Returns the files of the hours ordered by their time.
+     * 
+     * @return the files by the start of their hour
+     * @throws IOException will throws if the directory can't be read
+     * @throws ParseException will throws if a file isn't in the directory layout of Dukascopy
+     */
+    protected TreeMap<Long, Path> findHours()
+        throws IOException, ParseException
+    {
+        final List<Path> files = new ArrayList<>();
+        Path root = Paths.get( getFilename() );
+        if ( Files.isDirectory( root ) )
+        {
+            Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( final Path file, final BasicFileAttributes attrs )
+                {
+                    if ( file.getFileName().toString().endsWith( EXTENSION ) )
+                    {
+                        files.add( file );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        else
+        {
+            files.add( root );
+        }
+
+        TreeMap<Long, Path> hours = new TreeMap<>();
+        for ( Path file : files )
+        {
+            Path previous = hours.put( getHour( file, getZone() ), file );
+            if ( null != previous )
+            {
+                throw new ParseException( "the files " + previous + " and " + file + " contain the same hour", 0 );
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * Decode the files of the hours and pass the {@link TickBlock} objects in the order of the time to the
+     * {@link TickBlockHandler} in the thread of the caller. The hours before the start time are skipped without
+     * decoding them.
+     * 
+     * @param handler <br>
+     *            the {@link TickBlockHandler} of the blocks
+     * @throws IOException will throws if a file can't be read or decoded
+     * @throws ParseException will throws if a file isn't in the directory layout of Dukascopy
+     * @throws InterruptedException will throws if the handler was interrupted
+     */
+    @Override
+    public void read( final TickBlockHandler handler )
+        throws IOException, ParseException, InterruptedException
+    {
+        LOG.info( "read binary files with {} threads: {}", parallelism, getFilename() );
+        TreeMap<Long, Path> hours = findHours();
+        ExecutorService pool = 0 < parallelism ? Executors.newFixedThreadPool( parallelism ) : null;
+        try
+        {
+            ArrayDeque<Future<List<TickBlock>>> decoded = new ArrayDeque<>();
+            long ticks = 0;
+            Long hour = hours.floorKey( getStartTime() );
+            if ( null == hour )
+            {
+                hour = hours.isEmpty() ? null : hours.firstKey();
+            }
+            while ( ( null != hour && hour < getEndTime() ) || !decoded.isEmpty() )
+            {
+                while ( null != hour && hour < getEndTime()
+                    && ( decoded.isEmpty() || decoded.size() < 2 * parallelism ) )
+                {
+                    HourDecoder decoder =
+                        new HourDecoder( hours.get( hour ), hour, getZone(), getStartTime(), digits,
+                                         getPriceDigits(), getBatchSize() );
+                    decoded.add( null == pool ? new DecodedHour( decoder ) : pool.submit( decoder ) );
+                    hour = hours.higherKey( hour );
+                }
+
+                for ( TickBlock block : takeResult( decoded.poll() ) )
+                {
+                    // the last hour may end after the end time
+                    deliver( handler, block );
+                    ticks += block.size();
+                }
+            }
+            LOG.info( "decoded ticks: {}", ticks );
+        }
+        finally
+        {
+            if ( null != pool )
+            {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static List<TickBlock> takeResult( final Future<List<TickBlock>> hour )
+        throws IOException
+    {
+        try
+        {
+            return hour.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "interrupted while decoding the files", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException( e.getCause() );
+        }
+    }
+
+    /**
+     * A hour, which is decoded in the thread of the caller when its result is taken.
+     */
+    private static final class DecodedHour
+        extends FutureTask<List<TickBlock>>
+    {
+        private DecodedHour( final HourDecoder decoder )
+        {
+            super( decoder );
+        }
+
+        @Override
+        public List<TickBlock> get()
+            throws InterruptedException, ExecutionException
+        {
+            run();
+            return super.get();
+        }
+    }
+
+    /**
+     * Decode the ticks of one hour into blocks.
+     */
+    private static final class HourDecoder
+        implements Callable<List<TickBlock>>
+    {
+        private final Path file;
+
+        private final long hour;
+
+        private final DateTimeZone zone;
+
+        private final long startTime;
+
+        private final double pointScale;
+
+        private final int priceDigits;
+
+        // the factor from the integer prices to the points of the blocks, or 0 if the blocks have less digits
+        private final long pointFactor;
+
+        private final int batchSize;
+
+        private HourDecoder( final Path file, final long hour, final DateTimeZone zone, final long startTime,
+                             final int digits, final int priceDigits, final int batchSize )
+        {
+            this.file = file;
+            this.hour = hour;
+            this.zone = zone;
+            this.startTime = startTime;
+            this.pointScale = TickBlock.getScale( digits );
+            this.priceDigits = priceDigits;
+            this.pointFactor = priceDigits >= digits ? TickBlock.getScale( priceDigits - digits ) : 0;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public List<TickBlock> call()
+            throws IOException
+        {
+            List<TickBlock> blocks = new ArrayList<>();
+            if ( 0 == Files.size( file ) )
+            {
+                // Dukascopy writes empty files for the hours without ticks
+                return blocks;
+            }
+            ByteBuffer records = ByteBuffer.wrap( decompress() );
+            if ( 0 != records.limit() % RECORD_LENGTH )
+            {
+                throw new IOException( "the file contains a partial tick: " + file );
+            }
+
+            // the hour may contain a transition of the time zone
+            long localHour = hour + zone.getOffset( hour );
+            boolean transition = zone.nextTransition( hour ) < hour + DateTimeConstants.MILLIS_PER_HOUR;
+
+            TickBlock block = new TickBlock( batchSize, priceDigits );
+            while ( records.hasRemaining() )
+            {
+                int millis = records.getInt();
+                long timeStamp = transition ? zone.convertLocalToUTC( localHour + millis, false ) : hour + millis;
+                int ask = records.getInt();
+                int bid = records.getInt();
+                double askVolume = Math.round( records.getFloat() * VOLUME_SCALE ) / VOLUME_SCALE;
+                double bidVolume = Math.round( records.getFloat() * VOLUME_SCALE ) / VOLUME_SCALE;
+                if ( timeStamp < startTime )
+                {
+                    continue;
+                }
+                if ( 0 < pointFactor )
+                {
+                    block.addPoints( timeStamp, ask * pointFactor, bid * pointFactor, askVolume, bidVolume );
+                }
+                else
+                {
+                    block.add( timeStamp, ask / pointScale, bid / pointScale, askVolume, bidVolume );
+                }
+                if ( block.isFull() )
+                {
+                    blocks.add( block );
+                    block = new TickBlock( batchSize, priceDigits );
+                }
+            }
+            if ( !block.isEmpty() )
+            {
+                blocks.add( block );
+            }
+            return blocks;
+        }
+
+        private byte[] decompress()
+            throws IOException
+        {
+            byte[] bytes = new byte[64 * RECORD_LENGTH];
+            int length = 0;
+            // the cache reuses the dictionaries of the decoded hours
+            try (InputStream in =
+                new LZMAInputStream( new BufferedInputStream( Files.newInputStream( file ) ), -1,
+                                     BasicArrayCache.getInstance() ))
+            {
+                int read;
+                while ( 0 <= ( read = in.read( bytes, length, bytes.length - length ) ) )
+                {
+                    length += read;
+                    if ( length == bytes.length )
+                    {
+                        bytes = Arrays.copyOf( bytes, 2 * bytes.length );
+                    }
+                }
+            }
+            return Arrays.copyOf( bytes, length );
+        }
+    }
+}
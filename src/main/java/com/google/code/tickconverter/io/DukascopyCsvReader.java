@@ -18,28 +18,35 @@
  */
 package com.google.code.tickconverter.io;
 
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.GregorianCalendar;
 import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
-import org.apache.commons.lang.StringUtils;
-import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 
-import au.com.bytecode.opencsv.CSVReader;
-
-import com.google.code.tickconverter.bean.DukascopyBean;
-import com.google.code.tickconverter.bean.IDukascopyRO;
+import com.google.code.tickconverter.bean.TickBlock;
 import com.google.code.tickconverter.util.AppProperties;
-import com.google.code.tickconverter.util.LoggerUtils;
+import com.google.code.tickconverter.util.Log;
 
 /**
- * This class works like a standard reader class. The {@link #read()}-method of {@link DukascopyCsvReader} read line by
- * line the csv file, which is specify in {@link #filename} attribute. Afterwards the line is scanned by the
- * {@link CSVReader} and the tokens will save in a new {@link DukascopyBean} object. This class implements the
+ * This class works like a standard reader class. The {@link #read()}-method of {@link DukascopyCsvReader} read the
+ * bytes of the csv file, which is specify in {@link #filename} attribute, into a {@link ByteBuffer}. Afterwards the
+ * lines are parsed by the {@link DukascopyTickParser} and the ticks will save in a {@link TickBlock}. A full block is
+ * put into the {@link BlockingQueue}. Files with the extension {@link #GZIP_EXTENSION} and the members of archives with
+ * the extension {@link #ZIP_EXTENSION} are decompressed while they are read. This class implements the
  * {@link Runnable} interface to run in a {@link Thread}.
  * 
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
@@ -47,61 +54,600 @@ import com.google.code.tickconverter.util.LoggerUtils;
 public class DukascopyCsvReader
     implements Runnable
 {
-    private final BlockingQueue<IDukascopyRO> dukaQueue;
+    private static final Log LOG = Log.getLog( DukascopyCsvReader.class );
+
+    /**
+     * The size of the buffer to read the csv file.
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The extension of gzip files.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * The extension of zip archives.
+     */
+    public static final String ZIP_EXTENSION = ".zip";
+
+    private final BlockingQueue<TickBlock> dukaQueue;
 
     private final String filename;
 
+    private int batchSize = TickBlock.DEFAULT_CAPACITY;
+
+    private int priceDigits = TickBlock.FLOATING;
+
+    private long startTime = Long.MIN_VALUE;
+
+    private long endTime = Long.MAX_VALUE;
+
+    private DateTimeZone zone = DateTimeZone.getDefault();
+
+    private long startOffset = -1;
+
+    private long position = -1;
+
     /**
      * Standard constructor of class {@link DukascopyCsvReader}. This constructor needs an {@link BlockingQueue} to put
-     * the reading {@link DukascopyBean} objects to process. The filename define the location of the csv file.
+     * the reading {@link TickBlock} objects to process. The filename define the location of the csv file.
      * 
      * @param dukaQueue <br>
-     *            the {@link BlockingQueue} of {@link IDukascopyRO} to process
+     *            the {@link BlockingQueue} of {@link TickBlock} to process
      * @param filename <br>
      *            the full filename of the csv file to parse
      */
-    public DukascopyCsvReader( final BlockingQueue<IDukascopyRO> dukaQueue, final String filename )
+    public DukascopyCsvReader( final BlockingQueue<TickBlock> dukaQueue, final String filename )
     {
         this.dukaQueue = dukaQueue;
         this.filename = filename;
     }
 
     /**
-     * Process method to read the csv file ({@link #filename}) and put the information as {@link DukascopyBean} objects
-     * into the {@link BlockingQueue} of {@link IDukascopyRO}
+     * Constructor of class {@link DukascopyCsvReader} without a {@link BlockingQueue}. The file can only be read by
+     * {@link #read(TickBlockHandler)}.
+     * 
+     * @param filename <br>
+     *            the full filename of the csv file to parse
+     */
+    public DukascopyCsvReader( final String filename )
+    {
+        this( null, filename );
+    }
+
+    /**
+     * Set the number of ticks of a {@link TickBlock}, which is handed over to the {@link BlockingQueue} at once. The
+     * default is {@link TickBlock#DEFAULT_CAPACITY}.
+     * 
+     * @param batchSize <br>
+     *            the capacity of the {@link TickBlock}s
+     */
+    public void setBatchSize( final int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the number of digits of the fixed-point ask and bid values of the {@link TickBlock}s. The default
+     * {@link TickBlock#FLOATING} reads the values as <code>double</code>.
+     * 
+     * @param priceDigits <br>
+     *            the digits of the points
+     * @see TickBlock#TickBlock(int, int)
+     */
+    public void setPriceDigits( final int priceDigits )
+    {
+        this.priceDigits = priceDigits;
+    }
+
+    /**
+     * Set the time of the first tick to read. The lines before are skipped without parsing them, the first line to read
+     * is found by a binary search on the offset of the file, because the lines are sorted by their timestamps. The
+     * default {@link Long#MIN_VALUE} reads the whole file.
+     * 
+     * @param startTime <br>
+     *            the time in milliseconds of the epoch
+     */
+    public void setStartTime( final long startTime )
+    {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Set the time after the last tick to read. The reader stops at the first line at or after this time, which is
+     * found by a binary search like the start time. The default {@link Long#MAX_VALUE} reads until the end of the
+     * file.
+     * 
+     * @param endTime <br>
+     *            the time in milliseconds of the epoch
+     */
+    public void setEndTime( final long endTime )
+    {
+        this.endTime = endTime;
+    }
+
+    /**
+     * Set the time zone of the timestamps of the file. The default is the default time zone of the JVM.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the timestamps
+     */
+    public void setZone( final DateTimeZone zone )
+    {
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the time zone of the timestamps of the file.
+     * 
+     * @return
+     */
+    public DateTimeZone getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * Returns the time after the last tick to read.
+     * 
+     * @return the time in milliseconds of the epoch, or {@link Long#MAX_VALUE} if the file is read until its end
+     */
+    protected long getEndTime()
+    {
+        return endTime;
+    }
+
+    /**
+     * Returns the time of the first tick to read.
+     * 
+     * @return the time in milliseconds of the epoch, or {@link Long#MIN_VALUE} if the whole file is read
+     */
+    protected long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * Set the offset of the first line to read, like the offset of a checkpoint. The offset must be the beginning of a
+     * line. The default <code>-1</code> reads from the start time.
+     * 
+     * @param startOffset <br>
+     *            the offset in bytes
+     */
+    public void setStartOffset( final long startOffset )
+    {
+        this.startOffset = startOffset;
+    }
+
+    /**
+     * Returns the offset after the last line of the block, which is passed to the {@link TickBlockHandler}. The
+     * offset is only valid while the handler is called.
+     * 
+     * @return the offset in bytes, or <code>-1</code> if the offset is unknown
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Set the offset after the last line of the next block passed to the {@link TickBlockHandler}.
+     * 
+     * @param position <br>
+     *            the offset in bytes, or <code>-1</code> if the offset is unknown
+     */
+    protected void setPosition( final long position )
+    {
+        this.position = position;
+    }
+
+    /**
+     * Returns the offset of the first line to read, which is the start offset or the first line at or after the start
+     * time.
+     * 
+     * @param channel <br>
+     *            the csv file
+     * @return
+     * @throws IOException will throws if the file can't be read
+     * @see #setStartTime(long)
+     */
+    protected long findStartOffset( final FileChannel channel )
+        throws IOException
+    {
+        if ( 0 <= startOffset )
+        {
+            if ( startOffset > channel.size() )
+            {
+                throw new IOException( "the file is shorter than " + startOffset + " bytes: " + filename );
+            }
+            return startOffset;
+        }
+        if ( Long.MIN_VALUE == startTime )
+        {
+            return 0;
+        }
+        long offset = createSearch().find( channel, startTime );
+        LOG.info( "start reading at byte {} of {}", offset, channel.size() );
+        return offset;
+    }
+
+    /**
+     * Returns the offset after the last line to read, which is the first line at or after the end time.
+     * 
+     * @param channel <br>
+     *            the csv file
+     * @return
+     * @throws IOException will throws if the file can't be read
+     * @see #setEndTime(long)
+     */
+    protected long findEndOffset( final FileChannel channel )
+        throws IOException
+    {
+        if ( Long.MAX_VALUE == endTime )
+        {
+            return channel.size();
+        }
+        long offset = createSearch().find( channel, endTime );
+        LOG.info( "stop reading at byte {} of {}", offset, channel.size() );
+        return offset;
+    }
+
+    private SortedLineSearch createSearch()
+    {
+        final TimestampDecoder decoder = TimestampDecoder.compile( AppProperties.getDatePattern(), zone );
+        return new SortedLineSearch( BUFFER_SIZE )
+        {
+            @Override
+            protected long parseTime( final ByteBuffer line, final int start, final int end )
+            {
+                for ( int separator = start; separator < end; separator++ )
+                {
+                    if ( ',' == line.get( separator ) )
+                    {
+                        long timeStamp = decoder.decode( line, start, separator );
+                        return TimestampDecoder.INVALID == timeStamp ? NO_TIME : timeStamp;
+                    }
+                }
+                return NO_TIME;
+            }
+        };
+    }
+
+    /**
+     * Pass the ticks of the block between the start time and the end time to the handler. The ticks must be sorted by
+     * their timestamps.
+     * 
+     * @param handler <br>
+     *            the {@link TickBlockHandler} of the blocks
+     * @param block <br>
+     *            the block of ticks
+     * @return <code>false</code> if the block contains a tick at or after the end time, so the following blocks can be
+     *         skipped
+     * @throws IOException will throws if the handler fails
+     * @throws InterruptedException will throws if the handler was interrupted
+     */
+    protected boolean deliver( final TickBlockHandler handler, final TickBlock block )
+        throws IOException, InterruptedException
+    {
+        int size = block.size();
+        if ( 0 == size )
+        {
+            return true;
+        }
+        int first = 0;
+        while ( first < size && block.getTimeStamp( first ) < startTime )
+        {
+            first++;
+        }
+        int end = size;
+        while ( end > first && block.getTimeStamp( end - 1 ) >= endTime )
+        {
+            end--;
+        }
+        if ( 0 == first && size == end )
+        {
+            handler.blockRead( block );
+            return true;
+        }
+        if ( first < end )
+        {
+            TickBlock rest = new TickBlock( end - first, block.getDigits() );
+            for ( int i = first; i < end; i++ )
+            {
+                rest.add( block, i );
+            }
+            handler.blockRead( rest );
+        }
+        return size == end;
+    }
+
+    /**
+     * Returns the number of ticks of a {@link TickBlock}.
+     * 
+     * @return
+     */
+    protected int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of digits of the fixed-point ask and bid values of the {@link TickBlock}s.
+     * 
+     * @return the digits, or {@link TickBlock#FLOATING} if the values are read as <code>double</code>
+     */
+    protected int getPriceDigits()
+    {
+        return priceDigits;
+    }
+
+    /**
+     * Process method to read the csv file ({@link #filename}) and put the information as {@link TickBlock} objects into
+     * the {@link BlockingQueue} of {@link TickBlock}. The last block may contain less ticks than the batch size. The
+     * {@link #run()} method puts {@link TickBlock#END_OF_STREAM} after this method, also if the file can't be read.
      * 
      * @throws FileNotFoundException will throws if the file wheres not found
      * @throws IOException will throws if any other I/O errors where occur of the process
-     * @throws ParseException will throws if the timestamp isn't in a valid format. The expected format of the timestamp
-     *             is "dd.MM.yyyy HH:mm:ss.SSS"
-     * @see SimpleDateFormat
-     * @see CSVReader
+     * @throws ParseException will throws if a line isn't a valid tick. The expected format of the timestamp is
+     *             "dd.MM.yyyy HH:mm:ss.SSS", the error offset is the line number.
+     * @throws InterruptedException will throws if the method will interrupt while the queue is full
+     * @see DukascopyTickParser
      */
     public void read()
-        throws FileNotFoundException, IOException, ParseException
+        throws FileNotFoundException, IOException, ParseException, InterruptedException
+    {
+        read( new TickBlockHandler()
+        {
+            @Override
+            public void blockRead( final TickBlock block )
+                throws InterruptedException
+            {
+                dukaQueue.put( block );
+                LOG.debugSampled( "put new block in queue: {}", block );
+            }
+        } );
+    }
+
+    /**
+     * Read the csv file ({@link #filename}) and pass the ticks as {@link TickBlock} objects to the
+     * {@link TickBlockHandler} in the thread of the caller.
+     * 
+     * @param handler <br>
+     *            the {@link TickBlockHandler} of the blocks
+     * @throws IOException will throws if any I/O errors where occur of the process or the handler
+     * @throws ParseException will throws if a line isn't a valid tick. The error offset is the line number.
+     * @throws InterruptedException will throws if the handler was interrupted
+     */
+    public void read( final TickBlockHandler handler )
+        throws IOException, ParseException, InterruptedException
+    {
+        LOG.info( "read from file: {}", filename );
+        if ( isCompressed( filename ) )
+        {
+            readCompressed( handler );
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+        TickBlock block = new TickBlock( batchSize, priceDigits );
+        DukascopyTickParser parser;
+        try (FileChannel channel = FileChannel.open( Paths.get( filename ), StandardOpenOption.READ ))
+        {
+            long offset = findStartOffset( channel );
+            long end = Math.max( offset, findEndOffset( channel ) );
+            channel.position( offset );
+            TimestampDecoder decoder = TimestampDecoder.compile( AppProperties.getDatePattern(), zone );
+            parser = new DukascopyTickParser( decoder, 0 == offset );
+            try
+            {
+                block = parse( channel, offset, end - offset, buffer, parser, block, handler );
+            }
+            catch ( ParseException e )
+            {
+                throw toFileLine( e, channel, offset );
+            }
+        }
+        if ( null != block )
+        {
+            deliver( handler, block );
+        }
+        position = -1;
+        LOG.info( "parsed lines: {}", parser.getLineNumber() );
+    }
+
+    /**
+     * Returns the {@link ParseException} of a parser, which started at the offset, with the line number counted from
+     * the beginning of the file. The lines before the offset are counted only in this case of an error.
+     * 
+     * @param e <br>
+     *            the {@link ParseException}, whose error offset is the line number after the offset
+     * @param channel <br>
+     *            the {@link FileChannel} of the csv file
+     * @param offset <br>
+     *            the offset in bytes of the first line of the parser
+     * @return the {@link ParseException} with the line number of the file
+     * @throws IOException will throws if the lines before the offset can't be read
+     */
+    protected static ParseException toFileLine( final ParseException e, final FileChannel channel, final long offset )
+        throws IOException
+    {
+        if ( 0 >= offset || !e.getMessage().matches( "(?s).*line \\d+.*" ) )
+        {
+            return e;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+        long lines = 0;
+        for ( long position = 0; position < offset; )
+        {
+            buffer.clear();
+            buffer.limit( (int) Math.min( BUFFER_SIZE, offset - position ) );
+            int read = channel.read( buffer, position );
+            if ( 0 > read )
+            {
+                break;
+            }
+            for ( int i = 0; i < read; i++ )
+            {
+                if ( '\n' == buffer.get( i ) )
+                {
+                    lines++;
+                }
+            }
+            position += read;
+        }
+        long lineNumber = lines + e.getErrorOffset();
+        ParseException fileLine =
+            new ParseException( e.getMessage().replaceFirst( "line \\d+", "line " + lineNumber ), (int) lineNumber );
+        fileLine.initCause( e );
+        return fileLine;
+    }
+
+    /**
+     * Returns <code>true</code> if the file is a gzip file or a zip archive, which is decompressed while it is read.
+     * 
+     * @param filename <br>
+     *            the name of the file
+     * @return
+     */
+    public static boolean isCompressed( final String filename )
+    {
+        String name = filename.toLowerCase();
+        return name.endsWith( GZIP_EXTENSION ) || name.endsWith( ZIP_EXTENSION );
+    }
+
+    /**
+     * Decompress and parse a gzip file or the members of a zip archive in the order of the archive. Every member may
+     * start with a header line. The offsets of the blocks are unknown, so the ticks before the start time are skipped
+     * after parsing them, and the reading stops after the first tick at or after the end time.
+     */
+    private void readCompressed( final TickBlockHandler handler )
+        throws IOException, ParseException, InterruptedException
+    {
+        String datePattern = AppProperties.getDatePattern();
+        ByteBuffer buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+        TickBlock block = new TickBlock( batchSize, priceDigits );
+        long lines = 0;
+        if ( filename.toLowerCase().endsWith( GZIP_EXTENSION ) )
+        {
+            try (InputStream in = new GZIPInputStream( Files.newInputStream( Paths.get( filename ) ), BUFFER_SIZE ))
+            {
+                DukascopyTickParser parser =
+                    new DukascopyTickParser( TimestampDecoder.compile( datePattern, zone ), true );
+                block = parse( Channels.newChannel( in ), -1, Long.MAX_VALUE, buffer, parser, block, handler );
+                lines = parser.getLineNumber();
+            }
+        }
+        else
+        {
+            try (ZipInputStream in =
+                new ZipInputStream( new BufferedInputStream( Files.newInputStream( Paths.get( filename ) ),
+                                                             BUFFER_SIZE ) ))
+            {
+                // the channel reads the current member until its end
+                ReadableByteChannel channel = Channels.newChannel( in );
+                for ( ZipEntry entry = in.getNextEntry(); null != entry && null != block; entry = in.getNextEntry() )
+                {
+                    if ( entry.isDirectory() )
+                    {
+                        continue;
+                    }
+                    LOG.debug( "read member of the archive: {}", entry.getName() );
+                    DukascopyTickParser parser =
+                        new DukascopyTickParser( TimestampDecoder.compile( datePattern, zone ), true );
+                    try
+                    {
+                        block = parse( channel, -1, Long.MAX_VALUE, buffer, parser, block, handler );
+                    }
+                    catch ( ParseException e )
+                    {
+                        throw new ParseException( entry.getName() + ": " + e.getMessage(), e.getErrorOffset() );
+                    }
+                    lines += parser.getLineNumber();
+                }
+            }
+        }
+        if ( null != block )
+        {
+            deliver( handler, block );
+        }
+        LOG.info( "parsed lines: {}", lines );
+    }
+
+    /**
+     * Parse the lines of the channel until its end and pass the full blocks to the handler.
+     * 
+     * @param offset <br>
+     *            the offset of the first byte of the channel in the file to update the {@link #getPosition()} before
+     *            each block, or <code>-1</code> if the offsets are unknown
+     * @param length <br>
+     *            the number of bytes to read from the channel, or {@link Long#MAX_VALUE} to read until its end
+     * @return the block with the ticks after the last full block, or <code>null</code> if a block reached the end
+     *         time
+     */
+    private TickBlock parse( final ReadableByteChannel channel, final long offset, final long length,
+                             final ByteBuffer buffer, final DukascopyTickParser parser, final TickBlock first,
+                             final TickBlockHandler handler )
+        throws IOException, ParseException, InterruptedException
     {
-        LoggerUtils.createInfoLog( "read from file: " + filename );
-        SimpleDateFormat dateFormat = new SimpleDateFormat( AppProperties.getDatePattern() );
-        GregorianCalendar cal = new GregorianCalendar();
-        try (CSVReader reader = new CSVReader( new FileReader( filename ) ))
+        TickBlock block = first;
+        // the offset of the first byte of the buffer
+        long bufferOffset = offset;
+        long remaining = length;
+        boolean endOfInput = false;
+        while ( !endOfInput || buffer.position() > 0 )
         {
-            String[] line;
-            while ( ( line = reader.readNext() ) != null )
+            if ( !endOfInput )
             {
-                String withoutSep = StringUtils.remove( line[1], "." );
-                LoggerUtils.createDebugLog( "second token without separator: " + withoutSep );
-                if ( StringUtils.isNumeric( withoutSep ) )
+                if ( remaining < buffer.remaining() )
                 {
-                    cal.setTime( dateFormat.parse( line[0] ) );
-                    DateTime dateTime = new DateTime( cal );
-                    IDukascopyRO bean =
-                        new DukascopyBean( dateTime, Double.parseDouble( line[1] ), Double.parseDouble( line[2] ),
-                                           Double.parseDouble( line[3] ), Double.parseDouble( line[4] ) );
-                    dukaQueue.offer( bean );
-                    LoggerUtils.createDebugLog( "offer new element in queue:" + bean );
+                    buffer.limit( buffer.position() + (int) remaining );
                 }
+                int read = channel.read( buffer );
+                buffer.limit( buffer.capacity() );
+                remaining -= Math.max( 0, read );
+                endOfInput = 0 > read || 0 == remaining;
             }
+            buffer.flip();
+            while ( true )
+            {
+                parser.parse( buffer, block, endOfInput );
+                if ( !block.isFull() )
+                {
+                    break;
+                }
+                if ( 0 <= offset )
+                {
+                    position = bufferOffset + buffer.position();
+                }
+                if ( !deliver( handler, block ) )
+                {
+                    return null;
+                }
+                block = new TickBlock( batchSize, priceDigits );
+            }
+            bufferOffset += buffer.position();
+            buffer.compact();
+            if ( !buffer.hasRemaining() )
+            {
+                throw new ParseException( "line " + ( parser.getLineNumber() + 1 ) + " is longer than "
+                    + BUFFER_SIZE + " bytes", (int) parser.getLineNumber() + 1 );
+            }
+        }
+        if ( 0 <= offset )
+        {
+            position = bufferOffset;
         }
+        return block;
+    }
+
+    /**
+     * Returns the full filename of the csv file.
+     * 
+     * @return
+     */
+    public String getFilename()
+    {
+        return filename;
     }
 
     @Override
@@ -109,13 +655,28 @@ public class DukascopyCsvReader
     {
         try
         {
-            LoggerUtils.createInfoLog( "start thread to read the csv file" );
+            LOG.info( "start thread to read the csv file" );
             read();
-            LoggerUtils.createInfoLog( "finished reading" );
+            LOG.info( "finished reading" );
         }
         catch ( IOException | ParseException e )
         {
-            LoggerUtils.createErrorLog( "there is an error by parsing the csv file: " + filename, e );
+            LOG.error( "there is an error by parsing the csv file: {}", filename, e );
+        }
+        catch ( InterruptedException e )
+        {
+            LOG.error( "reading the csv file was interrupted: {}", filename, e );
+        }
+        finally
+        {
+            try
+            {
+                dukaQueue.put( TickBlock.END_OF_STREAM );
+            }
+            catch ( InterruptedException e )
+            {
+                dukaQueue.offer( TickBlock.END_OF_STREAM );
+            }
         }
     }
 }
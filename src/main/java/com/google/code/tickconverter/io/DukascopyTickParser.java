@@ -0,0 +1,390 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+import com.google.code.tickconverter.bean.TickBlock;
+
+/**
+ * This class parse the lines of a dukascopy csv file directly from a {@link ByteBuffer} into a {@link TickBlock}. The
+ * delimiters are searched byte by byte, the timestamp is decoded by a {@link TimestampDecoder} and the decimal values
+ * are parsed into primitive datatypes. So no object is created for a valid line, if the date pattern can be compiled.
+ * A line which starts with a letter is a header line and will skipped. The ask and bid values are parsed into
+ * fixed-point points if the {@link TickBlock} has digits; a value with more digits, which aren't zeros, is malformed.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class DukascopyTickParser
+{
+    /**
+     * The date pattern of the dukascopy export.
+     */
+    public static final String DUKASCOPY_PATTERN = "dd.MM.yyyy HH:mm:ss.SSS";
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final long INVALID_POINTS = Long.MIN_VALUE;
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for ( int i = 1; i < POWERS_OF_TEN.length; i++ )
+        {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final TimestampDecoder decoder;
+
+    private final boolean headerAllowed;
+
+    private long lineNumber;
+
+    private int position;
+
+    /**
+     * Create a parser for the timestamps of the {@link #DUKASCOPY_PATTERN} in the default time zone.
+     */
+    public DukascopyTickParser()
+    {
+        this( DUKASCOPY_PATTERN );
+    }
+
+    /**
+     * Create a parser for the given date pattern in the default time zone.
+     * 
+     * @param datePattern <br>
+     *            the date pattern of the first column
+     * @see TimestampDecoder#compile(String)
+     */
+    public DukascopyTickParser( final String datePattern )
+    {
+        this( TimestampDecoder.compile( datePattern ) );
+    }
+
+    /**
+     * Create a parser with a compiled {@link TimestampDecoder}.
+     * 
+     * @param decoder <br>
+     *            the decoder of the first column
+     */
+    public DukascopyTickParser( final TimestampDecoder decoder )
+    {
+        this( decoder, true );
+    }
+
+    /**
+     * Create a parser with a compiled {@link TimestampDecoder}, which parse a part of a csv file.
+     * 
+     * @param decoder <br>
+     *            the decoder of the first column
+     * @param headerAllowed <br>
+     *            <code>true</code> if the first line may be a header line, <code>false</code> if the parser don't
+     *            start at the beginning of the file
+     */
+    public DukascopyTickParser( final TimestampDecoder decoder, final boolean headerAllowed )
+    {
+        this.decoder = decoder;
+        this.headerAllowed = headerAllowed;
+        lineNumber = 0;
+    }
+
+    /**
+     * Returns the number of the last parsed line.
+     * 
+     * @return
+     */
+    public long getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Parse the complete lines between the position and the limit of the buffer and add the ticks to the block. The
+     * method returns if the block is full or no complete line is left. The position of the buffer is set behind the
+     * last parsed line, so the rest of an incomplete line stays in the buffer.
+     * 
+     * @param buffer <br>
+     *            the buffer with the bytes of the csv file
+     * @param block <br>
+     *            the block to add the ticks
+     * @param endOfInput <br>
+     *            <code>true</code> if no more bytes follows, so the rest of the buffer is the last line
+     * @throws ParseException will threw if a line isn't a valid dukascopy tick. The error offset is the line number.
+     */
+    public void parse( final ByteBuffer buffer, final TickBlock block, final boolean endOfInput )
+        throws ParseException
+    {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        while ( start < limit && !block.isFull() )
+        {
+            int end = start;
+            while ( end < limit && '\n' != buffer.get( end ) )
+            {
+                end++;
+            }
+            if ( end == limit && !endOfInput )
+            {
+                break;
+            }
+
+            lineNumber++;
+            int lineEnd = end;
+            if ( lineEnd > start && '\r' == buffer.get( lineEnd - 1 ) )
+            {
+                lineEnd--;
+            }
+            if ( lineEnd > start && isDigit( buffer.get( start ) ) )
+            {
+                parseLine( buffer, start, lineEnd, block );
+            }
+            else if ( lineEnd > start && !( headerAllowed && 1 == lineNumber ) )
+            {
+                throw malformedLine( buffer, start, lineEnd );
+            }
+            start = Math.min( end + 1, limit );
+        }
+        buffer.position( start );
+    }
+
+    private void parseLine( final ByteBuffer buffer, final int start, final int end, final TickBlock block )
+        throws ParseException
+    {
+        position = start;
+        long timeStamp = parseTimeStamp( buffer, end );
+        if ( block.isFixedPoint() )
+        {
+            long askPoints = parsePoints( buffer, end, block.getDigits() );
+            long bidPoints = parsePoints( buffer, end, block.getDigits() );
+            double askVolume = parseDecimal( buffer, end, true );
+            double bidVolume = parseDecimal( buffer, end, false );
+            if ( position != end || INVALID_POINTS == askPoints || INVALID_POINTS == bidPoints
+                || Double.isNaN( askVolume + bidVolume ) )
+            {
+                throw malformedLine( buffer, start, end );
+            }
+            block.addPoints( timeStamp, askPoints, bidPoints, askVolume, bidVolume );
+            return;
+        }
+        double ask = parseDecimal( buffer, end, true );
+        double bid = parseDecimal( buffer, end, true );
+        double askVolume = parseDecimal( buffer, end, true );
+        double bidVolume = parseDecimal( buffer, end, false );
+        if ( position != end || Double.isNaN( timeStamp + ask + bid + askVolume + bidVolume ) )
+        {
+            throw malformedLine( buffer, start, end );
+        }
+        block.add( timeStamp, ask, bid, askVolume, bidVolume );
+    }
+
+    private long parseTimeStamp( final ByteBuffer buffer, final int end )
+        throws ParseException
+    {
+        int start = position;
+        int separator = start;
+        while ( separator < end && ',' != buffer.get( separator ) )
+        {
+            separator++;
+        }
+        long timeStamp = separator < end ? decoder.decode( buffer, start, separator ) : TimestampDecoder.INVALID;
+        if ( TimestampDecoder.INVALID == timeStamp )
+        {
+            throw malformedLine( buffer, start, end );
+        }
+        position = separator + 1;
+        return timeStamp;
+    }
+
+    /**
+     * Parse a decimal number at the current position. The result is the same like {@link Double#parseDouble(String)},
+     * because the mantissa and the power of ten are exact <code>double</code> values and the division rounds
+     * correctly. Other numbers are parsed by {@link Double#parseDouble(String)}. Returns {@link Double#NaN} if the
+     * field is no number.
+     */
+    private double parseDecimal( final ByteBuffer buffer, final int end, final boolean separatorExpected )
+    {
+        int start = position;
+        int index = start;
+        boolean negative = false;
+        if ( index < end && ( '-' == buffer.get( index ) || '+' == buffer.get( index ) ) )
+        {
+            negative = '-' == buffer.get( index );
+            index++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean exact = true;
+        for ( ; index < end; index++ )
+        {
+            byte current = buffer.get( index );
+            if ( isDigit( current ) )
+            {
+                if ( mantissa < MAX_EXACT_MANTISSA / 10 )
+                {
+                    mantissa = mantissa * 10 + current - '0';
+                }
+                else
+                {
+                    exact = false;
+                }
+                digits++;
+                if ( fraction )
+                {
+                    fractionDigits++;
+                }
+            }
+            else if ( '.' == current && !fraction )
+            {
+                fraction = true;
+            }
+            else if ( ',' == current )
+            {
+                break;
+            }
+            else
+            {
+                exact = false;
+            }
+        }
+
+        if ( separatorExpected )
+        {
+            if ( index == end )
+            {
+                return Double.NaN;
+            }
+            position = index + 1;
+        }
+        else
+        {
+            position = index;
+        }
+
+        if ( 0 == digits )
+        {
+            return Double.NaN;
+        }
+        if ( !exact || fractionDigits >= POWERS_OF_TEN.length )
+        {
+            try
+            {
+                return Double.parseDouble( new String( toBytes( buffer, start, index ), StandardCharsets.US_ASCII ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                return Double.NaN;
+            }
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a decimal number followed by a separator at the current position into points of the digits, e.g. 80.928
+     * into 80928000 with 6 digits. Returns {@link #INVALID_POINTS} if the field is no number or has more digits after
+     * the decimal point, which aren't zeros.
+     */
+    private long parsePoints( final ByteBuffer buffer, final int end, final int digits )
+    {
+        int index = position;
+        boolean negative = false;
+        if ( index < end && ( '-' == buffer.get( index ) || '+' == buffer.get( index ) ) )
+        {
+            negative = '-' == buffer.get( index );
+            index++;
+        }
+
+        long points = 0;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean valid = true;
+        for ( ; index < end; index++ )
+        {
+            byte current = buffer.get( index );
+            if ( isDigit( current ) )
+            {
+                if ( !fraction )
+                {
+                    points = points * 10 + current - '0';
+                    integerDigits++;
+                }
+                else if ( fractionDigits < digits )
+                {
+                    points = points * 10 + current - '0';
+                    fractionDigits++;
+                }
+                else
+                {
+                    valid &= '0' == current;
+                }
+            }
+            else if ( '.' == current && !fraction )
+            {
+                fraction = true;
+            }
+            else if ( ',' == current )
+            {
+                break;
+            }
+            else
+            {
+                valid = false;
+            }
+        }
+        // the points of 15 digits are exact double values too
+        if ( index == end || !valid || 0 == integerDigits + fractionDigits || 15 < integerDigits + digits )
+        {
+            return INVALID_POINTS;
+        }
+        position = index + 1;
+        points *= TickBlock.getScale( digits - fractionDigits );
+        return negative ? -points : points;
+    }
+
+    private static boolean isDigit( final byte value )
+    {
+        return value >= '0' && value <= '9';
+    }
+
+    private static byte[] toBytes( final ByteBuffer buffer, final int start, final int end )
+    {
+        byte[] bytes = new byte[end - start];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = buffer.get( start + i );
+        }
+        return bytes;
+    }
+
+    private ParseException malformedLine( final ByteBuffer buffer, final int start, final int end )
+    {
+        String line = new String( toBytes( buffer, start, end ), StandardCharsets.US_ASCII );
+        return new ParseException( "malformed line " + lineNumber + ": " + line, (int) lineNumber );
+    }
+}
@@ -18,34 +18,34 @@
  */
 package com.google.code.tickconverter.io;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.Arrays;
-import java.util.Locale;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
-
-import au.com.bytecode.opencsv.CSVWriter;
 
 import com.google.code.tickconverter.bean.IMetatraderRO;
-import com.google.code.tickconverter.util.LoggerUtils;
 
 /**
  * This class take the {@link IMetatraderRO} out of the {@link BlockingQueue} and write this object to another csv file.
- * The class {@link MetatraderCsvWriter} implements additional the interface {@link Runnable} to write line by line the
- * information in a {@link Thread}.
+ * The lines are formatted by the {@link MetatraderLineFormatter} directly into the buffer of the
+ * {@link MetatraderWriter}.
  * 
  * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
  */
 public class MetatraderCsvWriter
-    implements Runnable
+    extends MetatraderWriter
 {
 
-    private final BlockingQueue<IMetatraderRO> traderQueue;
+    private final MetatraderLineFormatter formatter = new MetatraderLineFormatter();
 
-    private final String filename;
+    private final SortedLineSearch search = new SortedLineSearch( MetatraderLineFormatter.MAX_LINE_LENGTH )
+    {
+        @Override
+        protected long parseTime( final ByteBuffer line, final int start, final int end )
+        {
+            return MetatraderLineFormatter.parseTimeStamp( line, start, end, getZone() );
+        }
+    };
 
     /**
      * Standard constructor to instance an object of this class.
@@ -58,62 +58,39 @@ public class MetatraderCsvWriter
      */
     public MetatraderCsvWriter( final BlockingQueue<IMetatraderRO> traderQueue, final String filename )
     {
-        this.traderQueue = traderQueue;
-        this.filename = filename;
+        super( traderQueue, filename );
     }
 
-    /**
-     * Process method to write the {@link IMetatraderRO} objects into the csv file ({@link #filename}).
-     * 
-     * @throws IOException will throws if any other I/O errors where occur of the process
-     * @throws InterruptedException will throws if the method will interrupt in the poll phase
-     */
-    public void write()
-        throws IOException, InterruptedException
+    @Override
+    protected ByteBuffer allocateBuffer()
     {
-        LoggerUtils.createInfoLog( "write to file: " + filename );
-        try (CSVWriter writer = new CSVWriter( new FileWriter( filename ), ',', CSVWriter.NO_QUOTE_CHARACTER ))
-        {
-            DecimalFormat format = new DecimalFormat( "#####0.00000", new DecimalFormatSymbols( Locale.US ) );
-            DecimalFormat secondFormat = new DecimalFormat( "#####0", new DecimalFormatSymbols( Locale.US ) );
-            while ( true )
-            {
-                IMetatraderRO trader = traderQueue.poll( 5, TimeUnit.SECONDS );
-                LoggerUtils.createDebugLog( "poll following object: " + trader );
-                if ( null != trader )
-                {
-                    String[] line = new String[7];
-                    line[0] = trader.getTimeStamp().toString( "yyyy.MM.dd" );
-                    line[1] = trader.getTimeStamp().toString( "HH:mm" );
-                    line[2] = format.format( trader.getOpen() );
-                    line[3] = format.format( trader.getMax() );
-                    line[4] = format.format( trader.getMin() );
-                    line[5] = format.format( trader.getClose() );
-                    line[6] = secondFormat.format( Math.round( trader.getVolume() ) );
-                    writer.writeNext( line );
-                    LoggerUtils.createDebugLog( "wrote following lines: " + Arrays.toString( line ) );
-                }
-                else
-                {
-                    LoggerUtils.createDebugLog( "finish write process" );
-                    break;
-                }
-            }
-        }
+        return ByteBuffer.allocate( BUFFER_SIZE );
     }
 
     @Override
-    public void run()
+    protected int getMaxBarLength()
     {
-        try
-        {
-            LoggerUtils.createInfoLog( "start thread to write the csv file" );
-            write();
-            LoggerUtils.createInfoLog( "finished writing" );
-        }
-        catch ( IOException | InterruptedException e )
-        {
-            LoggerUtils.createErrorLog( "there is an error by writing the csv file", e );
-        }
+        return MetatraderLineFormatter.MAX_LINE_LENGTH;
+    }
+
+    @Override
+    protected long findLastBar( final FileChannel file )
+        throws IOException
+    {
+        return search.findLast( file );
+    }
+
+    @Override
+    protected long findBar( final FileChannel file, final long time )
+        throws IOException
+    {
+        return search.find( file, time );
+    }
+
+    @Override
+    protected void writeBar( final IMetatraderRO trader, final ByteBuffer buffer )
+    {
+        int end = formatter.format( trader, buffer.array(), buffer.arrayOffset() + buffer.position() );
+        buffer.position( end - buffer.arrayOffset() );
     }
 }
@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.convert.MetatraderConverter;
+import com.google.code.tickconverter.convert.TickListener;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class writes the tick file of the strategy tester of metatrader 4 (<code>.fxt</code>, version 405) in the same
+ * pass which converts the bars. As a {@link TickListener} of the
+ * {@link com.google.code.tickconverter.convert.ConvertAdapter} it writes for every tick a record of
+ * {@link #RECORD_LENGTH} bytes with the running values of the bar including this tick:
+ * <code>long bar time, double open, high, low, close, long volume, int tick time, int flag</code>. The records are
+ * encoded in little endian byte order into a buffer of {@link MetatraderWriter#BUFFER_SIZE} bytes. The header of
+ * {@link #HEADER_LENGTH} bytes is written with the final number of bars and ticks and the first and last time when
+ * the listener is closed. The symbol properties of the header are the defaults of a forex symbol with a variable
+ * spread.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class MetatraderFxtWriter
+    implements TickListener
+{
+
+    private static final Log LOG = Log.getLog( MetatraderFxtWriter.class );
+
+    /**
+     * The version of the tick file.
+     */
+    public static final int VERSION = 405;
+
+    /**
+     * The length of the file header in bytes.
+     */
+    public static final int HEADER_LENGTH = 728;
+
+    /**
+     * The length of a tick record in bytes.
+     */
+    public static final int RECORD_LENGTH = 56;
+
+    private static final String COPYRIGHT = "(C)opyright 2005-2007, MetaQuotes Software Corp.";
+
+    private static final int FLAG_RUN_EXPERT = 4;
+
+    private final String filename;
+
+    private final String symbol;
+
+    private final int period;
+
+    private final int digits;
+
+    private DateTimeZone zone = DateTimeZone.getDefault();
+
+    private FileChannel channel;
+
+    private ByteBuffer buffer;
+
+    private int bars;
+
+    private long lastBar = Long.MIN_VALUE;
+
+    private int ticks;
+
+    private long firstTime;
+
+    private long lastTime;
+
+    /**
+     * Constructor of the class {@link MetatraderFxtWriter}.
+     * 
+     * @param filename <br>
+     *            the full path of the output file location.
+     * @param symbol <br>
+     *            the symbol of the ticks like <code>CADJPY</code>, at most 11 characters
+     * @param period <br>
+     *            the period of the bars in minutes
+     * @param digits <br>
+     *            the number of digits after the decimal point of the prices
+     */
+    public MetatraderFxtWriter( final String filename, final String symbol, final int period, final int digits )
+    {
+        this.filename = filename;
+        this.symbol = symbol;
+        this.period = period;
+        this.digits = digits;
+    }
+
+    /**
+     * Set the time zone of the bars, whose local times are written into the file. The default is the default time zone
+     * of the JVM.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     */
+    public void setZone( final DateTimeZone zone )
+    {
+        this.zone = zone;
+    }
+
+    private void open()
+        throws IOException
+    {
+        LOG.info( "write ticks to file: {}", filename );
+        channel =
+            FileChannel.open( Paths.get( filename ), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING );
+        buffer = ByteBuffer.allocateDirect( MetatraderWriter.BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+        // the header is completed in close()
+        putHeader( buffer );
+    }
+
+    @Override
+    public void tickAdded( final MetatraderConverter bar, final long timeStamp )
+        throws IOException
+    {
+        if ( null == channel )
+        {
+            open();
+        }
+        if ( buffer.remaining() < RECORD_LENGTH )
+        {
+            flush();
+        }
+        long barTime = toSeconds( bar.getStartMillis() );
+        long tickTime = toSeconds( timeStamp );
+        if ( barTime != lastBar )
+        {
+            lastBar = barTime;
+            bars++;
+        }
+        if ( 0 == ticks )
+        {
+            firstTime = tickTime;
+        }
+        lastTime = tickTime;
+        ticks++;
+
+        buffer.putLong( barTime );
+        buffer.putDouble( bar.getOpen() );
+        buffer.putDouble( bar.getMax() );
+        buffer.putDouble( bar.getMin() );
+        buffer.putDouble( bar.getClose() );
+        buffer.putLong( Math.round( bar.getVolume() ) );
+        buffer.putInt( (int) tickTime );
+        buffer.putInt( FLAG_RUN_EXPERT );
+    }
+
+    private long toSeconds( final long millis )
+    {
+        return ( millis + zone.getOffset( millis ) ) / 1000;
+    }
+
+    private void flush()
+        throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( null == channel )
+        {
+            open();
+        }
+        try
+        {
+            flush();
+            putHeader( buffer );
+            buffer.flip();
+            long position = 0;
+            while ( buffer.hasRemaining() )
+            {
+                position += channel.write( buffer, position );
+            }
+            buffer.clear();
+            LOG.info( "wrote {} ticks in {} bars", ticks, bars );
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private void putHeader( final ByteBuffer target )
+    {
+        double point = 1 / Math.pow( 10, digits );
+        String currency = symbol.substring( 0, Math.min( 3, symbol.length() ) );
+
+        target.putInt( VERSION );
+        putString( target, COPYRIGHT, 64 );
+        putString( target, "", 128 ); // server
+        putString( target, symbol, 12 );
+        target.putInt( period );
+        target.putInt( 0 ); // every tick model
+        target.putInt( bars );
+        target.putInt( (int) firstTime );
+        target.putInt( (int) lastTime );
+        target.putInt( ticks );
+        target.putDouble( 99.9 ); // modelling quality of real ticks
+        putString( target, currency, 12 );
+        target.putInt( 0 ); // variable spread
+        target.putInt( digits );
+        target.putInt( 0 );
+        target.putDouble( point );
+        target.putInt( 1 ); // lot min in centi lots
+        target.putInt( 10000 ); // lot max
+        target.putInt( 1 ); // lot step
+        target.putInt( 0 ); // stops level
+        target.putInt( 0 ); // good till cancelled
+        target.putInt( 0 );
+        target.putDouble( 100000 ); // contract size
+        target.putDouble( 0 ); // tick value
+        target.putDouble( point ); // tick size
+        target.putInt( 0 ); // forex profit
+        target.putInt( 0 ); // no swap
+        target.putInt( 0 );
+        target.putInt( 0 );
+        target.putDouble( 0 ); // swap long
+        target.putDouble( 0 ); // swap short
+        target.putInt( 3 ); // triple swap on wednesday
+        target.putInt( 100 ); // leverage
+        target.putInt( 1 ); // free margin uses all
+        target.putInt( 0 ); // forex margin
+        target.putInt( 30 ); // stop out level
+        target.putInt( 0 ); // stop out in percent
+        target.putDouble( 0 ); // initial margin
+        target.putDouble( 0 ); // maintenance margin
+        target.putDouble( 0 ); // hedged margin
+        target.putDouble( 1 ); // margin divider
+        putString( target, currency, 12 );
+        target.putInt( 0 );
+        target.putDouble( 0 ); // commission
+        target.putInt( 0 );
+        target.putInt( 0 );
+        target.putInt( 0 ); // from bar
+        target.putInt( Math.max( 0, bars - 1 ) ); // to bar
+        for ( int i = 0; i < 6; i++ )
+        {
+            target.putInt( 0 ); // start of the smaller periods
+        }
+        target.putInt( (int) firstTime ); // tester from
+        target.putInt( (int) lastTime ); // tester to
+        target.putInt( 0 ); // freeze level
+        target.putInt( 0 ); // generating errors
+        for ( int i = 0; i < 60; i++ )
+        {
+            target.putInt( 0 );
+        }
+    }
+
+    private static void putString( final ByteBuffer target, final String value, final int length )
+    {
+        byte[] bytes = value.getBytes( StandardCharsets.US_ASCII );
+        target.put( bytes, 0, Math.min( bytes.length, length ) );
+        for ( int i = bytes.length; i < length; i++ )
+        {
+            target.put( (byte) 0 );
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+
+import org.joda.time.DateTime;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+
+/**
+ * This class take the {@link IMetatraderRO} out of the {@link BlockingQueue} and write them to a metatrader 4 history
+ * file (<code>.hst</code>), which the terminal loads without an import. The file starts with a header of
+ * {@link #HEADER_LENGTH} bytes followed by the bars, all values in little endian byte order. Two record layouts are
+ * supported:
+ * <ul>
+ * <li>{@link #VERSION_400}: <code>int time, double open, low, high, close, volume</code> in 44 bytes</li>
+ * <li>{@link #VERSION_401}: <code>long time, double open, high, low, close, long tick volume, int spread, long real
+ * volume</code> in 60 bytes</li>
+ * </ul>
+ * The time of a bar is the wall clock time of the bar start in seconds since 1970, like the time shown in the
+ * terminal and in the csv file.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class MetatraderHstWriter
+    extends MetatraderWriter
+{
+
+    /**
+     * The version of the history files before build 600 of metatrader 4.
+     */
+    public static final int VERSION_400 = 400;
+
+    /**
+     * The version of the history files since build 600 of metatrader 4.
+     */
+    public static final int VERSION_401 = 401;
+
+    /**
+     * The length of the file header in bytes.
+     */
+    public static final int HEADER_LENGTH = 148;
+
+    private static final String COPYRIGHT = "(C)opyright 2003, MetaQuotes Software Corp.";
+
+    private static final int COPYRIGHT_LENGTH = 64;
+
+    private static final int SYMBOL_LENGTH = 12;
+
+    private static final int UNUSED_LENGTH = 13 * 4;
+
+    private static final int RECORD_LENGTH_400 = 44;
+
+    private static final int RECORD_LENGTH_401 = 60;
+
+    private final int version;
+
+    private final String symbol;
+
+    private final int period;
+
+    private final int digits;
+
+    /**
+     * Constructor of the class {@link MetatraderHstWriter}.
+     * 
+     * @param traderQueue <br>
+     *            the {@link BlockingQueue} to take the {@link IMetatraderRO} objects and write down into the history
+     *            file.
+     * @param filename <br>
+     *            the full path of the output file location.
+     * @param version <br>
+     *            the version of the file, {@link #VERSION_400} or {@link #VERSION_401}
+     * @param symbol <br>
+     *            the symbol of the history like <code>CADJPY</code>, at most 11 characters
+     * @param period <br>
+     *            the period of the bars in minutes
+     * @param digits <br>
+     *            the number of digits after the decimal point of the prices
+     * @throws IllegalArgumentException will threw if the version is unknown or the symbol is too long
+     */
+    public MetatraderHstWriter( final BlockingQueue<IMetatraderRO> traderQueue, final String filename,
+                                final int version, final String symbol, final int period, final int digits )
+    {
+        super( traderQueue, filename );
+        if ( VERSION_400 != version && VERSION_401 != version )
+        {
+            throw new IllegalArgumentException( "unknown version of the history file: " + version );
+        }
+        if ( SYMBOL_LENGTH <= symbol.length() )
+        {
+            throw new IllegalArgumentException( "symbol is longer than " + ( SYMBOL_LENGTH - 1 ) + " characters: "
+                + symbol );
+        }
+        this.version = version;
+        this.symbol = symbol;
+        this.period = period;
+        this.digits = digits;
+    }
+
+    @Override
+    protected int getMaxBarLength()
+    {
+        return VERSION_400 == version ? RECORD_LENGTH_400 : RECORD_LENGTH_401;
+    }
+
+    @Override
+    protected long findLastBar( final FileChannel file )
+        throws IOException
+    {
+        long count = countBars( file );
+        return 0 < count ? readTime( file, count - 1 ) : Long.MIN_VALUE;
+    }
+
+    @Override
+    protected long findBar( final FileChannel file, final long time )
+        throws IOException
+    {
+        long count = countBars( file );
+        if ( 0 > count )
+        {
+            return 0;
+        }
+        long low = 0;
+        long high = count;
+        while ( low < high )
+        {
+            long middle = ( low + high ) >>> 1;
+            if ( readTime( file, middle ) < time )
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return HEADER_LENGTH + low * getMaxBarLength();
+    }
+
+    /**
+     * Returns the number of complete bars of an existing file, or <code>-1</code> if the file has no header of the
+     * version of this writer.
+     */
+    private long countBars( final FileChannel file )
+        throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN );
+        if ( HEADER_LENGTH > file.size() || 4 != file.read( header, 0 ) || version != header.getInt( 0 ) )
+        {
+            return -1;
+        }
+        return ( file.size() - HEADER_LENGTH ) / getMaxBarLength();
+    }
+
+    /**
+     * Returns the start time of a bar. The file contains the local time, so the time is converted back from the time
+     * zone of the bars.
+     */
+    private long readTime( final FileChannel file, final long index )
+        throws IOException
+    {
+        ByteBuffer time = ByteBuffer.allocate( VERSION_400 == version ? 4 : 8 ).order( ByteOrder.LITTLE_ENDIAN );
+        long position = HEADER_LENGTH + index * getMaxBarLength();
+        while ( time.hasRemaining() && 0 <= file.read( time, position + time.position() ) )
+        {
+            // read the whole time
+        }
+        long seconds = VERSION_400 == version ? time.getInt( 0 ) : time.getLong( 0 );
+        return getZone().convertLocalToUTC( seconds * 1000, false );
+    }
+
+    @Override
+    protected void writeHeader( final ByteBuffer buffer )
+    {
+        buffer.putInt( version );
+        putString( buffer, COPYRIGHT, COPYRIGHT_LENGTH );
+        putString( buffer, symbol, SYMBOL_LENGTH );
+        buffer.putInt( period );
+        buffer.putInt( digits );
+        buffer.putInt( (int) ( System.currentTimeMillis() / 1000 ) );
+        buffer.putInt( 0 );
+        for ( int i = 0; i < UNUSED_LENGTH; i++ )
+        {
+            buffer.put( (byte) 0 );
+        }
+    }
+
+    private static void putString( final ByteBuffer buffer, final String value, final int length )
+    {
+        byte[] bytes = value.getBytes( StandardCharsets.US_ASCII );
+        buffer.put( bytes, 0, Math.min( bytes.length, length ) );
+        for ( int i = bytes.length; i < length; i++ )
+        {
+            buffer.put( (byte) 0 );
+        }
+    }
+
+    @Override
+    protected void writeBar( final IMetatraderRO trader, final ByteBuffer buffer )
+    {
+        DateTime timeStamp = trader.getTimeStamp();
+        long millis = timeStamp.getMillis();
+        long time = ( millis + timeStamp.getZone().getOffset( millis ) ) / 1000;
+        if ( VERSION_400 == version )
+        {
+            buffer.putInt( (int) time );
+            buffer.putDouble( trader.getOpen() );
+            buffer.putDouble( trader.getMin() );
+            buffer.putDouble( trader.getMax() );
+            buffer.putDouble( trader.getClose() );
+            buffer.putDouble( Math.round( trader.getVolume() ) );
+        }
+        else
+        {
+            buffer.putLong( time );
+            buffer.putDouble( trader.getOpen() );
+            buffer.putDouble( trader.getMax() );
+            buffer.putDouble( trader.getMin() );
+            buffer.putDouble( trader.getClose() );
+            buffer.putLong( Math.round( trader.getVolume() ) );
+            buffer.putInt( 0 );
+            buffer.putLong( 0 );
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.TickBlock;
+
+/**
+ * Formatter of the csv lines of the {@link MetatraderCsvWriter}. A line looks like
+ * <code>2012.05.01,00:00,80.91950,80.93600,80.91950,80.93600,56</code> and is written as US-ASCII bytes directly
+ * into a reusable byte array, so no {@link String} is created per bar. The prices are rounded half even to five
+ * fraction digits and the volume is rounded half up to an integer, as the former {@link DecimalFormat} patterns
+ * <code>#####0.00000</code> and <code>#####0</code> did. The rare values which can't be rounded exactly in double
+ * arithmetic are passed to these {@link DecimalFormat}s. The fixed-point prices of a bar with digits are rounded half
+ * even with integer arithmetic, so their lines are exact.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class MetatraderLineFormatter
+{
+
+    /**
+     * The maximal length of a line with the values of a single bar in bytes.
+     */
+    public static final int MAX_LINE_LENGTH = 2048;
+
+    /**
+     * The length of the timestamp <code>yyyy.MM.dd,HH:mm</code> at the beginning of a line.
+     */
+    private static final int TIMESTAMP_LENGTH = 16;
+
+    private static final int PRICE_DIGITS = 5;
+
+    private static final double PRICE_SCALE = 100000d;
+
+    private static final long MAX_EXACT_UNITS = 1L << 52;
+
+    private final DecimalFormat priceFormat =
+        new DecimalFormat( "#####0.00000", new DecimalFormatSymbols( Locale.US ) );
+
+    private final DecimalFormat volumeFormat = new DecimalFormat( "#####0", new DecimalFormatSymbols( Locale.US ) );
+
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Format the {@link IMetatraderRO} as a csv line terminated by a line feed.
+     * 
+     * @param trader <br>
+     *            the bar to format
+     * @param buffer <br>
+     *            the target of the line
+     * @param offset <br>
+     *            the position of the first byte in the buffer; the buffer must have {@link #MAX_LINE_LENGTH} bytes
+     *            after this position
+     * @return the position after the line feed
+     */
+    public int format( final IMetatraderRO trader, final byte[] buffer, final int offset )
+    {
+        DateTime timeStamp = trader.getTimeStamp();
+        int pos = writeYear( timeStamp.getYear(), buffer, offset );
+        buffer[pos++] = '.';
+        pos = writeTwoDigits( timeStamp.getMonthOfYear(), buffer, pos );
+        buffer[pos++] = '.';
+        pos = writeTwoDigits( timeStamp.getDayOfMonth(), buffer, pos );
+        buffer[pos++] = ',';
+        pos = writeTwoDigits( timeStamp.getHourOfDay(), buffer, pos );
+        buffer[pos++] = ':';
+        pos = writeTwoDigits( timeStamp.getMinuteOfHour(), buffer, pos );
+        buffer[pos++] = ',';
+        int priceDigits = trader.getDigits();
+        if ( TickBlock.FLOATING == priceDigits )
+        {
+            pos = writePrice( trader.getOpen(), buffer, pos );
+            buffer[pos++] = ',';
+            pos = writePrice( trader.getMax(), buffer, pos );
+            buffer[pos++] = ',';
+            pos = writePrice( trader.getMin(), buffer, pos );
+            buffer[pos++] = ',';
+            pos = writePrice( trader.getClose(), buffer, pos );
+        }
+        else
+        {
+            pos = writePoints( trader.getOpenPoints(), priceDigits, buffer, pos );
+            buffer[pos++] = ',';
+            pos = writePoints( trader.getMaxPoints(), priceDigits, buffer, pos );
+            buffer[pos++] = ',';
+            pos = writePoints( trader.getMinPoints(), priceDigits, buffer, pos );
+            buffer[pos++] = ',';
+            pos = writePoints( trader.getClosePoints(), priceDigits, buffer, pos );
+        }
+        buffer[pos++] = ',';
+        pos = writeVolume( Math.round( trader.getVolume() ), buffer, pos );
+        buffer[pos++] = '\n';
+        return pos;
+    }
+
+    /**
+     * Parse the timestamp of a line, which was formatted by {@link #format(IMetatraderRO, byte[], int)} with a year of
+     * four digits, in the time zone of the bars.
+     * 
+     * @param line <br>
+     *            the buffer with the line
+     * @param start <br>
+     *            the index of the first byte of the line
+     * @param end <br>
+     *            the index after the last byte of the line
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     * @return the timestamp in milliseconds of the epoch, or {@link Long#MIN_VALUE} if the line doesn't start with a
+     *         timestamp
+     */
+    public static long parseTimeStamp( final ByteBuffer line, final int start, final int end,
+                                       final DateTimeZone zone )
+    {
+        if ( end - start < TIMESTAMP_LENGTH || '.' != line.get( start + 4 ) || '.' != line.get( start + 7 )
+            || ',' != line.get( start + 10 ) || ':' != line.get( start + 13 ) )
+        {
+            return Long.MIN_VALUE;
+        }
+        int year = parseDigits( line, start, 4 );
+        int month = parseDigits( line, start + 5, 2 );
+        int day = parseDigits( line, start + 8, 2 );
+        int hour = parseDigits( line, start + 11, 2 );
+        int minute = parseDigits( line, start + 14, 2 );
+        if ( 0 > ( year | month | day | hour | minute ) )
+        {
+            return Long.MIN_VALUE;
+        }
+        try
+        {
+            long localMillis = ISOChronology.getInstanceUTC().getDateTimeMillis( year, month, day, hour, minute, 0, 0 );
+            return zone.convertLocalToUTC( localMillis, false );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int parseDigits( final ByteBuffer line, final int offset, final int length )
+    {
+        int value = 0;
+        for ( int i = offset; i < offset + length; i++ )
+        {
+            byte digit = line.get( i );
+            if ( digit < '0' || digit > '9' )
+            {
+                return -1;
+            }
+            value = value * 10 + digit - '0';
+        }
+        return value;
+    }
+
+    private int writeYear( final int year, final byte[] buffer, final int offset )
+    {
+        int pos = offset;
+        if ( year < 0 )
+        {
+            buffer[pos++] = '-';
+        }
+        long value = Math.abs( (long) year );
+        for ( long limit = 1000; limit > value && limit > 1; limit /= 10 )
+        {
+            buffer[pos++] = '0';
+        }
+        return writeDigits( value, buffer, pos );
+    }
+
+    private static int writeTwoDigits( final int value, final byte[] buffer, final int offset )
+    {
+        buffer[offset] = (byte) ( '0' + value / 10 );
+        buffer[offset + 1] = (byte) ( '0' + value % 10 );
+        return offset + 2;
+    }
+
+    private int writePrice( final double price, final byte[] buffer, final int offset )
+    {
+        if ( !( price >= 0 ) )
+        {
+            return writeString( priceFormat.format( price ), buffer, offset );
+        }
+        double scaled = price * PRICE_SCALE;
+        double distance = Math.abs( scaled - Math.floor( scaled ) - 0.5 );
+        if ( scaled >= MAX_EXACT_UNITS || distance <= Math.ulp( scaled ) )
+        {
+            // the product may be rounded on the other side of a tie
+            return writeString( priceFormat.format( price ), buffer, offset );
+        }
+        return writeUnits( (long) Math.rint( scaled ), buffer, offset );
+    }
+
+    /**
+     * Write a fixed-point price, which is rounded half even to five fraction digits like the {@link DecimalFormat}.
+     */
+    private int writePoints( final long points, final int priceDigits, final byte[] buffer, final int offset )
+    {
+        if ( points < 0 )
+        {
+            return writeString( priceFormat.format( points / (double) TickBlock.getScale( priceDigits ) ), buffer,
+                                offset );
+        }
+        if ( priceDigits <= PRICE_DIGITS )
+        {
+            return writeUnits( points * TickBlock.getScale( PRICE_DIGITS - priceDigits ), buffer, offset );
+        }
+        long divisor = TickBlock.getScale( priceDigits - PRICE_DIGITS );
+        long units = points / divisor;
+        long twice = 2 * ( points % divisor );
+        if ( twice > divisor || ( twice == divisor && 1 == ( units & 1 ) ) )
+        {
+            units++;
+        }
+        return writeUnits( units, buffer, offset );
+    }
+
+    private int writeUnits( final long units, final byte[] buffer, final int offset )
+    {
+        int pos = writeDigits( units / (long) PRICE_SCALE, buffer, offset );
+        buffer[pos++] = '.';
+        long fraction = units % (long) PRICE_SCALE;
+        for ( int i = PRICE_DIGITS - 1; i >= 0; i-- )
+        {
+            buffer[pos + i] = (byte) ( '0' + fraction % 10 );
+            fraction /= 10;
+        }
+        return pos + PRICE_DIGITS;
+    }
+
+    private int writeVolume( final long volume, final byte[] buffer, final int offset )
+    {
+        if ( volume < 0 )
+        {
+            return writeString( volumeFormat.format( volume ), buffer, offset );
+        }
+        return writeDigits( volume, buffer, offset );
+    }
+
+    private int writeDigits( final long value, final byte[] buffer, final int offset )
+    {
+        long rest = value;
+        int length = 0;
+        do
+        {
+            digits[length++] = (byte) ( '0' + rest % 10 );
+            rest /= 10;
+        }
+        while ( rest > 0 );
+        int pos = offset;
+        while ( length > 0 )
+        {
+            buffer[pos++] = digits[--length];
+        }
+        return pos;
+    }
+
+    private static int writeString( final String value, final byte[] buffer, final int offset )
+    {
+        // the fallback keeps the platform encoding of the former FileWriter, e.g. for the infinity sign
+        byte[] bytes = value.getBytes( Charset.defaultCharset() );
+        System.arraycopy( bytes, 0, buffer, offset, bytes.length );
+        return offset + bytes.length;
+    }
+}
@@ -0,0 +1,489 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.MetatraderBean;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * Base class of the writers, which take the {@link IMetatraderRO} out of the {@link BlockingQueue} and write them to
+ * a file. The subclasses encode a header and the bars into a {@link ByteBuffer} of {@link #BUFFER_SIZE} bytes, which
+ * is written to a {@link FileChannel} when it is full. Files with the extension
+ * {@link DukascopyCsvReader#GZIP_EXTENSION} are compressed by a {@link ParallelGzipChannel}. The class implements the
+ * interface {@link Runnable} to write the bars of the {@link BlockingQueue} in a {@link Thread}, or the bars are
+ * passed directly to {@link #append(IMetatraderRO)} between {@link #open()} and {@link #close()}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public abstract class MetatraderWriter
+    implements Runnable, Closeable
+{
+
+    private static final Log LOG = Log.getLog( MetatraderWriter.class );
+
+    /**
+     * The size of the buffer in bytes, which is written at once to the file.
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The default number of bars taken at once from the {@link BlockingQueue}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final BlockingQueue<IMetatraderRO> traderQueue;
+
+    private final String filename;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private boolean endOfStream;
+
+    private FileChannel channel;
+
+    private WritableByteChannel output;
+
+    private int compressionThreads;
+
+    private ByteBuffer buffer;
+
+    private long bars;
+
+    private DateTimeZone zone = DateTimeZone.getDefault();
+
+    private long resumeTime = Long.MIN_VALUE;
+
+    private long resumePosition = -1;
+
+    /**
+     * Constructor of the class {@link MetatraderWriter}.
+     * 
+     * @param traderQueue <br>
+     *            the {@link BlockingQueue} to take the {@link IMetatraderRO} objects and write down into the file, or
+     *            <code>null</code> if the bars are passed to {@link #append(IMetatraderRO)}.
+     * @param filename <br>
+     *            the full path of the output file location.
+     */
+    protected MetatraderWriter( final BlockingQueue<IMetatraderRO> traderQueue, final String filename )
+    {
+        this.traderQueue = traderQueue;
+        this.filename = filename;
+    }
+
+    /**
+     * Returns the full path of the output file.
+     * 
+     * @return
+     */
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    /**
+     * Set the maximal number of bars, which are taken at once from the {@link BlockingQueue} and encoded in one loop.
+     * The default is {@link #DEFAULT_BATCH_SIZE}.
+     * 
+     * @param batchSize <br>
+     *            the number of bars, at least 1
+     */
+    public void setBatchSize( final int batchSize )
+    {
+        this.batchSize = Math.max( 1, batchSize );
+    }
+
+    /**
+     * Returns <code>true</code> if the file is compressed by gzip, because its name ends with
+     * {@link DukascopyCsvReader#GZIP_EXTENSION}.
+     * 
+     * @return
+     */
+    public boolean isCompressed()
+    {
+        return filename.toLowerCase().endsWith( DukascopyCsvReader.GZIP_EXTENSION );
+    }
+
+    /**
+     * Set the number of threads, which compress the blocks of a gzip file in parallel. The default <code>0</code>
+     * compresses them in the thread of the writer.
+     * 
+     * @param compressionThreads <br>
+     *            the number of threads
+     * @see ParallelGzipChannel
+     */
+    public void setCompressionThreads( final int compressionThreads )
+    {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Set the time zone of the bars, whose local times are written into the file. The times of an existing file are
+     * read back in this zone. The default is the default time zone of the JVM.
+     * 
+     * @param zone <br>
+     *            the {@link DateTimeZone} of the bars
+     */
+    public void setZone( final DateTimeZone zone )
+    {
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the time zone of the bars.
+     * 
+     * @return
+     */
+    protected DateTimeZone getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * Keep the bars of an existing file, which start before the time, and write the new bars after them. The bars at
+     * or after the time are replaced. The default {@link Long#MIN_VALUE} overwrites the whole file.
+     * 
+     * @param resumeTime <br>
+     *            the start time of the first replaced bar in milliseconds of the epoch
+     * @see #readLastBarTime()
+     */
+    public void setResumeTime( final long resumeTime )
+    {
+        this.resumeTime = resumeTime;
+    }
+
+    /**
+     * Keep the bytes of an existing file before the position, like the position of a checkpoint, and write the new
+     * bars after them. The default <code>-1</code> overwrites the whole file or resumes at the resume time.
+     * 
+     * @param resumePosition <br>
+     *            the position after the last kept bar
+     * @see #flush()
+     */
+    public void setResumePosition( final long resumePosition )
+    {
+        this.resumePosition = resumePosition;
+    }
+
+    /**
+     * Returns the start time of the last bar of the existing file.
+     * 
+     * @return the time in milliseconds of the epoch, or {@link Long#MIN_VALUE} if the file doesn't exist or contains
+     *         no bar
+     * @throws IOException will throws if the file can't be read
+     */
+    public long readLastBarTime()
+        throws IOException
+    {
+        Path path = Paths.get( filename );
+        if ( !Files.isRegularFile( path ) )
+        {
+            return Long.MIN_VALUE;
+        }
+        try (FileChannel file = FileChannel.open( path, StandardOpenOption.READ ))
+        {
+            return findLastBar( file );
+        }
+    }
+
+    /**
+     * Returns the start time of the last bar of an existing file.
+     * 
+     * @param file <br>
+     *            the existing file
+     * @return the time in milliseconds of the epoch, or {@link Long#MIN_VALUE} if the file contains no bar
+     * @throws IOException will throws if the file can't be read
+     */
+    protected abstract long findLastBar( FileChannel file )
+        throws IOException;
+
+    /**
+     * Returns the offset of the first bar of an existing file, which starts at or after the time.
+     * 
+     * @param file <br>
+     *            the existing file
+     * @param time <br>
+     *            the time in milliseconds of the epoch
+     * @return the offset of the bar, the size of the file if all bars start before the time, or <code>0</code> if the
+     *         file must be written again with a header
+     * @throws IOException will throws if the file can't be read
+     */
+    protected abstract long findBar( FileChannel file, long time )
+        throws IOException;
+
+    /**
+     * Allocates the buffer to encode the header and the bars. The default is a direct buffer in little endian byte
+     * order.
+     * 
+     * @return
+     */
+    protected ByteBuffer allocateBuffer()
+    {
+        return ByteBuffer.allocateDirect( BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    /**
+     * Returns the maximal number of bytes of one encoded bar.
+     * 
+     * @return
+     */
+    protected abstract int getMaxBarLength();
+
+    /**
+     * Encodes the header of the file before the first bar. The default file has no header.
+     * 
+     * @param buffer <br>
+     *            the buffer with at least {@link #BUFFER_SIZE} remaining bytes
+     */
+    protected void writeHeader( final ByteBuffer buffer )
+    {
+        // no header
+    }
+
+    /**
+     * Encodes one bar.
+     * 
+     * @param trader <br>
+     *            the bar to encode
+     * @param buffer <br>
+     *            the buffer with at least {@link #getMaxBarLength()} remaining bytes
+     */
+    protected abstract void writeBar( IMetatraderRO trader, ByteBuffer buffer );
+
+    /**
+     * Process method to write the {@link IMetatraderRO} objects into the file ({@link #filename}) until
+     * {@link MetatraderBean#END_OF_STREAM} is taken from the {@link BlockingQueue}. A bar of a long timeframe like
+     * {@link com.google.code.tickconverter.convert.Timeframe#D1} is only available at the end of the conversion, so
+     * the writer waits without a timeout. All waiting bars up to the batch size are drained at once.
+     * 
+     * @throws IOException will throws if any other I/O errors where occur of the process
+     * @throws InterruptedException will throws if the method will interrupt in the take phase
+     */
+    public void write()
+        throws IOException, InterruptedException
+    {
+        open();
+        try
+        {
+            List<IMetatraderRO> batch = new ArrayList<>( batchSize );
+            endOfStream = false;
+            while ( !endOfStream )
+            {
+                batch.add( traderQueue.take() );
+                traderQueue.drainTo( batch, batchSize - 1 );
+                for ( IMetatraderRO trader : batch )
+                {
+                    if ( MetatraderBean.END_OF_STREAM == trader )
+                    {
+                        endOfStream = true;
+                        break;
+                    }
+                    append( trader );
+                }
+                batch.clear();
+            }
+        }
+        finally
+        {
+            close();
+        }
+    }
+
+    /**
+     * Open the file and encode the header. If a resume time or a resume position is set, the bars of the existing file
+     * before this time or position are kept and the header isn't written again. The methods {@link #open()},
+     * {@link #append(IMetatraderRO)} and {@link #close()} write the bars in the thread of the caller without a
+     * {@link BlockingQueue}.
+     * 
+     * @throws IOException will throws if the file can't be opened
+     */
+    public void open()
+        throws IOException
+    {
+        LOG.info( "write to file: {}", filename );
+        buffer = allocateBuffer();
+        bars = 0;
+        if ( Long.MIN_VALUE == resumeTime && 0 > resumePosition )
+        {
+            channel =
+                FileChannel.open( Paths.get( filename ), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                  StandardOpenOption.TRUNCATE_EXISTING );
+            output = createOutput( channel );
+            writeHeader( buffer );
+            return;
+        }
+
+        channel =
+            FileChannel.open( Paths.get( filename ), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                              StandardOpenOption.WRITE );
+        long position = 0 <= resumePosition ? resumePosition : findBar( channel, resumeTime );
+        if ( position > channel.size() )
+        {
+            channel.close();
+            channel = null;
+            throw new IOException( "the file is shorter than " + position + " bytes: " + filename );
+        }
+        channel.truncate( position );
+        channel.position( position );
+        output = createOutput( channel );
+        if ( 0 == position )
+        {
+            writeHeader( buffer );
+        }
+        LOG.info( "append to file after byte {}: {}", position, filename );
+    }
+
+    private WritableByteChannel createOutput( final FileChannel file )
+    {
+        // the gzip members start after the kept bytes, so a compressed file is resumed at a flushed position
+        return isCompressed() ? new ParallelGzipChannel( file, compressionThreads ) : file;
+    }
+
+    /**
+     * Encode a bar into the buffer, which is written to the file when it is full.
+     * 
+     * @param trader <br>
+     *            the bar; it isn't referenced after the call
+     * @throws IOException will throws if the buffer can't be written
+     */
+    public void append( final IMetatraderRO trader )
+        throws IOException
+    {
+        if ( buffer.remaining() < getMaxBarLength() )
+        {
+            writeFully( output, buffer );
+        }
+        writeBar( trader, buffer );
+        bars++;
+    }
+
+    /**
+     * Write the encoded bars to the file and force them to the storage device, so they survive a crash.
+     * 
+     * @return the position after the last written bar
+     * @throws IOException will throws if the buffer can't be written
+     */
+    public long flush()
+        throws IOException
+    {
+        writeFully( output, buffer );
+        if ( output instanceof ParallelGzipChannel )
+        {
+            ( (ParallelGzipChannel) output ).flush();
+        }
+        channel.force( false );
+        return channel.position();
+    }
+
+    /**
+     * Write the rest of the buffer and close the file.
+     * 
+     * @throws IOException will throws if the buffer can't be written
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( null == channel )
+        {
+            return;
+        }
+        try
+        {
+            writeFully( output, buffer );
+            LOG.debug( "finish write process after {} bars", bars );
+        }
+        finally
+        {
+            output.close();
+            output = null;
+            channel = null;
+        }
+    }
+
+    private static void writeFully( final WritableByteChannel channel, final ByteBuffer buffer )
+        throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Take the bars until {@link MetatraderBean#END_OF_STREAM} after an error, so the converter isn't blocked by a full
+     * {@link BlockingQueue}.
+     */
+    private void discardBars()
+    {
+        try
+        {
+            while ( MetatraderBean.END_OF_STREAM != traderQueue.take() )
+            {
+                // discard
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            LOG.error( "discarding the bars was interrupted", e );
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            LOG.info( "start thread to write the file {}", filename );
+            write();
+            LOG.info( "finished writing" );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            LOG.error( "there is an error by writing the file {}", filename, e );
+            // the converter waits for the full queue of the bars
+            if ( !endOfStream )
+            {
+                discardBars();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            LOG.error( "writing the file was interrupted: {}", filename, e );
+        }
+    }
+}
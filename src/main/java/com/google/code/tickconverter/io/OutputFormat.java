@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+/**
+ * This enum specify the file formats of the converted bars.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public enum OutputFormat
+{
+    /**
+     * csv file to import into the history center of metatrader, written by the {@link MetatraderCsvWriter}.
+     */
+    CSV,
+
+    /**
+     * history file of version 400 for metatrader 4 before build 600, written by the {@link MetatraderHstWriter}.
+     */
+    HST400,
+
+    /**
+     * history file of version 401 for metatrader 4 since build 600, written by the {@link MetatraderHstWriter}.
+     */
+    HST401;
+
+    /**
+     * Returns <code>true</code> if the format is a metatrader history file.
+     * 
+     * @return
+     */
+    public boolean isHistory()
+    {
+        return HST400 == this || HST401 == this;
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.AppProperties;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class is a {@link DukascopyCsvReader}, which maps the csv file into the memory and parse ranges of the file in
+ * parallel in a fixed thread pool. Each range starts at the beginning of a line and ends after a line, so the lines
+ * are parsed by independent {@link DukascopyTickParser}s. The blocks of the ranges are put into the
+ * {@link BlockingQueue} in the order of the file, so the ticks keep the order of their timestamps. Only a limited
+ * number of ranges is parsed ahead, so the memory don't depend on the size of the file.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class ParallelDukascopyReader
+    extends DukascopyCsvReader
+{
+    private static final Log LOG = Log.getLog( ParallelDukascopyReader.class );
+
+    /**
+     * The size of the range of the file for one parser.
+     */
+    public static final int RANGE_SIZE = 8 << 20;
+
+    private final int parallelism;
+
+    private final int rangeSize;
+
+    /**
+     * Constructor of class {@link ParallelDukascopyReader} with ranges of the {@link #RANGE_SIZE}.
+     * 
+     * @param dukaQueue <br>
+     *            the {@link BlockingQueue} of {@link TickBlock} to process
+     * @param filename <br>
+     *            the full filename of the csv file to parse
+     * @param parallelism <br>
+     *            the number of threads to parse the ranges of the file
+     */
+    public ParallelDukascopyReader( final BlockingQueue<TickBlock> dukaQueue, final String filename,
+                                    final int parallelism )
+    {
+        this( dukaQueue, filename, parallelism, RANGE_SIZE );
+    }
+
+    /**
+     * Constructor of class {@link ParallelDukascopyReader}.
+     * 
+     * @param dukaQueue <br>
+     *            the {@link BlockingQueue} of {@link TickBlock} to process
+     * @param filename <br>
+     *            the full filename of the csv file to parse
+     * @param parallelism <br>
+     *            the number of threads to parse the ranges of the file
+     * @param rangeSize <br>
+     *            the number of bytes of a range
+     */
+    public ParallelDukascopyReader( final BlockingQueue<TickBlock> dukaQueue, final String filename,
+                                    final int parallelism, final int rangeSize )
+    {
+        super( dukaQueue, filename );
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Read the csv file in parallel and pass the {@link TickBlock} objects in the order of the file to the
+     * {@link TickBlockHandler} in the thread of the caller.
+     * 
+     * @param handler <br>
+     *            the {@link TickBlockHandler} of the blocks
+     * @throws IOException will throws if any I/O errors where occur of the process or the handler
+     * @throws ParseException will throws if a line isn't a valid tick. The error offset is the line number.
+     * @throws InterruptedException will throws if the handler was interrupted
+     */
+    @Override
+    public void read( final TickBlockHandler handler )
+        throws IOException, ParseException, InterruptedException
+    {
+        LOG.info( "read from file with {} threads: {}", parallelism, getFilename() );
+        String datePattern = AppProperties.getDatePattern();
+        ExecutorService pool = Executors.newFixedThreadPool( parallelism );
+        try (FileChannel channel = FileChannel.open( Paths.get( getFilename() ), StandardOpenOption.READ ))
+        {
+            long size = findEndOffset( channel );
+            ArrayDeque<Future<RangeResult>> ranges = new ArrayDeque<>();
+            long lines = 0;
+            long startOffset = findStartOffset( channel );
+            long start = startOffset;
+            while ( start < size || !ranges.isEmpty() )
+            {
+                while ( start < size && ranges.size() < 2 * parallelism )
+                {
+                    long end = Math.min( size, start + rangeSize );
+                    ranges.add( pool.submit( new RangeParser( channel, size, start, end, datePattern, getZone(),
+                                                              getBatchSize(), getPriceDigits() ) ) );
+                    start = end;
+                }
+
+                RangeResult result;
+                try
+                {
+                    result = takeResult( ranges.poll(), lines );
+                }
+                catch ( ParseException e )
+                {
+                    throw toFileLine( e, channel, startOffset );
+                }
+                for ( int i = 0; i < result.blocks.size(); i++ )
+                {
+                    setPosition( result.positions.get( i ) );
+                    handler.blockRead( result.blocks.get( i ) );
+                }
+                lines += result.lines;
+            }
+            LOG.info( "parsed lines: {}", lines );
+        }
+        finally
+        {
+            setPosition( -1 );
+            pool.shutdownNow();
+        }
+    }
+
+    private RangeResult takeResult( final Future<RangeResult> range, final long linesBefore )
+        throws IOException, ParseException
+    {
+        try
+        {
+            return range.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "interrupted while parsing the file", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof ParseException )
+            {
+                ParseException parseException = (ParseException) cause;
+                long lineNumber = linesBefore + parseException.getErrorOffset();
+                String message = parseException.getMessage().replaceFirst( "line \\d+", "line " + lineNumber );
+                throw new ParseException( message, (int) lineNumber );
+            }
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException( cause );
+        }
+    }
+
+    /**
+     * The ticks, the offsets after the last line of every block and the number of lines of a range.
+     */
+    private static final class RangeResult
+    {
+        private final List<TickBlock> blocks;
+
+        private final List<Long> positions;
+
+        private final long lines;
+
+        private RangeResult( final List<TickBlock> blocks, final List<Long> positions, final long lines )
+        {
+            this.blocks = blocks;
+            this.positions = positions;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Parse the lines which starts in the range of the file.
+     */
+    private static final class RangeParser
+        implements Callable<RangeResult>
+    {
+        private final FileChannel channel;
+
+        private final long size;
+
+        private final long start;
+
+        private final long end;
+
+        private final String datePattern;
+
+        private final DateTimeZone zone;
+
+        private final int batchSize;
+
+        private final int priceDigits;
+
+        private RangeParser( final FileChannel channel, final long size, final long start, final long end,
+                             final String datePattern, final DateTimeZone zone, final int batchSize,
+                             final int priceDigits )
+        {
+            this.channel = channel;
+            this.size = size;
+            this.start = start;
+            this.end = end;
+            this.datePattern = datePattern;
+            this.zone = zone;
+            this.batchSize = batchSize;
+            this.priceDigits = priceDigits;
+        }
+
+        @Override
+        public RangeResult call()
+            throws IOException, ParseException
+        {
+            // map the previous byte to know if a line starts at the beginning and enough bytes to finish the last line
+            long mapStart = Math.max( 0, start - 1 );
+            long mapEnd = Math.min( size, end + DukascopyCsvReader.BUFFER_SIZE );
+            MappedByteBuffer buffer = channel.map( MapMode.READ_ONLY, mapStart, mapEnd - mapStart );
+
+            int first = (int) ( start - mapStart );
+            if ( 0 < start )
+            {
+                first = lineEnd( buffer, first - 1 );
+            }
+            int limit = end == size ? buffer.limit() : lineEnd( buffer, (int) ( end - mapStart ) - 1 );
+            if ( limit < 0 || first < 0 )
+            {
+                throw new ParseException( "a line near byte " + end + " is longer than "
+                    + DukascopyCsvReader.BUFFER_SIZE + " bytes", 0 );
+            }
+
+            List<TickBlock> blocks = new ArrayList<>();
+            List<Long> positions = new ArrayList<>();
+            DukascopyTickParser parser =
+                new DukascopyTickParser( TimestampDecoder.compile( datePattern, zone ), 0 == start );
+            if ( first < limit )
+            {
+                buffer.limit( limit );
+                buffer.position( first );
+                TickBlock block = new TickBlock( batchSize, priceDigits );
+                while ( buffer.hasRemaining() )
+                {
+                    parser.parse( buffer, block, true );
+                    if ( block.isFull() )
+                    {
+                        blocks.add( block );
+                        positions.add( mapStart + buffer.position() );
+                        block = new TickBlock( batchSize, priceDigits );
+                    }
+                }
+                if ( !block.isEmpty() )
+                {
+                    blocks.add( block );
+                    positions.add( mapStart + limit );
+                }
+            }
+            return new RangeResult( blocks, positions, parser.getLineNumber() );
+        }
+
+        /**
+         * Returns the index after the first line feed at or after the index, or a negative value if the mapped bytes
+         * contain no line feed.
+         */
+        private int lineEnd( final MappedByteBuffer buffer, final int index )
+        {
+            for ( int i = index; i < buffer.limit(); i++ )
+            {
+                if ( '\n' == buffer.get( i ) )
+                {
+                    return i + 1;
+                }
+            }
+            return mapEndIsFileEnd( buffer ) ? buffer.limit() : -1;
+        }
+
+        private boolean mapEndIsFileEnd( final MappedByteBuffer buffer )
+        {
+            return Math.max( 0, start - 1 ) + buffer.limit() == size;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class is a {@link WritableByteChannel}, which compresses the written bytes in blocks of {@link #BLOCK_SIZE}
+ * bytes. Every block is compressed into an own gzip member by a fixed thread pool, and the members are written to the
+ * underlying channel in the order of the blocks. The concatenated members are a valid gzip file, which is
+ * decompressed as a whole by gzip and {@link java.util.zip.GZIPInputStream}. Only a limited number of blocks is
+ * compressed ahead, so the caller waits if the threads are slower.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class ParallelGzipChannel
+    implements WritableByteChannel
+{
+    /**
+     * The number of bytes of a block, which is compressed into one gzip member.
+     */
+    public static final int BLOCK_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+
+    private final int parallelism;
+
+    private final ExecutorService pool;
+
+    private final ArrayDeque<Future<byte[]>> members = new ArrayDeque<>();
+
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    private int length;
+
+    private boolean open = true;
+
+    /**
+     * Constructor of the class {@link ParallelGzipChannel}.
+     * 
+     * @param channel <br>
+     *            the channel of the compressed bytes, which is closed by {@link #close()}
+     * @param parallelism <br>
+     *            the number of threads to compress the blocks, 0 compresses them in the thread of the caller
+     */
+    public ParallelGzipChannel( final WritableByteChannel channel, final int parallelism )
+    {
+        this.channel = channel;
+        this.parallelism = parallelism;
+        this.pool = 0 < parallelism ? Executors.newFixedThreadPool( parallelism ) : null;
+    }
+
+    @Override
+    public int write( final ByteBuffer source )
+        throws IOException
+    {
+        int written = source.remaining();
+        while ( source.hasRemaining() )
+        {
+            int count = Math.min( source.remaining(), BLOCK_SIZE - length );
+            source.get( block, length, count );
+            length += count;
+            if ( BLOCK_SIZE == length )
+            {
+                compressBlock();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Compress the bytes of the current block and write all members to the underlying channel. The written bytes form
+     * a complete gzip file.
+     * 
+     * @throws IOException will throws if a block can't be compressed or written
+     */
+    public void flush()
+        throws IOException
+    {
+        if ( 0 < length )
+        {
+            compressBlock();
+        }
+        while ( !members.isEmpty() )
+        {
+            writeMember();
+        }
+    }
+
+    private void compressBlock()
+        throws IOException
+    {
+        Compressor compressor = new Compressor( Arrays.copyOf( block, length ) );
+        if ( null == pool )
+        {
+            FutureTask<byte[]> member = new FutureTask<>( compressor );
+            member.run();
+            members.add( member );
+        }
+        else
+        {
+            members.add( pool.submit( compressor ) );
+        }
+        length = 0;
+        while ( members.size() > 2 * parallelism )
+        {
+            writeMember();
+        }
+    }
+
+    private void writeMember()
+        throws IOException
+    {
+        ByteBuffer member;
+        try
+        {
+            member = ByteBuffer.wrap( members.poll().get() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "interrupted while compressing the file", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new IOException( e.getCause() );
+        }
+        while ( member.hasRemaining() )
+        {
+            channel.write( member );
+        }
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open;
+    }
+
+    /**
+     * Write the compressed blocks and close the underlying channel.
+     * 
+     * @throws IOException will throws if a block can't be compressed or written
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if ( !open )
+        {
+            return;
+        }
+        open = false;
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            if ( null != pool )
+            {
+                pool.shutdownNow();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Compress one block into a gzip member.
+     */
+    private static final class Compressor
+        implements Callable<byte[]>
+    {
+        private final byte[] bytes;
+
+        private Compressor( final byte[] bytes )
+        {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public byte[] call()
+            throws IOException
+        {
+            ByteArrayOutputStream member = new ByteArrayOutputStream( bytes.length / 4 );
+            try (GZIPOutputStream out = new GZIPOutputStream( member ))
+            {
+                out.write( bytes );
+            }
+            return member.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class searches the lines of a text file, whose lines are sorted by their timestamps, by a binary search on the
+ * byte offset of the file. Every step reads only the line at the middle of the remaining range, so a file is searched
+ * with a logarithmic number of small reads instead of parsing all lines before the searched time. The subclasses parse
+ * the timestamp of a line.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public abstract class SortedLineSearch
+{
+    /**
+     * The time of a line without a timestamp, like a header line. Such a line is ordered before all other lines.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Create an object of the class {@link SortedLineSearch}.
+     * 
+     * @param maxLineLength <br>
+     *            the maximal number of bytes of a line without the line feed
+     */
+    protected SortedLineSearch( final int maxLineLength )
+    {
+        buffer = ByteBuffer.allocate( maxLineLength + 1 );
+    }
+
+    /**
+     * Parse the timestamp at the beginning of a line.
+     * 
+     * @param line <br>
+     *            the buffer with the line
+     * @param start <br>
+     *            the index of the first byte of the line
+     * @param end <br>
+     *            the index after the last byte of the line without the line separator
+     * @return the timestamp in milliseconds of the epoch, or {@link #NO_TIME} if the line has no timestamp
+     */
+    protected abstract long parseTime( ByteBuffer line, int start, int end );
+
+    /**
+     * Returns the offset of the first line with a timestamp at or after the time, or the size of the file if all lines
+     * are before the time.
+     * 
+     * @param channel <br>
+     *            the file to search
+     * @param time <br>
+     *            the searched time in milliseconds of the epoch
+     * @return
+     * @throws IOException will throws if the file can't be read or a line is too long
+     */
+    public long find( final FileChannel channel, final long time )
+        throws IOException
+    {
+        long size = channel.size();
+        long low = 0;
+        long high = size;
+        while ( low < high )
+        {
+            long middle = ( low + high ) >>> 1;
+            long lineStart = lineStart( channel, middle, size );
+            if ( lineStart == size || readTime( channel, lineStart ) >= time )
+            {
+                high = middle;
+            }
+            else
+            {
+                // all offsets up to the line start belong to the same line
+                low = Math.max( middle, lineStart ) + 1;
+            }
+        }
+        return lineStart( channel, low, size );
+    }
+
+    /**
+     * Returns the timestamp of the last line of the file.
+     * 
+     * @param channel <br>
+     *            the file to search
+     * @return the timestamp in milliseconds of the epoch, or {@link #NO_TIME} if the file has no line with a timestamp
+     * @throws IOException will throws if the file can't be read
+     */
+    public long findLast( final FileChannel channel )
+        throws IOException
+    {
+        long position = Math.max( 0, channel.size() - buffer.capacity() );
+        read( channel, position );
+        int end = buffer.limit();
+        while ( 0 < end && ( '\n' == buffer.get( end - 1 ) || '\r' == buffer.get( end - 1 ) ) )
+        {
+            end--;
+        }
+        int start = end;
+        while ( 0 < start && '\n' != buffer.get( start - 1 ) )
+        {
+            start--;
+        }
+        if ( start == end || ( 0 == start && 0 < position ) )
+        {
+            return NO_TIME;
+        }
+        return parseTime( buffer, start, end );
+    }
+
+    /**
+     * Returns the offset of the first line, which starts at or after the offset.
+     */
+    private long lineStart( final FileChannel channel, final long offset, final long size )
+        throws IOException
+    {
+        if ( 0 == offset || offset >= size )
+        {
+            return Math.min( offset, size );
+        }
+        read( channel, offset - 1 );
+        for ( int i = 0; i < buffer.limit(); i++ )
+        {
+            if ( '\n' == buffer.get( i ) )
+            {
+                return offset + i;
+            }
+        }
+        if ( offset - 1 + buffer.limit() == size )
+        {
+            return size;
+        }
+        throw new IOException( "a line near byte " + offset + " is longer than " + ( buffer.capacity() - 1 )
+            + " bytes" );
+    }
+
+    private long readTime( final FileChannel channel, final long lineStart )
+        throws IOException
+    {
+        read( channel, lineStart );
+        int end = 0;
+        while ( end < buffer.limit() && '\n' != buffer.get( end ) )
+        {
+            end++;
+        }
+        if ( 0 < end && '\r' == buffer.get( end - 1 ) )
+        {
+            end--;
+        }
+        return parseTime( buffer, 0, end );
+    }
+
+    /**
+     * Read the bytes from the offset into the buffer, until the buffer is full or the file ends.
+     */
+    private void read( final FileChannel channel, final long offset )
+        throws IOException
+    {
+        buffer.clear();
+        while ( buffer.hasRemaining() && 0 <= channel.read( buffer, offset + buffer.position() ) )
+        {
+            // read until the buffer is full or the file ends
+        }
+        buffer.flip();
+    }
+}
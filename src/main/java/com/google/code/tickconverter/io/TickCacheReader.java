@@ -0,0 +1,323 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.AppProperties;
+import com.google.code.tickconverter.util.Log;
+
+/**
+ * This class is a {@link DukascopyCsvReader}, which reads the ticks of a csv file from a columnar binary cache file.
+ * The cache is valid, if its header contains the size and the last modified time of the csv file, the date pattern
+ * and the time zone of the reader. A valid cache is memory mapped and decoded chunk by chunk, the chunks before the
+ * start time are skipped without decoding them. Otherwise the source reader parses the csv file and every block is
+ * also written into a new cache by a {@link TickCacheWriter}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class TickCacheReader
+    extends DukascopyCsvReader
+{
+    private static final Log LOG = Log.getLog( TickCacheReader.class );
+
+    /**
+     * The first bytes of a cache file.
+     */
+    public static final int MAGIC = 0x54434B31;
+
+    /**
+     * The extension of the cache files.
+     */
+    public static final String EXTENSION = ".ticks";
+
+    static final double[] SCALES = new double[TickCacheWriter.MAX_DIGITS + 1];
+
+    // the size of the mapped window of the cache file
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    static
+    {
+        double scale = 1;
+        for ( int i = 0; i < SCALES.length; i++ )
+        {
+            SCALES[i] = scale;
+            scale *= 10;
+        }
+    }
+
+    private final DukascopyCsvReader source;
+
+    private final Path cacheFile;
+
+    /**
+     * Constructor of class {@link TickCacheReader}.
+     * 
+     * @param dukaQueue <br>
+     *            the {@link BlockingQueue} of {@link TickBlock} to process
+     * @param source <br>
+     *            the reader of the csv file, if the cache isn't valid
+     * @param cacheFile <br>
+     *            the cache file
+     */
+    public TickCacheReader( final BlockingQueue<TickBlock> dukaQueue, final DukascopyCsvReader source,
+                            final Path cacheFile )
+    {
+        super( dukaQueue, source.getFilename() );
+        this.source = source;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Returns the cache file of a csv file in the directory. The name contains the name of the csv file and the hash
+     * of its absolute path, so csv files with the same name in other directories get other cache files.
+     * 
+     * @param directory <br>
+     *            the directory of the cache files
+     * @param filename <br>
+     *            the csv file
+     * @return
+     */
+    public static Path getCacheFile( final Path directory, final String filename )
+    {
+        Path path = Paths.get( filename ).toAbsolutePath().normalize();
+        return directory.resolve( path.getFileName() + "-" + Integer.toHexString( path.toString().hashCode() )
+            + EXTENSION );
+    }
+
+    /**
+     * Read the ticks from the cache file, if it's valid, otherwise parse the csv file by the source reader and write
+     * the cache file. If a start time is set and the cache isn't valid, the cache isn't written, because it would miss
+     * the ticks before the start time.
+     * 
+     * @param handler <br>
+     *            the {@link TickBlockHandler} of the blocks
+     * @throws IOException will throws if any I/O errors where occur of the process or the handler
+     * @throws ParseException will throws if a line of the csv file isn't a valid tick
+     * @throws InterruptedException will throws if the handler was interrupted
+     */
+    @Override
+    public void read( final TickBlockHandler handler )
+        throws IOException, ParseException, InterruptedException
+    {
+        Path sourceFile = Paths.get( getFilename() );
+        long size = Files.size( sourceFile );
+        long modified = Files.getLastModifiedTime( sourceFile ).toMillis();
+        String datePattern = AppProperties.getDatePattern();
+        String zone = getZone().getID();
+        if ( isValid( size, modified, datePattern, zone ) )
+        {
+            readCache( handler );
+            return;
+        }
+        source.setStartTime( getStartTime() );
+        source.setPriceDigits( getPriceDigits() );
+        source.setEndTime( getEndTime() );
+        source.setZone( getZone() );
+        if ( Long.MIN_VALUE != getStartTime() || Long.MAX_VALUE != getEndTime() )
+        {
+            source.read( handler );
+            return;
+        }
+
+        LOG.info( "write the ticks into the cache file: {}", cacheFile );
+        try (final TickCacheWriter writer = new TickCacheWriter( cacheFile, size, modified, datePattern, zone ))
+        {
+            source.read( new TickBlockHandler()
+            {
+                @Override
+                public void blockRead( final TickBlock block )
+                    throws IOException, InterruptedException
+                {
+                    writer.write( block );
+                    handler.blockRead( block );
+                }
+            } );
+            writer.commit();
+        }
+    }
+
+    private boolean isValid( final long size, final long modified, final String datePattern, final String zone )
+        throws IOException
+    {
+        if ( !Files.isRegularFile( cacheFile ) )
+        {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open( cacheFile, StandardOpenOption.READ ))
+        {
+            ByteBuffer header = ByteBuffer.allocate( (int) Math.min( channel.size(), 1 << 16 ) );
+            while ( header.hasRemaining() && 0 <= channel.read( header ) )
+            {
+                // read the header
+            }
+            header.flip();
+            return MAGIC == header.getInt() && size == header.getLong() && modified == header.getLong()
+                && datePattern.equals( getString( header ) ) && zone.equals( getString( header ) );
+        }
+        catch ( RuntimeException e )
+        {
+            // a short or damaged header
+            return false;
+        }
+    }
+
+    private static String getString( final ByteBuffer buffer )
+    {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private void readCache( final TickBlockHandler handler )
+        throws IOException, InterruptedException
+    {
+        LOG.info( "read the ticks from the cache file: {}", cacheFile );
+        long ticks = 0;
+        try (FileChannel channel = FileChannel.open( cacheFile, StandardOpenOption.READ ))
+        {
+            long size = channel.size();
+            MappedByteBuffer window = channel.map( MapMode.READ_ONLY, 0, Math.min( size, WINDOW_SIZE ) );
+            // skip the magic, the size and time of the source file, the date pattern and the zone
+            window.position( 4 + 8 + 8 );
+            getString( window );
+            getString( window );
+            long windowStart = 0;
+            while ( windowStart + window.position() < size )
+            {
+                if ( window.remaining() < 4 || window.remaining() < 4 + window.getInt( window.position() ) )
+                {
+                    // the next chunk ends after the window
+                    windowStart += window.position();
+                    window = channel.map( MapMode.READ_ONLY, windowStart, Math.min( size - windowStart, WINDOW_SIZE ) );
+                    if ( window.remaining() < 4 || window.remaining() < 4 + window.getInt( 0 ) )
+                    {
+                        throw new IOException( "the cache file ends in a chunk: " + cacheFile );
+                    }
+                }
+                int length = window.getInt();
+                int next = window.position() + length;
+                if ( window.getLong( window.position() + 4 ) >= getEndTime() )
+                {
+                    // the first tick of the chunk is after the window
+                    break;
+                }
+                TickBlock block = decodeChunk( window, getStartTime(), getPriceDigits() );
+                window.position( next );
+                if ( null != block )
+                {
+                    ticks += block.size();
+                    deliver( handler, block );
+                }
+            }
+        }
+        LOG.info( "read ticks from the cache: {}", ticks );
+    }
+
+    /**
+     * Decode the chunk at the position of the buffer.
+     * 
+     * @return the ticks at or after the start time, or <code>null</code> if the chunk contains no such tick
+     */
+    private static TickBlock decodeChunk( final ByteBuffer chunk, final long startTime, final int priceDigits )
+    {
+        int size = chunk.getInt();
+        long time = chunk.getLong();
+        if ( chunk.getLong() < startTime )
+        {
+            return null;
+        }
+        byte askDigits = chunk.get();
+        byte bidDigits = chunk.get();
+        byte askVolumeDigits = chunk.get();
+        byte bidVolumeDigits = chunk.get();
+
+        long[] timeStamps = new long[size];
+        timeStamps[0] = time;
+        for ( int i = 1; i < size; i++ )
+        {
+            time += getVarLong( chunk );
+            timeStamps[i] = time;
+        }
+        double[] asks = getColumn( chunk, size, askDigits, true );
+        double[] bids = getColumn( chunk, size, bidDigits, true );
+        double[] askVolumes = getColumn( chunk, size, askVolumeDigits, false );
+        double[] bidVolumes = getColumn( chunk, size, bidVolumeDigits, false );
+
+        // the fixed-point blocks round the prices to their points
+        TickBlock block = new TickBlock( size, priceDigits );
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( timeStamps[i] >= startTime )
+            {
+                block.add( timeStamps[i], asks[i], bids[i], askVolumes[i], bidVolumes[i] );
+            }
+        }
+        return block;
+    }
+
+    private static double[] getColumn( final ByteBuffer chunk, final int size, final byte digits,
+                                       final boolean delta )
+    {
+        double[] values = new double[size];
+        if ( TickCacheWriter.RAW_DOUBLES == digits )
+        {
+            for ( int i = 0; i < size; i++ )
+            {
+                values[i] = chunk.getDouble();
+            }
+            return values;
+        }
+        double scale = SCALES[digits];
+        long scaled = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            scaled = ( delta ? scaled : 0 ) + getVarLong( chunk );
+            values[i] = scaled / scale;
+        }
+        return values;
+    }
+
+    private static long getVarLong( final ByteBuffer buffer )
+    {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer.get();
+            zigzag |= (long) ( b & 0x7F ) << shift;
+            shift += 7;
+        }
+        while ( 0 > b );
+        return ( zigzag >>> 1 ) ^ -( zigzag & 1 );
+    }
+}
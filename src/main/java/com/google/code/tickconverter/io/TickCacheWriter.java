@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.google.code.tickconverter.bean.TickBlock;
+
+/**
+ * This class writes {@link TickBlock}s into the columnar cache file of a {@link TickCacheReader}. Every block is
+ * encoded as one chunk: a header with the number of ticks, the first and the last timestamp and the decimal digits of
+ * each price column, followed by the columns of the timestamps, the asks, the bids, the ask volumes and the bid
+ * volumes. The timestamps and the prices are stored as differences to the previous tick, the prices and volumes as
+ * integers scaled by the smallest power of ten, which restores the exact double. All integers are variable length
+ * zigzag encoded, a column without such a power of ten is stored as doubles. The file is written under a temporary
+ * name and moved to the cache file by {@link #commit()}, so an incomplete file is never read.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public class TickCacheWriter
+    implements Closeable
+{
+    /**
+     * The maximal number of decimal digits of a scaled column.
+     */
+    public static final int MAX_DIGITS = 9;
+
+    /**
+     * The marker of a column, which is stored as doubles.
+     */
+    public static final byte RAW_DOUBLES = -1;
+
+    // count, first and last time and the digits of the four price columns
+    static final int CHUNK_HEADER_LENGTH = 4 + 8 + 8 + 4;
+
+    // the maximal length of a variable length long
+    private static final int MAX_VARLONG_LENGTH = 10;
+
+    private final Path file;
+
+    private final Path temp;
+
+    private final FileChannel channel;
+
+    private ByteBuffer buffer = ByteBuffer.allocate( 1 << 16 );
+
+    private boolean committed;
+
+    /**
+     * Create the temporary file of the cache and write the header.
+     * 
+     * @param file <br>
+     *            the cache file
+     * @param sourceSize <br>
+     *            the size of the source file
+     * @param sourceModified <br>
+     *            the last modified time of the source file in milliseconds
+     * @param datePattern <br>
+     *            the date pattern of the source file
+     * @param zone <br>
+     *            the id of the time zone of the timestamps
+     * @throws IOException will throws if the file can't be created
+     */
+    public TickCacheWriter( final Path file, final long sourceSize, final long sourceModified,
+                            final String datePattern, final String zone )
+        throws IOException
+    {
+        this.file = file;
+        Path absolute = file.toAbsolutePath();
+        this.temp = absolute.resolveSibling( absolute.getFileName() + ".tmp" );
+        Files.createDirectories( absolute.getParent() );
+        channel =
+            FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING );
+        buffer.putInt( TickCacheReader.MAGIC );
+        buffer.putLong( sourceSize );
+        buffer.putLong( sourceModified );
+        putString( datePattern );
+        putString( zone );
+        writeBuffer();
+    }
+
+    private void putString( final String value )
+    {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        buffer.putShort( (short) bytes.length );
+        buffer.put( bytes );
+    }
+
+    /**
+     * Encode the block into a chunk of the cache.
+     * 
+     * @param block <br>
+     *            a block with at least one tick
+     * @throws IOException will throws if the chunk can't be written
+     */
+    public void write( final TickBlock block )
+        throws IOException
+    {
+        int size = block.size();
+        int capacity = 4 + CHUNK_HEADER_LENGTH + size * 5 * MAX_VARLONG_LENGTH;
+        if ( buffer.capacity() < capacity )
+        {
+            buffer = ByteBuffer.allocate( capacity );
+        }
+        double[] asks = new double[size];
+        double[] bids = new double[size];
+        double[] askVolumes = new double[size];
+        double[] bidVolumes = new double[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            asks[i] = block.getAsk( i );
+            bids[i] = block.getBid( i );
+            askVolumes[i] = block.getAskVolume( i );
+            bidVolumes[i] = block.getBidVolume( i );
+        }
+        byte askDigits = findDigits( asks );
+        byte bidDigits = findDigits( bids );
+        byte askVolumeDigits = findDigits( askVolumes );
+        byte bidVolumeDigits = findDigits( bidVolumes );
+
+        // the length of the chunk is set after the columns
+        buffer.position( 4 );
+        buffer.putInt( size );
+        buffer.putLong( block.getTimeStamp( 0 ) );
+        buffer.putLong( block.getTimeStamp( size - 1 ) );
+        buffer.put( askDigits ).put( bidDigits ).put( askVolumeDigits ).put( bidVolumeDigits );
+        long previous = block.getTimeStamp( 0 );
+        for ( int i = 1; i < size; i++ )
+        {
+            putVarLong( buffer, block.getTimeStamp( i ) - previous );
+            previous = block.getTimeStamp( i );
+        }
+        putColumn( asks, askDigits, true );
+        putColumn( bids, bidDigits, true );
+        putColumn( askVolumes, askVolumeDigits, false );
+        putColumn( bidVolumes, bidVolumeDigits, false );
+        buffer.putInt( 0, buffer.position() - 4 );
+        writeBuffer();
+    }
+
+    /**
+     * Returns the smallest number of decimal digits, which restores every value from its scaled integer, or
+     * {@link #RAW_DOUBLES}.
+     */
+    private static byte findDigits( final double[] values )
+    {
+        for ( byte digits = 0; digits <= MAX_DIGITS; digits++ )
+        {
+            double scale = TickCacheReader.SCALES[digits];
+            boolean exact = true;
+            for ( int i = 0; exact && i < values.length; i++ )
+            {
+                double scaled = values[i] * scale;
+                exact = Math.abs( scaled ) < 1L << 53 && Math.round( scaled ) / scale == values[i];
+            }
+            if ( exact )
+            {
+                return digits;
+            }
+        }
+        return RAW_DOUBLES;
+    }
+
+    private void putColumn( final double[] values, final byte digits, final boolean delta )
+    {
+        if ( RAW_DOUBLES == digits )
+        {
+            for ( double value : values )
+            {
+                buffer.putDouble( value );
+            }
+            return;
+        }
+        double scale = TickCacheReader.SCALES[digits];
+        long previous = 0;
+        for ( double value : values )
+        {
+            long scaled = Math.round( value * scale );
+            putVarLong( buffer, scaled - previous );
+            previous = delta ? scaled : 0;
+        }
+    }
+
+    private static void putVarLong( final ByteBuffer target, final long value )
+    {
+        long zigzag = ( value << 1 ) ^ ( value >> 63 );
+        while ( 0 != ( zigzag & ~0x7FL ) )
+        {
+            target.put( (byte) ( ( zigzag & 0x7F ) | 0x80 ) );
+            zigzag >>>= 7;
+        }
+        target.put( (byte) zigzag );
+    }
+
+    private void writeBuffer()
+        throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Close the temporary file and move it to the cache file.
+     * 
+     * @throws IOException will throws if the file can't be moved
+     */
+    public void commit()
+        throws IOException
+    {
+        channel.close();
+        Files.move( temp, file.toAbsolutePath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        committed = true;
+    }
+
+    /**
+     * Close the file and delete the temporary file, if it wasn't committed.
+     * 
+     * @throws IOException will throws if the file can't be deleted
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+        if ( !committed )
+        {
+            Files.deleteIfExists( temp );
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * This class decode the timestamps of the input file into milliseconds of the epoch. The date pattern is compiled one
+ * time into the fixed offsets of his fields, if it contains only the fixed width numbers <code>yyyy</code>,
+ * <code>MM</code>, <code>dd</code>, <code>HH</code>, <code>mm</code>, <code>ss</code>, <code>SSS</code> and literals.
+ * The epoch value of the current hour is cached, so only the minute, second and millisecond digits are decoded while
+ * the year, month, day and hour bytes don't change. All other patterns are parsed by a {@link SimpleDateFormat}.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public final class TimestampDecoder
+{
+    /**
+     * The value of {@link #decode(ByteBuffer, int, int)} for an invalid timestamp.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private final String pattern;
+
+    private final DateTimeZone zone;
+
+    private final SimpleDateFormat dateFormat;
+
+    private final int length;
+
+    private final int[] literalOffsets;
+
+    private final byte[] literals;
+
+    private final int[] hourOffsets;
+
+    private final int year;
+
+    private final int month;
+
+    private final int day;
+
+    private final int hour;
+
+    private final int minute;
+
+    private final int second;
+
+    private final int millis;
+
+    private final GregorianCalendar calendar;
+
+    private final byte[] cachedHourBytes;
+
+    private final int[] cachedHourFields;
+
+    private long cachedHourMillis;
+
+    private long cachedTransition;
+
+    private TimestampDecoder( final String pattern, final DateTimeZone zone, final int[] fields, final int length,
+                              final int[] literalOffsets, final byte[] literals )
+    {
+        this.pattern = pattern;
+        this.zone = zone;
+        this.length = length;
+        this.literalOffsets = literalOffsets;
+        this.literals = literals;
+        if ( null == fields )
+        {
+            dateFormat = new SimpleDateFormat( pattern );
+            dateFormat.setTimeZone( zone.toTimeZone() );
+            year = month = day = hour = minute = second = millis = -1;
+            hourOffsets = new int[0];
+        }
+        else
+        {
+            dateFormat = null;
+            year = fields[0];
+            month = fields[1];
+            day = fields[2];
+            hour = fields[3];
+            minute = fields[4];
+            second = fields[5];
+            millis = fields[6];
+            hourOffsets = hourOffsets( fields );
+        }
+        calendar = new GregorianCalendar( zone.toTimeZone() );
+        cachedHourBytes = new byte[hourOffsets.length];
+        cachedHourFields = new int[4];
+        cachedTransition = Long.MIN_VALUE;
+    }
+
+    /**
+     * Compile the date pattern for the timestamps in the default time zone.
+     * 
+     * @param pattern <br>
+     *            the date pattern like <code>dd.MM.yyyy HH:mm:ss.SSS</code>
+     * @return
+     */
+    public static TimestampDecoder compile( final String pattern )
+    {
+        return compile( pattern, DateTimeZone.getDefault() );
+    }
+
+    /**
+     * Compile the date pattern for the timestamps in the given time zone.
+     * 
+     * @param pattern <br>
+     *            the date pattern like <code>dd.MM.yyyy HH:mm:ss.SSS</code>
+     * @param zone <br>
+     *            the time zone of the timestamps
+     * @return
+     * @throws IllegalArgumentException will threw if the pattern isn't valid for a {@link SimpleDateFormat}
+     */
+    public static TimestampDecoder compile( final String pattern, final DateTimeZone zone )
+    {
+        // offsets of year, month, day, hour, minute, second and millisecond
+        int[] fields = new int[7];
+        Arrays.fill( fields, -1 );
+        int[] literalOffsets = new int[pattern.length()];
+        byte[] literals = new byte[pattern.length()];
+        int literalCount = 0;
+        int offset = 0;
+        int index = 0;
+        while ( null != fields && index < pattern.length() )
+        {
+            char letter = pattern.charAt( index );
+            int count = 1;
+            while ( index + count < pattern.length() && letter == pattern.charAt( index + count ) )
+            {
+                count++;
+            }
+
+            int field = fieldIndex( letter, count );
+            if ( 0 <= field && -1 == fields[field] )
+            {
+                fields[field] = offset;
+                offset += count;
+                index += count;
+            }
+            else if ( ( letter < 'a' || letter > 'z' ) && ( letter < 'A' || letter > 'Z' ) && '\'' != letter
+                && letter < 128 )
+            {
+                literalOffsets[literalCount] = offset;
+                literals[literalCount] = (byte) letter;
+                literalCount++;
+                offset++;
+                index++;
+            }
+            else
+            {
+                fields = null;
+            }
+        }
+
+        return new TimestampDecoder( pattern, zone, fields, offset, Arrays.copyOf( literalOffsets, literalCount ),
+                                     Arrays.copyOf( literals, literalCount ) );
+    }
+
+    private static int fieldIndex( final char letter, final int count )
+    {
+        switch ( letter )
+        {
+            case 'y':
+                return 4 == count ? 0 : -1;
+            case 'M':
+                return 2 == count ? 1 : -1;
+            case 'd':
+                return 2 == count ? 2 : -1;
+            case 'H':
+                return 2 == count ? 3 : -1;
+            case 'm':
+                return 2 == count ? 4 : -1;
+            case 's':
+                return 2 == count ? 5 : -1;
+            case 'S':
+                return 3 == count ? 6 : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static int[] hourOffsets( final int[] fields )
+    {
+        int[] widths = { 4, 2, 2, 2 };
+        int count = 0;
+        for ( int i = 0; i < widths.length; i++ )
+        {
+            count += 0 <= fields[i] ? widths[i] : 0;
+        }
+        int[] offsets = new int[count];
+        int index = 0;
+        for ( int i = 0; i < widths.length; i++ )
+        {
+            for ( int j = 0; 0 <= fields[i] && j < widths[i]; j++ )
+            {
+                offsets[index++] = fields[i] + j;
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns <code>true</code> if the pattern was compiled and the timestamps are decoded without
+     * {@link SimpleDateFormat}.
+     * 
+     * @return
+     */
+    public boolean isCompiled()
+    {
+        return null == dateFormat;
+    }
+
+    /**
+     * Returns the date pattern of this decoder.
+     * 
+     * @return
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * Decode the timestamp between the start and the end index of the buffer.
+     * 
+     * @param buffer <br>
+     *            the buffer with the bytes of the timestamp
+     * @param start <br>
+     *            the index of the first byte
+     * @param end <br>
+     *            the index after the last byte
+     * @return the timestamp in milliseconds of the epoch or {@link #INVALID}
+     */
+    public long decode( final ByteBuffer buffer, final int start, final int end )
+    {
+        if ( null != dateFormat )
+        {
+            return parse( buffer, start, end );
+        }
+        if ( length != end - start )
+        {
+            return INVALID;
+        }
+        for ( int i = 0; i < literals.length; i++ )
+        {
+            if ( literals[i] != buffer.get( start + literalOffsets[i] ) )
+            {
+                return INVALID;
+            }
+        }
+
+        if ( !isCachedHour( buffer, start ) && !cacheHour( buffer, start ) )
+        {
+            return INVALID;
+        }
+        int minuteValue = digits( buffer, start, minute, 2 );
+        int secondValue = digits( buffer, start, second, 2 );
+        int millisValue = digits( buffer, start, millis, 3 );
+        if ( minuteValue < 0 || minuteValue > 59 || secondValue < 0 || secondValue > 59 || millisValue < 0 )
+        {
+            return INVALID;
+        }
+
+        long timeStamp = cachedHourMillis + minuteValue * 60000L + secondValue * 1000L + millisValue;
+        if ( timeStamp >= cachedTransition )
+        {
+            // a transition of the time zone inside of the hour
+            calendar.clear();
+            calendar.set( cachedHourFields[0], cachedHourFields[1] - 1, cachedHourFields[2], cachedHourFields[3],
+                          minuteValue, secondValue );
+            calendar.set( Calendar.MILLISECOND, millisValue );
+            return calendar.getTimeInMillis();
+        }
+        return timeStamp;
+    }
+
+    private boolean isCachedHour( final ByteBuffer buffer, final int start )
+    {
+        if ( Long.MIN_VALUE == cachedTransition )
+        {
+            return false;
+        }
+        for ( int i = 0; i < hourOffsets.length; i++ )
+        {
+            if ( cachedHourBytes[i] != buffer.get( start + hourOffsets[i] ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean cacheHour( final ByteBuffer buffer, final int start )
+    {
+        int yearValue = 0 <= year ? digits( buffer, start, year, 4 ) : 1970;
+        int monthValue = 0 <= month ? digits( buffer, start, month, 2 ) : 1;
+        int dayValue = 0 <= day ? digits( buffer, start, day, 2 ) : 1;
+        int hourValue = 0 <= hour ? digits( buffer, start, hour, 2 ) : 0;
+        if ( yearValue < 0 || monthValue < 1 || monthValue > 12 || dayValue < 1 || dayValue > 31 || hourValue < 0
+            || hourValue > 23 )
+        {
+            return false;
+        }
+
+        // the calendar resolves gaps and overlaps of the time zone like the SimpleDateFormat
+        calendar.clear();
+        calendar.set( yearValue, monthValue - 1, dayValue, hourValue, 0, 0 );
+        cachedHourMillis = calendar.getTimeInMillis();
+        cachedHourFields[0] = yearValue;
+        cachedHourFields[1] = monthValue;
+        cachedHourFields[2] = dayValue;
+        cachedHourFields[3] = hourValue;
+        long transition = zone.nextTransition( cachedHourMillis );
+        cachedTransition = transition > cachedHourMillis ? transition : Long.MAX_VALUE;
+        for ( int i = 0; i < hourOffsets.length; i++ )
+        {
+            cachedHourBytes[i] = buffer.get( start + hourOffsets[i] );
+        }
+        return true;
+    }
+
+    /**
+     * Returns the digits as number, zero if the field isn't part of the pattern or a negative value if one byte isn't
+     * a digit.
+     */
+    private static int digits( final ByteBuffer buffer, final int start, final int offset, final int count )
+    {
+        if ( offset < 0 )
+        {
+            return 0;
+        }
+        int value = 0;
+        for ( int i = start + offset; i < start + offset + count; i++ )
+        {
+            int digit = buffer.get( i ) - '0';
+            if ( digit < 0 || digit > 9 )
+            {
+                return Integer.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private long parse( final ByteBuffer buffer, final int start, final int end )
+    {
+        byte[] bytes = new byte[end - start];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = buffer.get( start + i );
+        }
+        try
+        {
+            return dateFormat.parse( new String( bytes, StandardCharsets.US_ASCII ) ).getTime();
+        }
+        catch ( ParseException e )
+        {
+            return INVALID;
+        }
+    }
+}
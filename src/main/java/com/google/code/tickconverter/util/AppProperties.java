@@ -18,7 +18,24 @@
  */
 package com.google.code.tickconverter.util;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.io.DukascopyBi5Reader;
+import com.google.code.tickconverter.io.DukascopyCsvReader;
+import com.google.code.tickconverter.io.InputFormat;
+import com.google.code.tickconverter.io.OutputFormat;
 
 /**
  * This class is a final class with static method to get the config values of the command line.
@@ -28,6 +45,13 @@ import java.util.Properties;
 public final class AppProperties
 {
 
+    /**
+     * The characters of an inputfile, which mark a glob pattern.
+     */
+    public static final String GLOB_CHARACTERS = "*?[{";
+
+    private static final Pattern OFFSET_PATTERN = Pattern.compile( "([+-]?)(\\d{1,2})(?::(\\d{2}))?" );
+
     protected static Properties properties = new Properties();
 
     /**
@@ -82,4 +106,485 @@ public final class AppProperties
         return properties.getProperty( ConfigProperties.DATEPATTERN.getConfigName(),
                                        ConfigProperties.DATEPATTERN.getDefaultValue() );
     }
+
+    /**
+     * Returns the timeframes to convert the ticks.
+     * 
+     * @return
+     * @throws IllegalArgumentException will threw if the list contains an unknown timeframe
+     */
+    public static List<Timeframe> getTimeframes()
+    {
+        String value =
+            properties.getProperty( ConfigProperties.TIMEFRAMES.getConfigName(),
+                                    ConfigProperties.TIMEFRAMES.getDefaultValue() );
+        List<Timeframe> timeframes = new ArrayList<>();
+        for ( String name : StringUtils.split( value, ", " ) )
+        {
+            Timeframe timeframe = Timeframe.valueOf( name.toUpperCase() );
+            if ( !timeframes.contains( timeframe ) )
+            {
+                timeframes.add( timeframe );
+            }
+        }
+        return timeframes;
+    }
+
+    /**
+     * Returns the outputfile of a timeframe. If more than one timeframe is configured the name of the timeframe is
+     * added before the file extension, like <code>eurusd_M5.csv</code>.
+     * 
+     * @param timeframe
+     * @return
+     */
+    public static String getOutputFile( final Timeframe timeframe )
+    {
+        return getOutputFile( getOutputFile(), timeframe );
+    }
+
+    /**
+     * Returns the outputfile of a timeframe like {@link #getOutputFile(Timeframe)} for another outputfile.
+     * 
+     * @param outputFile <br>
+     *            the outputfile of all timeframes
+     * @param timeframe
+     * @return
+     */
+    public static String getOutputFile( final String outputFile, final Timeframe timeframe )
+    {
+        if ( 1 >= getTimeframes().size() )
+        {
+            return outputFile;
+        }
+        if ( outputFile.toLowerCase().endsWith( DukascopyCsvReader.GZIP_EXTENSION ) )
+        {
+            // the timeframe is added before the extension of the compressed file
+            int length = outputFile.length() - DukascopyCsvReader.GZIP_EXTENSION.length();
+            return getOutputFile( outputFile.substring( 0, length ), timeframe ) + outputFile.substring( length );
+        }
+
+        int extension = outputFile.lastIndexOf( '.' );
+        if ( extension <= Math.max( outputFile.lastIndexOf( '/' ), outputFile.lastIndexOf( '\\' ) ) )
+        {
+            return outputFile + "_" + timeframe;
+        }
+        return outputFile.substring( 0, extension ) + "_" + timeframe + outputFile.substring( extension );
+    }
+
+    /**
+     * Returns the number of threads to parse the inputfile in parallel. The value <code>0</code> means, that the
+     * inputfile is read in one thread.
+     * 
+     * @return
+     */
+    public static int getParallelism()
+    {
+        return Integer.parseInt( properties.getProperty( ConfigProperties.PARALLEL.getConfigName(),
+                                                         ConfigProperties.PARALLEL.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the format of the outputfile.
+     * 
+     * @return
+     * @throws IllegalArgumentException will threw if the format is unknown
+     */
+    public static OutputFormat getFormat()
+    {
+        String format =
+            properties.getProperty( ConfigProperties.FORMAT.getConfigName(),
+                                    ConfigProperties.FORMAT.getDefaultValue() );
+        return OutputFormat.valueOf( format.toUpperCase() );
+    }
+
+    /**
+     * Returns the format of the inputfile.
+     * 
+     * @return
+     * @throws IllegalArgumentException will threw if the format is unknown
+     */
+    public static InputFormat getInputFormat()
+    {
+        String format =
+            properties.getProperty( ConfigProperties.INPUTFORMAT.getConfigName(),
+                                    ConfigProperties.INPUTFORMAT.getDefaultValue() );
+        return InputFormat.valueOf( format.toUpperCase() );
+    }
+
+    /**
+     * Returns the symbol of a history file. If no symbol was set, the symbol is the beginning of the name of the
+     * inputfile until the first character which isn't a letter or a digit, like <code>CADJPY</code> of
+     * <code>CADJPY_tick.csv</code>. The name of binary files of Dukascopy is the directory above the directories of
+     * the date, like <code>EURUSD</code> of <code>EURUSD/2012/04/01/00h_ticks.bi5</code>.
+     * 
+     * @return
+     */
+    public static String getSymbol()
+    {
+        return getSymbol( getInputFile() );
+    }
+
+    /**
+     * Returns the symbol of a history file like {@link #getSymbol()} for another inputfile.
+     * 
+     * @param inputFile <br>
+     *            the inputfile to derive the symbol from
+     * @return
+     */
+    public static String getSymbol( final String inputFile )
+    {
+        String symbol =
+            properties.getProperty( ConfigProperties.SYMBOL.getConfigName(),
+                                    ConfigProperties.SYMBOL.getDefaultValue() );
+        if ( StringUtils.isNotBlank( symbol ) )
+        {
+            return symbol;
+        }
+        Path path = Paths.get( StringUtils.defaultString( inputFile ) );
+        if ( InputFormat.BI5 == getInputFormat() )
+        {
+            path = path.toAbsolutePath();
+            // skip the directories of the date and the file of the hour
+            while ( null != path.getParent() && Character.isDigit( path.getFileName().toString().charAt( 0 ) ) )
+            {
+                path = path.getParent();
+            }
+        }
+        String name = null == path.getFileName() ? "" : path.getFileName().toString();
+        int end = 0;
+        while ( end < name.length() && Character.isLetterOrDigit( name.charAt( end ) ) )
+        {
+            end++;
+        }
+        return name.substring( 0, end ).toUpperCase();
+    }
+
+    /**
+     * Returns the number of digits after the decimal point of the prices in the history file and of the fixed-point
+     * prices. Without the option the digits of Dukascopy for the symbol are used.
+     * 
+     * @param symbol <br>
+     *            the symbol of the inputfile like EURUSD
+     * @return
+     * @see DukascopyBi5Reader#getDigits(String)
+     */
+    public static int getDigits( final String symbol )
+    {
+        String digits = properties.getProperty( ConfigProperties.DIGITS.getConfigName(),
+                                                ConfigProperties.DIGITS.getDefaultValue() );
+        return StringUtils.isBlank( digits ) ? DukascopyBi5Reader.getDigits( symbol ) : Integer.parseInt( digits );
+    }
+
+    /**
+     * Returns the tick file of the strategy tester. If this was not set the return value is a blank string.
+     * 
+     * @return
+     */
+    public static String getFxtFile()
+    {
+        return properties.getProperty( ConfigProperties.FXTFILE.getConfigName(),
+                                       ConfigProperties.FXTFILE.getDefaultValue() );
+    }
+
+    /**
+     * Returns the number of ticks, which are handed over at once from the reader to the converter.
+     * 
+     * @return
+     */
+    public static int getBatchSize()
+    {
+        return Integer.parseInt( properties.getProperty( ConfigProperties.BATCHSIZE.getConfigName(),
+                                                         ConfigProperties.BATCHSIZE.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the capacity of the queue between the reader and the converter in blocks of ticks.
+     * 
+     * @return
+     */
+    public static int getTickQueueCapacity()
+    {
+        return Integer.parseInt( properties.getProperty( ConfigProperties.TICKQUEUE.getConfigName(),
+                                                         ConfigProperties.TICKQUEUE.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the capacity of each queue between the converter and a writer in bars.
+     * 
+     * @return
+     */
+    public static int getBarQueueCapacity()
+    {
+        return Integer.parseInt( properties.getProperty( ConfigProperties.BARQUEUE.getConfigName(),
+                                                         ConfigProperties.BARQUEUE.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the number of blocks of ticks, which the converter takes at once from its queue.
+     * 
+     * @return
+     */
+    public static int getTickBatchSize()
+    {
+        return Integer.parseInt( properties.getProperty( ConfigProperties.TICKBATCH.getConfigName(),
+                                                         ConfigProperties.TICKBATCH.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the number of bars, which each writer takes at once from its queue.
+     * 
+     * @return
+     */
+    public static int getBarBatchSize()
+    {
+        return Integer.parseInt( properties.getProperty( ConfigProperties.BARBATCH.getConfigName(),
+                                                         ConfigProperties.BARBATCH.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the execution mode of the stages.
+     * 
+     * @return
+     * @throws IllegalArgumentException will threw if the mode is unknown
+     */
+    public static ExecutionMode getMode()
+    {
+        return ExecutionMode.valueOf( properties.getProperty( ConfigProperties.MODE.getConfigName(),
+                                                              ConfigProperties.MODE.getDefaultValue() ).toUpperCase() );
+    }
+
+    /**
+     * Returns the size of an inputfile in bytes, up to the {@link ExecutionMode#AUTO} selects the
+     * {@link ExecutionMode#FUSED}.
+     * 
+     * @return
+     */
+    public static long getFusedSize()
+    {
+        return Long.parseLong( properties.getProperty( ConfigProperties.FUSEDSIZE.getConfigName(),
+                                                       ConfigProperties.FUSEDSIZE.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the {@link WaitStrategy} of the lock-free ring buffers between the threads, or <code>null</code> if the
+     * threads are connected by blocking queues.
+     * 
+     * @return
+     * @throws IllegalArgumentException will threw if the transport is unknown
+     */
+    public static WaitStrategy getWaitStrategy()
+    {
+        String transport =
+            properties.getProperty( ConfigProperties.TRANSPORT.getConfigName(),
+                                    ConfigProperties.TRANSPORT.getDefaultValue() );
+        if ( "lock".equalsIgnoreCase( transport ) )
+        {
+            return null;
+        }
+        return WaitStrategy.valueOf( transport.toUpperCase() );
+    }
+
+    /**
+     * Returns <code>true</code> if the inputfile is a directory or a glob pattern, whose csv files are converted by a
+     * batch of jobs. A directory of binary files of Dukascopy is converted as one inputfile.
+     * 
+     * @return
+     */
+    public static boolean isBatch()
+    {
+        String inputFile = StringUtils.defaultString( getInputFile() );
+        if ( InputFormat.BI5 == getInputFormat() )
+        {
+            return false;
+        }
+        return StringUtils.containsAny( inputFile, GLOB_CHARACTERS ) || Files.isDirectory( Paths.get( inputFile ) );
+    }
+
+    /**
+     * Returns the number of worker threads of a batch. If this was not set the number is the number of the available
+     * processors.
+     * 
+     * @return
+     */
+    public static int getWorkers()
+    {
+        int workers =
+            Integer.parseInt( properties.getProperty( ConfigProperties.WORKERS.getConfigName(),
+                                                      ConfigProperties.WORKERS.getDefaultValue() ) );
+        return 0 < workers ? workers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns <code>true</code> if the new bars are appended to existing outputfiles.
+     * 
+     * @return
+     */
+    public static boolean isAppend()
+    {
+        return Boolean.parseBoolean( properties.getProperty( ConfigProperties.APPEND.getConfigName(),
+                                                             ConfigProperties.APPEND.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the file of the checkpoint, or <code>null</code> if the conversion saves no checkpoints.
+     * 
+     * @return
+     */
+    public static Path getCheckpointFile()
+    {
+        String checkpoint = properties.getProperty( ConfigProperties.CHECKPOINT.getConfigName(),
+                                                    ConfigProperties.CHECKPOINT.getDefaultValue() );
+        return StringUtils.isBlank( checkpoint ) ? null : Paths.get( checkpoint );
+    }
+
+    /**
+     * Returns the bytes of the inputfile between two checkpoints.
+     * 
+     * @return
+     */
+    public static long getCheckpointSize()
+    {
+        return Long.parseLong( properties.getProperty( ConfigProperties.CHECKPOINTSIZE.getConfigName(),
+                                                       ConfigProperties.CHECKPOINTSIZE.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the directory of the cache files of the ticks, or <code>null</code> if the ticks aren't cached.
+     * 
+     * @return
+     */
+    public static Path getCacheDirectory()
+    {
+        String cache = properties.getProperty( ConfigProperties.CACHE.getConfigName(),
+                                               ConfigProperties.CACHE.getDefaultValue() );
+        return StringUtils.isBlank( cache ) ? null : Paths.get( cache );
+    }
+
+    /**
+     * Returns <code>true</code> if the prices are converted as fixed-point integers.
+     * 
+     * @return
+     */
+    public static boolean isFixedPoint()
+    {
+        return Boolean.parseBoolean( properties.getProperty( ConfigProperties.FIXEDPOINT.getConfigName(),
+                                                             ConfigProperties.FIXEDPOINT.getDefaultValue() ) );
+    }
+
+    /**
+     * Returns the time of the first tick to convert, or {@link Long#MIN_VALUE} if the conversion starts at the first
+     * tick.
+     * 
+     * @param zone <br>
+     *            the time zone of the timestamps of the inputfile
+     * @return
+     */
+    public static long getFromTime( final DateTimeZone zone )
+    {
+        String from = properties.getProperty( ConfigProperties.FROM.getConfigName(),
+                                              ConfigProperties.FROM.getDefaultValue() );
+        return StringUtils.isBlank( from ) ? Long.MIN_VALUE : parseTime( from, zone );
+    }
+
+    /**
+     * Returns the time after the last tick to convert, or {@link Long#MAX_VALUE} if the conversion stops at the last
+     * tick.
+     * 
+     * @param zone <br>
+     *            the time zone of the timestamps of the inputfile
+     * @return
+     */
+    public static long getToTime( final DateTimeZone zone )
+    {
+        String to =
+            properties.getProperty( ConfigProperties.TO.getConfigName(), ConfigProperties.TO.getDefaultValue() );
+        return StringUtils.isBlank( to ) ? Long.MAX_VALUE : parseTime( to, zone );
+    }
+
+    /**
+     * Parse a local time of the command line in the time zone of the timestamps of the ticks.
+     * 
+     * @param time <br>
+     *            an ISO date with an optional time, e.g. <code>2012-03-01</code> or <code>2012-03-01T08:00</code>
+     * @param zone <br>
+     *            the time zone of the timestamps of the inputfile
+     * @return the time in milliseconds of the epoch
+     * @throws IllegalArgumentException will throws if the time isn't valid
+     */
+    public static long parseTime( final String time, final DateTimeZone zone )
+    {
+        return ISODateTimeFormat.dateOptionalTimeParser().withZone( zone ).parseMillis( time );
+    }
+
+    /**
+     * Returns the time zone of the broker, or <code>null</code> if the times aren't shifted into a zone.
+     * 
+     * @return
+     */
+    public static DateTimeZone getTimeZone()
+    {
+        String zone = properties.getProperty( ConfigProperties.TIMEZONE.getConfigName(),
+                                              ConfigProperties.TIMEZONE.getDefaultValue() );
+        return StringUtils.isBlank( zone ) ? null : DateTimeZone.forID( zone );
+    }
+
+    /**
+     * Returns the fixed offset of the broker in milliseconds, 0 if the times aren't shifted by an offset.
+     * 
+     * @return
+     */
+    public static long getOffset()
+    {
+        String offset = properties.getProperty( ConfigProperties.OFFSET.getConfigName(),
+                                                ConfigProperties.OFFSET.getDefaultValue() );
+        return StringUtils.isBlank( offset ) ? 0 : parseOffset( offset );
+    }
+
+    /**
+     * Returns <code>true</code> if the times of the ticks are shifted into the time of the broker by a time zone or an
+     * offset. The times of the inputfile are UTC then.
+     * 
+     * @return
+     */
+    public static boolean isTimeShifted()
+    {
+        return null != getTimeZone() || 0 != getOffset();
+    }
+
+    /**
+     * Returns the time zone of the timestamps of the inputfile and of the bars: {@link DateTimeZone#UTC} if the times
+     * are shifted into the time of the broker, otherwise the default time zone.
+     * 
+     * @return
+     */
+    public static DateTimeZone getZone()
+    {
+        return isTimeShifted() ? DateTimeZone.UTC : DateTimeZone.getDefault();
+    }
+
+    /**
+     * Parse an offset of the command line.
+     * 
+     * @param offset <br>
+     *            the hours with an optional sign and optional minutes, e.g. <code>2</code>, <code>+3</code> or
+     *            <code>-03:30</code>
+     * @return the offset in milliseconds
+     * @throws IllegalArgumentException will throws if the offset isn't valid
+     */
+    public static long parseOffset( final String offset )
+    {
+        Matcher matcher = OFFSET_PATTERN.matcher( offset.trim() );
+        if ( !matcher.matches() )
+        {
+            throw new IllegalArgumentException( "invalid offset: " + offset );
+        }
+        int hours = Integer.parseInt( matcher.group( 2 ) );
+        int minutes = null == matcher.group( 3 ) ? 0 : Integer.parseInt( matcher.group( 3 ) );
+        if ( 23 < hours || 59 < minutes )
+        {
+            throw new IllegalArgumentException( "invalid offset: " + offset );
+        }
+        long millis = ( hours * 60L + minutes ) * 60 * 1000;
+        return "-".equals( matcher.group( 1 ) ) ? -millis : millis;
+    }
 }
@@ -34,6 +34,15 @@ import org.apache.commons.cli.OptionGroup;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTimeZone;
+
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.io.DukascopyBi5Reader;
+import com.google.code.tickconverter.io.DukascopyCsvReader;
+import com.google.code.tickconverter.io.InputFormat;
+import com.google.code.tickconverter.io.OutputFormat;
 
 /**
  * This final class parse the command line arguments to valid properties and set the information into the
@@ -145,15 +154,294 @@ public final class CommandLineProperties
             throw new PropertyException( "error of parsing was occupied" );
         }
 
-        Path inputfile = Paths.get( cmdLine.getOptionValue( ConfigProperties.INPUTFILE.getLongName() ) );
-        if ( !Files.exists( inputfile, LinkOption.NOFOLLOW_LINKS ) )
+        String input = cmdLine.getOptionValue( ConfigProperties.INPUTFILE.getLongName() );
+        String inputFormat = cmdLine.getOptionValue( ConfigProperties.INPUTFORMAT.getLongName(),
+                                                     ConfigProperties.INPUTFORMAT.getDefaultValue() );
+        boolean binary;
+        try
+        {
+            binary = InputFormat.BI5 == InputFormat.valueOf( inputFormat.toUpperCase() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new PropertyException( "unknown input format: " + inputFormat );
+        }
+        if ( binary )
+        {
+            Path inputfile = Paths.get( input );
+            if ( !Files.isDirectory( inputfile )
+                && !( Files.exists( inputfile ) && inputfile.toString().endsWith( DukascopyBi5Reader.EXTENSION ) ) )
+            {
+                throw new PropertyException( "input isn't a bi5 file or a directory" );
+            }
+            if ( StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.CHECKPOINT.getLongName() ) ) )
+            {
+                throw new PropertyException( "checkpoints of bi5 files aren't supported" );
+            }
+            if ( StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.CACHE.getLongName() ) ) )
+            {
+                throw new PropertyException( "bi5 files aren't cached" );
+            }
+        }
+        else if ( StringUtils.containsAny( input, AppProperties.GLOB_CHARACTERS )
+            || Files.isDirectory( Paths.get( input ) ) )
+        {
+            String output = cmdLine.getOptionValue( ConfigProperties.OUTPUTFILE.getLongName() );
+            if ( !output.contains( "{name}" ) )
+            {
+                throw new PropertyException( "output file of a directory or glob pattern needs the placeholder "
+                    + "{name}" );
+            }
+            String fxtFile = cmdLine.getOptionValue( ConfigProperties.FXTFILE.getLongName() );
+            if ( StringUtils.isNotBlank( fxtFile ) && !fxtFile.contains( "{name}" ) )
+            {
+                throw new PropertyException( "tick file of a directory or glob pattern needs the placeholder {name}" );
+            }
+        }
+        else
+        {
+            Path inputfile = Paths.get( input );
+            if ( !Files.exists( inputfile, LinkOption.NOFOLLOW_LINKS ) )
+            {
+                throw new PropertyException( "input file don't exist" );
+            }
+
+            if ( !inputfile.toString().endsWith( "csv" ) && !DukascopyCsvReader.isCompressed( inputfile.toString() ) )
+            {
+                throw new PropertyException( "input file isn't a csv, gzip or zip file" );
+            }
+        }
+
+        String timeframes = cmdLine.getOptionValue( ConfigProperties.TIMEFRAMES.getLongName() );
+        for ( String name : StringUtils.split( StringUtils.defaultString( timeframes ), ", " ) )
+        {
+            try
+            {
+                Timeframe.valueOf( name.toUpperCase() );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new PropertyException( "unknown timeframe: " + name );
+            }
+        }
+
+        String parallel = cmdLine.getOptionValue( ConfigProperties.PARALLEL.getLongName() );
+        if ( null != parallel && ( !StringUtils.isNumeric( parallel ) || StringUtils.isEmpty( parallel ) ) )
+        {
+            throw new PropertyException( "number of threads isn't a number: " + parallel );
+        }
+
+        String format = cmdLine.getOptionValue( ConfigProperties.FORMAT.getLongName(),
+                                                ConfigProperties.FORMAT.getDefaultValue() );
+        OutputFormat outputFormat;
+        try
+        {
+            outputFormat = OutputFormat.valueOf( format.toUpperCase() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new PropertyException( "unknown format: " + format );
+        }
+        if ( StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.FXTFILE.getLongName() ) ) )
+        {
+            String first =
+                StringUtils.split( StringUtils.defaultIfEmpty( timeframes,
+                                                               ConfigProperties.TIMEFRAMES.getDefaultValue() ),
+                                   ", " )[0];
+            if ( 0 == Timeframe.valueOf( first.toUpperCase() ).getMinutes() )
+            {
+                throw new PropertyException( "timeframe isn't supported by tick files: " + first );
+            }
+        }
+        if ( outputFormat.isHistory() )
+        {
+            for ( String name : StringUtils.split( StringUtils.defaultString( timeframes ), ", " ) )
+            {
+                if ( 0 == Timeframe.valueOf( name.toUpperCase() ).getMinutes() )
+                {
+                    throw new PropertyException( "timeframe isn't supported by history files: " + name );
+                }
+            }
+        }
+
+        String symbol = cmdLine.getOptionValue( ConfigProperties.SYMBOL.getLongName() );
+        if ( null != symbol && 11 < symbol.length() )
+        {
+            throw new PropertyException( "symbol is longer than 11 characters: " + symbol );
+        }
+
+        String digits = cmdLine.getOptionValue( ConfigProperties.DIGITS.getLongName() );
+        if ( null != digits && ( !StringUtils.isNumeric( digits ) || StringUtils.isEmpty( digits ) ) )
+        {
+            throw new PropertyException( "number of digits isn't a number: " + digits );
+        }
+        if ( null != digits && ( 2 < digits.length() || TickBlock.MAX_DIGITS < Integer.parseInt( digits ) ) )
+        {
+            throw new PropertyException( "number of digits is greater than " + TickBlock.MAX_DIGITS + ": " + digits );
+        }
+
+        checkPositiveNumber( ConfigProperties.BATCHSIZE, "batch size" );
+        checkPositiveNumber( ConfigProperties.TICKQUEUE, "capacity of the tick queue" );
+        checkPositiveNumber( ConfigProperties.BARQUEUE, "capacity of the bar queue" );
+        checkPositiveNumber( ConfigProperties.TICKBATCH, "batch size of the converter" );
+        checkPositiveNumber( ConfigProperties.BARBATCH, "batch size of the writers" );
+
+        String mode = cmdLine.getOptionValue( ConfigProperties.MODE.getLongName(),
+                                              ConfigProperties.MODE.getDefaultValue() );
+        try
+        {
+            ExecutionMode.valueOf( mode.toUpperCase() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new PropertyException( "unknown mode: " + mode );
+        }
+        String fusedSize = cmdLine.getOptionValue( ConfigProperties.FUSEDSIZE.getLongName() );
+        if ( null != fusedSize
+            && ( StringUtils.isEmpty( fusedSize ) || !StringUtils.isNumeric( fusedSize ) || 18 < fusedSize.length() ) )
         {
-            throw new PropertyException( "input file don't exist" );
+            throw new PropertyException( "fused size isn't a number: " + fusedSize );
         }
 
-        if ( !inputfile.toString().endsWith( "csv" ) )
+        String workers = cmdLine.getOptionValue( ConfigProperties.WORKERS.getLongName() );
+        if ( null != workers
+            && ( StringUtils.isEmpty( workers ) || !StringUtils.isNumeric( workers ) || 9 < workers.length() ) )
+        {
+            throw new PropertyException( "number of workers isn't a number: " + workers );
+        }
+
+        String append = cmdLine.getOptionValue( ConfigProperties.APPEND.getLongName() );
+        if ( null != append && !"true".equalsIgnoreCase( append ) && !"false".equalsIgnoreCase( append ) )
+        {
+            throw new PropertyException( "append isn't true or false: " + append );
+        }
+        String fixedPoint = cmdLine.getOptionValue( ConfigProperties.FIXEDPOINT.getLongName() );
+        if ( null != fixedPoint && !"true".equalsIgnoreCase( fixedPoint ) && !"false".equalsIgnoreCase( fixedPoint ) )
+        {
+            throw new PropertyException( "fixedpoint isn't true or false: " + fixedPoint );
+        }
+
+        if ( Boolean.parseBoolean( append )
+            && StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.FXTFILE.getLongName() ) ) )
+        {
+            throw new PropertyException( "tick files can't be appended" );
+        }
+        if ( Boolean.parseBoolean( append )
+            && cmdLine.getOptionValue( ConfigProperties.OUTPUTFILE.getLongName() ).toLowerCase()
+                .endsWith( DukascopyCsvReader.GZIP_EXTENSION ) )
+        {
+            throw new PropertyException( "gzip files can't be appended" );
+        }
+
+        if ( StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.CHECKPOINT.getLongName() ) ) )
+        {
+            if ( StringUtils.containsAny( input, AppProperties.GLOB_CHARACTERS )
+                || Files.isDirectory( Paths.get( input ) ) )
+            {
+                throw new PropertyException( "checkpoints of a directory or glob pattern aren't supported" );
+            }
+            if ( StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.FXTFILE.getLongName() ) ) )
+            {
+                throw new PropertyException( "checkpoints of tick files aren't supported" );
+            }
+            if ( DukascopyCsvReader.isCompressed( input ) )
+            {
+                throw new PropertyException( "checkpoints of compressed inputfiles aren't supported" );
+            }
+            if ( StringUtils.isNotBlank( cmdLine.getOptionValue( ConfigProperties.CACHE.getLongName() ) ) )
+            {
+                throw new PropertyException( "checkpoints of cached inputfiles aren't supported" );
+            }
+            if ( Boolean.parseBoolean( append ) )
+            {
+                throw new PropertyException( "checkpoints of appended outputfiles aren't supported" );
+            }
+        }
+        String checkpointSize = cmdLine.getOptionValue( ConfigProperties.CHECKPOINTSIZE.getLongName() );
+        if ( null != checkpointSize
+            && ( StringUtils.isEmpty( checkpointSize ) || !StringUtils.isNumeric( checkpointSize )
+                || 18 < checkpointSize.length() || 0 == Long.parseLong( checkpointSize ) ) )
+        {
+            throw new PropertyException( "checkpoint size isn't a positive number: " + checkpointSize );
+        }
+
+        String transport = cmdLine.getOptionValue( ConfigProperties.TRANSPORT.getLongName() );
+        if ( null != transport && !"lock".equalsIgnoreCase( transport ) )
+        {
+            try
+            {
+                WaitStrategy.valueOf( transport.toUpperCase() );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new PropertyException( "unknown transport: " + transport );
+            }
+        }
+
+        String zone = cmdLine.getOptionValue( ConfigProperties.TIMEZONE.getLongName() );
+        if ( StringUtils.isNotBlank( zone ) )
+        {
+            try
+            {
+                DateTimeZone.forID( zone );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new PropertyException( "unknown time zone: " + zone );
+            }
+        }
+        String offset = cmdLine.getOptionValue( ConfigProperties.OFFSET.getLongName() );
+        if ( StringUtils.isNotBlank( offset ) )
+        {
+            try
+            {
+                AppProperties.parseOffset( offset );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                throw new PropertyException( "invalid offset: " + offset );
+            }
+        }
+
+        // the times are local times of the inputfile, which is UTC if the ticks are shifted into the time of a broker
+        boolean shifted = StringUtils.isNotBlank( zone ) || ( StringUtils.isNotBlank( offset )
+            && 0 != AppProperties.parseOffset( offset ) );
+        DateTimeZone timeZone = shifted ? DateTimeZone.UTC : DateTimeZone.getDefault();
+        long from = checkTime( ConfigProperties.FROM, Long.MIN_VALUE, timeZone );
+        long to = checkTime( ConfigProperties.TO, Long.MAX_VALUE, timeZone );
+        if ( from >= to )
+        {
+            throw new PropertyException( "the from time isn't before the to time" );
+        }
+    }
+
+    private long checkTime( final ConfigProperties property, final long defaultTime, final DateTimeZone zone )
+        throws PropertyException
+    {
+        String value = cmdLine.getOptionValue( property.getLongName() );
+        if ( StringUtils.isBlank( value ) )
+        {
+            return defaultTime;
+        }
+        try
+        {
+            return AppProperties.parseTime( value, zone );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new PropertyException( "invalid " + property.getLongName() + " time: " + value );
+        }
+    }
+
+    private void checkPositiveNumber( final ConfigProperties property, final String name )
+        throws PropertyException
+    {
+        String value = cmdLine.getOptionValue( property.getLongName() );
+        if ( null != value
+            && ( StringUtils.isEmpty( value ) || !StringUtils.isNumeric( value ) || 9 < value.length()
+                || 0 == Integer.parseInt( value ) ) )
         {
-            throw new PropertyException( "input file isn't a csv file" );
+            throw new PropertyException( name + " isn't a positive number: " + value );
         }
     }
 }
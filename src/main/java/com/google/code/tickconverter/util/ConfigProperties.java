@@ -29,21 +29,21 @@ import org.apache.commons.cli.OptionBuilder;
 public enum ConfigProperties
 {
     /**
-     * Inputfile to read the dukascopy objects into the application.
+     * Inputfile to read the dukascopy objects into the application, or a directory or glob pattern of inputfiles.
      */
     @SuppressWarnings( "static-access" )
     INPUTFILE(
         "app.input",
-        OptionBuilder.withLongOpt( "inputfile" ).withDescription( "inputfile to read the dukascopy objects" ).withArgName( "FILE" ).isRequired( true ).hasArg().create( 'i' ),
+        OptionBuilder.withLongOpt( "inputfile" ).withDescription( "inputfile to read the dukascopy objects, also compressed as .gz or as members of a .zip archive, or a directory or glob pattern like data/*/2012*.csv to convert all matching csv files" ).withArgName( "FILE" ).isRequired( true ).hasArg().create( 'i' ),
         "" ),
 
     /**
-     * Outputfile to write the parsed metatrader objects to this file.
+     * Outputfile to write the parsed metatrader objects to this file, or the template of the outputfiles.
      */
     @SuppressWarnings( "static-access" )
     OUTPUTFILE(
         "app.output",
-        OptionBuilder.withLongOpt( "outputfile" ).withDescription( "outputfile to write the metatrader object" ).withArgName( "FILE" ).isRequired( true ).hasArg().create( 'o' ),
+        OptionBuilder.withLongOpt( "outputfile" ).withDescription( "outputfile to write the metatrader object, or the template of the outputfiles of a directory or glob pattern with the placeholders {name}, {parent} and {symbol}" ).withArgName( "FILE" ).isRequired( true ).hasArg().create( 'o' ),
         "" ),
 
     /**
@@ -71,7 +71,232 @@ public enum ConfigProperties
     DATEPATTERN(
         "app.datepattern",
         OptionBuilder.withLongOpt( "datepattern" ).withDescription( "date patter to specify the date format from input file like dd.MM.yyyy HH:mm:ss.SSS" ).withArgName( "PATTER" ).hasArg().create( 'p' ),
-        "dd.MM.yyyy HH:mm:ss.SSS" );
+        "dd.MM.yyyy HH:mm:ss.SSS" ),
+
+    /**
+     * The comma separated list of timeframes to convert the ticks in one pass.
+     */
+    @SuppressWarnings( "static-access" )
+    TIMEFRAMES(
+        "app.timeframes",
+        OptionBuilder.withLongOpt( "timeframes" ).withDescription( "comma separated list of timeframes like S10,M1,M5,H1,D1,W1,MN1. With more than one timeframe the name of the timeframe is added to the outputfile" ).withArgName( "LIST" ).hasArg().create( 't' ),
+        "M1" ),
+
+    /**
+     * The number of threads to parse a memory mapped input file in parallel.
+     */
+    @SuppressWarnings( "static-access" )
+    PARALLEL(
+        "app.parallel",
+        OptionBuilder.withLongOpt( "parallel" ).withDescription( "number of threads to parse the memory mapped inputfile, to decode the bi5 files or to compress outputfiles ending with .gz in parallel, 0 reads the inputfile in one thread and compresses in one thread" ).withArgName( "THREADS" ).hasArg().create( 'P' ),
+        "0" ),
+
+    /**
+     * The format of the outputfile.
+     */
+    @SuppressWarnings( "static-access" )
+    FORMAT(
+        "app.format",
+        OptionBuilder.withLongOpt( "format" ).withDescription( "format of the outputfile: csv, hst400 or hst401 for the history files of metatrader 4" ).withArgName( "FORMAT" ).hasArg().create( 'f' ),
+        "csv" ),
+
+    /**
+     * The format of the inputfile.
+     */
+    @SuppressWarnings( "static-access" )
+    INPUTFORMAT(
+        "app.inputformat",
+        OptionBuilder.withLongOpt( "inputformat" ).withDescription( "format of the inputfile: csv (default) or bi5 for a binary file of Dukascopy or a directory with these files in the layout yyyy/MM/dd/HHh_ticks.bi5, which are decoded by the threads of --parallel" ).withArgName( "FORMAT" ).hasArg().create( 'F' ),
+        "csv" ),
+
+    /**
+     * The symbol in the header of a history file.
+     */
+    @SuppressWarnings( "static-access" )
+    SYMBOL(
+        "app.symbol",
+        OptionBuilder.withLongOpt( "symbol" ).withDescription( "symbol of the history file, default is the beginning of the inputfile name like CADJPY of CADJPY_tick.csv" ).withArgName( "SYMBOL" ).hasArg().create( 's' ),
+        "" ),
+
+    /**
+     * The number of digits of the prices in the header of a history file.
+     */
+    @SuppressWarnings( "static-access" )
+    DIGITS(
+        "app.digits",
+        OptionBuilder.withLongOpt( "digits" ).withDescription( "number of digits after the decimal point of the prices in the history file and of the fixed-point prices, default 3 for the pairs of the yen, gold and silver and 5 for the others" ).withArgName( "DIGITS" ).hasArg().create( 'd' ),
+        "" ),
+
+    /**
+     * The tick file of the strategy tester, which is written in the same pass like the bars.
+     */
+    @SuppressWarnings( "static-access" )
+    FXTFILE(
+        "app.fxtfile",
+        OptionBuilder.withLongOpt( "fxtfile" ).withDescription( "tick file of the metatrader 4 strategy tester with the bars of the first timeframe" ).withArgName( "FILE" ).hasArg().create( 'x' ),
+        "" ),
+
+    /**
+     * The number of ticks, which the reader hands over to the converter at once.
+     */
+    @SuppressWarnings( "static-access" )
+    BATCHSIZE(
+        "app.batchsize",
+        OptionBuilder.withLongOpt( "batchsize" ).withDescription( "number of ticks, which are handed over at once from the reader to the converter" ).withArgName( "TICKS" ).hasArg().create( 'b' ),
+        "4096" ),
+
+    /**
+     * The capacity of the queue between the reader and the converter in blocks of ticks.
+     */
+    @SuppressWarnings( "static-access" )
+    TICKQUEUE(
+        "app.tickqueue",
+        OptionBuilder.withLongOpt( "tickqueue" ).withDescription( "capacity of the queue between the reader and the converter in blocks of ticks, the reader waits if it is full" ).withArgName( "BLOCKS" ).hasArg().create( 'T' ),
+        "32" ),
+
+    /**
+     * The capacity of each queue between the converter and a writer in bars.
+     */
+    @SuppressWarnings( "static-access" )
+    BARQUEUE(
+        "app.barqueue",
+        OptionBuilder.withLongOpt( "barqueue" ).withDescription( "capacity of the queue between the converter and each writer in bars, the converter waits if it is full" ).withArgName( "BARS" ).hasArg().create( 'B' ),
+        "4096" ),
+
+    /**
+     * The number of blocks of ticks, which the converter takes at once from its queue.
+     */
+    @SuppressWarnings( "static-access" )
+    TICKBATCH(
+        "app.tickbatch",
+        OptionBuilder.withLongOpt( "tickbatch" ).withDescription( "number of blocks of ticks, which the converter takes at once from its queue, the bars completed by them are handed over at once to the writers" ).withArgName( "BLOCKS" ).hasArg().create( 'n' ),
+        "16" ),
+
+    /**
+     * The number of bars, which each writer takes at once from its queue.
+     */
+    @SuppressWarnings( "static-access" )
+    BARBATCH(
+        "app.barbatch",
+        OptionBuilder.withLongOpt( "barbatch" ).withDescription( "number of bars, which each writer takes at once from its queue" ).withArgName( "BARS" ).hasArg().create( 'N' ),
+        "1024" ),
+
+    /**
+     * The execution mode of the stages.
+     */
+    @SuppressWarnings( "static-access" )
+    MODE(
+        "app.mode",
+        OptionBuilder.withLongOpt( "mode" ).withDescription( "fused runs reader, converter and writers in one thread, threads runs them in own threads, auto (default) selects fused for inputfiles smaller than the fusedsize" ).withArgName( "MODE" ).hasArg().create( 'm' ),
+        "auto" ),
+
+    /**
+     * The size of an inputfile in bytes up to the mode auto selects the fused mode.
+     */
+    @SuppressWarnings( "static-access" )
+    FUSEDSIZE(
+        "app.fusedsize",
+        OptionBuilder.withLongOpt( "fusedsize" ).withDescription( "size of an inputfile in bytes, up to the mode auto runs in one thread" ).withArgName( "BYTES" ).hasArg().create( 'z' ),
+        "16777216" ),
+
+    /**
+     * The transport of the ticks and bars between the threads.
+     */
+    @SuppressWarnings( "static-access" )
+    TRANSPORT(
+        "app.transport",
+        OptionBuilder.withLongOpt( "transport" ).withDescription( "queue between the threads: lock (default) for blocking queues, or spin, yield or park for lock-free ring buffers, which wait by busy spinning, yielding or parking" ).withArgName( "TRANSPORT" ).hasArg().create( 'q' ),
+        "lock" ),
+
+    /**
+     * The number of worker threads to convert the inputfiles of a directory or glob pattern.
+     */
+    @SuppressWarnings( "static-access" )
+    WORKERS(
+        "app.workers",
+        OptionBuilder.withLongOpt( "workers" ).withDescription( "number of threads to convert the files of a directory or glob pattern, 0 (default) for the number of cores" ).withArgName( "COUNT" ).hasArg().create( 'w' ),
+        "0" ),
+
+    /**
+     * Append the new bars to existing outputfiles.
+     */
+    @SuppressWarnings( "static-access" )
+    APPEND(
+        "app.append",
+        OptionBuilder.withLongOpt( "append" ).withDescription( "true to keep the bars of existing outputfiles and convert only the ticks from the start of their last bar, the inputfile must contain these ticks; default false" ).withArgName( "BOOLEAN" ).hasArg().create( 'a' ),
+        "false" ),
+
+    /**
+     * The file of the checkpoint to restart an interrupted conversion.
+     */
+    @SuppressWarnings( "static-access" )
+    CHECKPOINT(
+        "app.checkpoint",
+        OptionBuilder.withLongOpt( "checkpoint" ).withDescription( "file to save the state of the conversion periodically, an interrupted conversion restarts from this file; converts in one thread" ).withArgName( "FILE" ).hasArg().create( 'k' ),
+        "" ),
+
+    /**
+     * The bytes of the inputfile between two checkpoints.
+     */
+    @SuppressWarnings( "static-access" )
+    CHECKPOINTSIZE(
+        "app.checkpointsize",
+        OptionBuilder.withLongOpt( "checkpointsize" ).withDescription( "bytes of the inputfile between two checkpoints, default 268435456" ).withArgName( "BYTES" ).hasArg().create( 'K' ),
+        "268435456" ),
+
+    /**
+     * The directory of the binary cache files of the ticks.
+     */
+    @SuppressWarnings( "static-access" )
+    CACHE(
+        "app.cache",
+        OptionBuilder.withLongOpt( "cache" ).withDescription( "directory of binary cache files, the ticks of a csv file are written into a cache file at the first conversion and read from it at the next conversions, while the csv file is unchanged" ).withArgName( "DIR" ).hasArg().create( 'C' ),
+        "" ),
+
+    /**
+     * The time of the first tick to convert.
+     */
+    @SuppressWarnings( "static-access" )
+    FROM(
+        "app.from",
+        OptionBuilder.withLongOpt( "from" ).withDescription( "convert the ticks at or after this local time of the inputfile, e.g. 2012-03-01 or 2012-03-01T08:00" ).withArgName( "TIME" ).hasArg().create( 'g' ),
+        "" ),
+
+    /**
+     * The time after the last tick to convert.
+     */
+    @SuppressWarnings( "static-access" )
+    TO(
+        "app.to",
+        OptionBuilder.withLongOpt( "to" ).withDescription( "convert the ticks before this local time of the inputfile, e.g. 2012-04-01" ).withArgName( "TIME" ).hasArg().create( 'e' ),
+        "" ),
+
+    /**
+     * Convert the prices as fixed-point integers.
+     */
+    @SuppressWarnings( "static-access" )
+    FIXEDPOINT(
+        "app.fixedpoint",
+        OptionBuilder.withLongOpt( "fixedpoint" ).withDescription( "true to parse the prices into integer points of the --digits, and to convert them with exact integer arithmetic; default false" ).withArgName( "BOOLEAN" ).hasArg().create( 'j' ),
+        "false" ),
+
+    /**
+     * The time zone of the broker.
+     */
+    @SuppressWarnings( "static-access" )
+    TIMEZONE(
+        "app.timezone",
+        OptionBuilder.withLongOpt( "timezone" ).withDescription( "time zone of the broker like Europe/Athens, the times of the inputfile are read as UTC and shifted into the time of this zone with its daylight saving time before they are converted into bars" ).withArgName( "ZONE" ).hasArg().create( 'Z' ),
+        "" ),
+
+    /**
+     * The fixed offset of the broker.
+     */
+    @SuppressWarnings( "static-access" )
+    OFFSET(
+        "app.offset",
+        OptionBuilder.withLongOpt( "offset" ).withDescription( "hours like 2 or -03:30, the times of the inputfile are read as UTC and shifted by this offset, with --timezone in addition to the offset of the zone, e.g. --timezone America/New_York --offset 7 for a broker at GMT+2 in winter and GMT+3 in summer" ).withArgName( "HOURS" ).hasArg().create( 'O' ),
+        "" );
 
     private final String longName;
 
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+/**
+ * Facade of the logging for one class. Every class holds a static instance, so no stack is walked to find the logger
+ * of the caller. The messages are patterns with <code>{}</code> as placeholders of the arguments, they are formatted
+ * only if the level is enabled. With one or two arguments no array is created, so a disabled call costs the check of
+ * the level. The debug messages of the ticks, blocks and bars are passed to
+ * {@link #debugSampled(String, Object)}, which logs at most one message per second.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public final class Log
+{
+
+    /**
+     * The nanoseconds between two sampled debug messages.
+     */
+    public static final long SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos( 1 );
+
+    private static final String PLACEHOLDER = "{}";
+
+    /**
+     * The logging reference for errors
+     */
+    private static final Logger errorLogger = Logger.getLogger( "Error" );
+
+    private final Logger logger;
+
+    private final AtomicLong lastSample = new AtomicLong( System.nanoTime() - SAMPLE_INTERVAL );
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private Log( final Logger logger )
+    {
+        this.logger = logger;
+    }
+
+    /**
+     * Returns the {@link Log} of the class, which is held in a static field of the class.
+     * 
+     * @param type <br>
+     *            the class, which is the name of the logger
+     * @return
+     */
+    public static Log getLog( final Class<?> type )
+    {
+        return new Log( Logger.getLogger( type ) );
+    }
+
+    /**
+     * Returns <code>true</code> if the debug messages are logged.
+     * 
+     * @return
+     */
+    public boolean isDebugEnabled()
+    {
+        return logger.isDebugEnabled();
+    }
+
+    /**
+     * Create a new logging entry for debug message.
+     * 
+     * @param message
+     */
+    public void debug( final String message )
+    {
+        logger.debug( message );
+    }
+
+    /**
+     * Create a new logging entry for debug message with one argument.
+     * 
+     * @param pattern
+     * @param arg
+     */
+    public void debug( final String pattern, final Object arg )
+    {
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( format( pattern, arg ) );
+        }
+    }
+
+    /**
+     * Create a new logging entry for debug message with two arguments.
+     * 
+     * @param pattern
+     * @param arg1
+     * @param arg2
+     */
+    public void debug( final String pattern, final Object arg1, final Object arg2 )
+    {
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( format( pattern, arg1, arg2 ) );
+        }
+    }
+
+    /**
+     * Create a new logging entry for debug message of the hot path, at most one per {@link #SAMPLE_INTERVAL}. The
+     * number of the suppressed messages since the last one is appended.
+     * 
+     * @param pattern
+     * @param arg
+     */
+    public void debugSampled( final String pattern, final Object arg )
+    {
+        if ( logger.isDebugEnabled() && isSampled() )
+        {
+            debugSample( format( pattern, arg ) );
+        }
+    }
+
+    /**
+     * Create a new logging entry for debug message of the hot path with two arguments, at most one per
+     * {@link #SAMPLE_INTERVAL}.
+     * 
+     * @param pattern
+     * @param arg1
+     * @param arg2
+     * @see #debugSampled(String, Object)
+     */
+    public void debugSampled( final String pattern, final Object arg1, final Object arg2 )
+    {
+        if ( logger.isDebugEnabled() && isSampled() )
+        {
+            debugSample( format( pattern, arg1, arg2 ) );
+        }
+    }
+
+    private boolean isSampled()
+    {
+        long last = lastSample.get();
+        long now = System.nanoTime();
+        if ( now - last < SAMPLE_INTERVAL || !lastSample.compareAndSet( last, now ) )
+        {
+            suppressed.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void debugSample( final String message )
+    {
+        long count = suppressed.getAndSet( 0 );
+        logger.debug( 0 == count ? message : message + " (" + count + " suppressed)" );
+    }
+
+    /**
+     * Create a new logging entry for info.
+     * 
+     * @param message
+     */
+    public void info( final String message )
+    {
+        logger.info( message );
+    }
+
+    /**
+     * Create a new logging entry for info with one argument.
+     * 
+     * @param pattern
+     * @param arg
+     */
+    public void info( final String pattern, final Object arg )
+    {
+        if ( logger.isInfoEnabled() )
+        {
+            logger.info( format( pattern, arg ) );
+        }
+    }
+
+    /**
+     * Create a new logging entry for info with two arguments.
+     * 
+     * @param pattern
+     * @param arg1
+     * @param arg2
+     */
+    public void info( final String pattern, final Object arg1, final Object arg2 )
+    {
+        if ( logger.isInfoEnabled() )
+        {
+            logger.info( format( pattern, arg1, arg2 ) );
+        }
+    }
+
+    /**
+     * Create a new logging entry for warn with one argument.
+     * 
+     * @param pattern
+     * @param arg
+     */
+    public void warn( final String pattern, final Object arg )
+    {
+        if ( logger.isEnabledFor( Level.WARN ) )
+        {
+            logger.warn( format( pattern, arg ) );
+        }
+    }
+
+    /**
+     * Create a new logging entry for error message and throwable in the logger of the errors.
+     * 
+     * @param message
+     * @param t
+     */
+    public void error( final String message, final Throwable t )
+    {
+        errorLogger.error( message, t );
+    }
+
+    /**
+     * Create a new logging entry for error message with one argument and throwable in the logger of the errors.
+     * 
+     * @param pattern
+     * @param arg
+     * @param t
+     */
+    public void error( final String pattern, final Object arg, final Throwable t )
+    {
+        if ( errorLogger.isEnabledFor( Level.ERROR ) )
+        {
+            errorLogger.error( format( pattern, arg ), t );
+        }
+    }
+
+    /**
+     * Replace the placeholders <code>{}</code> of the pattern by the arguments in their order. Surplus placeholders
+     * are kept, surplus arguments are ignored.
+     * 
+     * @param pattern <br>
+     *            the message with placeholders
+     * @param args <br>
+     *            the arguments
+     * @return the formatted message
+     */
+    static String format( final String pattern, final Object... args )
+    {
+        StringBuilder builder = new StringBuilder( pattern.length() + 16 * args.length );
+        int start = 0;
+        for ( Object arg : args )
+        {
+            int index = pattern.indexOf( PLACEHOLDER, start );
+            if ( 0 > index )
+            {
+                break;
+            }
+            builder.append( pattern, start, index ).append( arg );
+            start = index + PLACEHOLDER.length();
+        }
+        return builder.append( pattern, start, pattern.length() ).toString();
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.util;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a bounded {@link BlockingQueue} for exactly one producer thread and one consumer thread. The elements
+ * are stored in a preallocated array, whose slots are reused in place, so there is no allocation and no lock on
+ * {@link #put(Object)} and {@link #take()}. The producer publishes an element by an ordered write of the tail position
+ * and the consumer frees the slot by an ordered write of the head position. A thread, which has to wait for the other
+ * side, waits by the configured {@link WaitStrategy}.
+ * <p>
+ * The queue isn't safe for more than one producer or more than one consumer. The {@link #iterator()} is weakly
+ * consistent and can't remove elements.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ * @param <E> the type of the elements
+ */
+public class SpscRingBuffer<E>
+    extends AbstractQueue<E>
+    implements BlockingQueue<E>
+{
+    private final Object[] slots;
+
+    private final int mask;
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The position of the next element to take, only written by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The position of the next element to put, only written by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The last head seen by the producer.
+     */
+    private long producerHead;
+
+    /**
+     * The last tail seen by the consumer.
+     */
+    private long consumerTail;
+
+    /**
+     * Create an object of the class {@link SpscRingBuffer}. The capacity is rounded up to the next power of two.
+     * 
+     * @param capacity <br>
+     *            the minimal number of elements of the buffer
+     * @param waitStrategy <br>
+     *            the {@link WaitStrategy} of a thread, which has to wait for the other side
+     */
+    public SpscRingBuffer( final int capacity, final WaitStrategy waitStrategy )
+    {
+        if ( 0 >= capacity || 1 << 30 < capacity )
+        {
+            throw new IllegalArgumentException( "invalid capacity: " + capacity );
+        }
+        int size = Integer.highestOneBit( capacity );
+        if ( size < capacity )
+        {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Returns the number of slots of the buffer.
+     * 
+     * @return
+     */
+    public int getCapacity()
+    {
+        return slots.length;
+    }
+
+    @Override
+    public boolean offer( final E e )
+    {
+        if ( null == e )
+        {
+            throw new NullPointerException();
+        }
+        long position = tail.get();
+        if ( position - producerHead >= slots.length )
+        {
+            producerHead = head.get();
+            if ( position - producerHead >= slots.length )
+            {
+                return false;
+            }
+        }
+        slots[(int) position & mask] = e;
+        tail.lazySet( position + 1 );
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public E poll()
+    {
+        long position = head.get();
+        if ( position >= consumerTail )
+        {
+            consumerTail = tail.get();
+            if ( position >= consumerTail )
+            {
+                return null;
+            }
+        }
+        int index = (int) position & mask;
+        E e = (E) slots[index];
+        slots[index] = null;
+        head.lazySet( position + 1 );
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public E peek()
+    {
+        long position = head.get();
+        if ( position >= tail.get() )
+        {
+            return null;
+        }
+        return (E) slots[(int) position & mask];
+    }
+
+    @Override
+    public void put( final E e )
+        throws InterruptedException
+    {
+        for ( int counter = 0; !offer( e ); counter++ )
+        {
+            checkInterrupted();
+            waitStrategy.idle( counter );
+        }
+    }
+
+    /**
+     * Put the elements in their order and wait while the buffer is full. The free slots are filled at once and
+     * published by one ordered write of the tail, so the consumer sees a batch instead of single elements.
+     * 
+     * @param elements <br>
+     *            the elements to put, without <code>null</code>
+     * @throws InterruptedException will throws if the thread is interrupted while it waits
+     */
+    public void putAll( final List<? extends E> elements )
+        throws InterruptedException
+    {
+        int index = 0;
+        int counter = 0;
+        while ( index < elements.size() )
+        {
+            long position = tail.get();
+            int remaining = elements.size() - index;
+            if ( position - producerHead + remaining > slots.length )
+            {
+                producerHead = head.get();
+            }
+            int count = (int) Math.min( remaining, slots.length - ( position - producerHead ) );
+            if ( 0 == count )
+            {
+                checkInterrupted();
+                waitStrategy.idle( counter++ );
+                continue;
+            }
+            for ( int i = 0; i < count; i++ )
+            {
+                E e = elements.get( index + i );
+                if ( null == e )
+                {
+                    throw new NullPointerException();
+                }
+                slots[(int) ( position + i ) & mask] = e;
+            }
+            tail.lazySet( position + count );
+            index += count;
+            counter = 0;
+        }
+    }
+
+    @Override
+    public boolean offer( final E e, final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        for ( int counter = 0; !offer( e ); counter++ )
+        {
+            checkInterrupted();
+            if ( 0 >= deadline - System.nanoTime() )
+            {
+                return false;
+            }
+            waitStrategy.idle( counter );
+        }
+        return true;
+    }
+
+    @Override
+    public E take()
+        throws InterruptedException
+    {
+        E e;
+        for ( int counter = 0; null == ( e = poll() ); counter++ )
+        {
+            checkInterrupted();
+            waitStrategy.idle( counter );
+        }
+        return e;
+    }
+
+    @Override
+    public E poll( final long timeout, final TimeUnit unit )
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        E e;
+        for ( int counter = 0; null == ( e = poll() ); counter++ )
+        {
+            checkInterrupted();
+            if ( 0 >= deadline - System.nanoTime() )
+            {
+                return null;
+            }
+            waitStrategy.idle( counter );
+        }
+        return e;
+    }
+
+    private static void checkInterrupted()
+        throws InterruptedException
+    {
+        if ( Thread.interrupted() )
+        {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return slots.length - size();
+    }
+
+    @Override
+    public int drainTo( final Collection<? super E> c )
+    {
+        return drainTo( c, Integer.MAX_VALUE );
+    }
+
+    @Override
+    public int drainTo( final Collection<? super E> c, final int maxElements )
+    {
+        if ( this == c )
+        {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while ( count < maxElements && null != ( e = poll() ) )
+        {
+            c.add( e );
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size()
+    {
+        // read the head first, so the size is never negative
+        long first = head.get();
+        long size = tail.get() - first;
+        return (int) Math.max( 0, Math.min( size, slots.length ) );
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements between the head and the tail at the time of the call, so
+     * the inherited {@link #contains(Object)} and {@link #toArray()} work from any thread. The elements, which the
+     * consumer takes in the meantime, are skipped. The iterator can't remove an element, because only the consumer
+     * frees the slots, so {@link #remove(Object)} and {@link #removeAll(Collection)} throw an
+     * {@link UnsupportedOperationException} if they find an element.
+     * 
+     * @return
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        // read the head first like size(), so the range is never negative
+        final long first = head.get();
+        final long end = tail.get();
+        return new Iterator<E>()
+        {
+            private long position = first;
+
+            private E next = advance();
+
+            @SuppressWarnings( "unchecked" )
+            private E advance()
+            {
+                while ( position < end )
+                {
+                    E e = (E) slots[(int) position & mask];
+                    long current = head.get();
+                    if ( null != e && current <= position )
+                    {
+                        position++;
+                        return e;
+                    }
+                    // the consumer took the element, so the slot may be reused
+                    position = Math.max( current, position + 1 );
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return null != next;
+            }
+
+            @Override
+            public E next()
+            {
+                if ( null == next )
+                {
+                    throw new NoSuchElementException();
+                }
+                E e = next;
+                next = advance();
+                return e;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException( "only the consumer can remove the elements" );
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[size=" + size() + ", capacity=" + slots.length + "]";
+    }
+}
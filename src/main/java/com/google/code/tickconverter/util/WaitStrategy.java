@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This enum specify how a thread waits for the other side of a {@link SpscRingBuffer}, if the buffer is empty or full.
+ * 
+ * @author Karsten Schulz <a href="mailto:lennylinux.ks@googlmail.com">(lennylinux.ks@googlmail.com)</a>
+ */
+public enum WaitStrategy
+{
+    /**
+     * Busy spin without giving up the processor. This has the lowest latency, but every waiting thread uses a whole
+     * core, so it should only be used if there are more cores than stages.
+     */
+    SPIN
+    {
+        @Override
+        public void idle( final int counter )
+        {
+            // busy spin
+        }
+    },
+
+    /**
+     * Spin a short time, then give up the processor with {@link Thread#yield()}.
+     */
+    YIELD
+    {
+        @Override
+        public void idle( final int counter )
+        {
+            if ( SPIN_TRIES <= counter )
+            {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spin a short time, then yield and at last park the thread for {@link #PARK_NANOS} nanoseconds.
+     */
+    PARK
+    {
+        @Override
+        public void idle( final int counter )
+        {
+            if ( SPIN_TRIES + YIELD_TRIES <= counter )
+            {
+                LockSupport.parkNanos( PARK_NANOS );
+            }
+            else if ( SPIN_TRIES <= counter )
+            {
+                Thread.yield();
+            }
+        }
+    };
+
+    /**
+     * The number of tries to busy spin before yielding.
+     */
+    public static final int SPIN_TRIES = 100;
+
+    /**
+     * The number of tries to yield before parking.
+     */
+    public static final int YIELD_TRIES = 100;
+
+    /**
+     * The time to park the thread in nanoseconds.
+     */
+    public static final long PARK_NANOS = 50000;
+
+    /**
+     * Wait one time for the other side of the buffer.
+     * 
+     * @param counter <br>
+     *            the number of times the thread has already waited for the same element
+     */
+    public abstract void idle( int counter );
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+import javax.xml.bind.PropertyException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchProcessorTest
+{
+    private Path directory;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        directory = Files.createTempDirectory( "batch" );
+        Files.createDirectories( directory.resolve( "EURUSD" ) );
+        Files.createDirectories( directory.resolve( "CADJPY" ) );
+        Files.createFile( directory.resolve( "EURUSD/EURUSD_20120101.csv" ) );
+        Files.createFile( directory.resolve( "EURUSD/EURUSD_20120102.csv" ) );
+        Files.createFile( directory.resolve( "CADJPY/CADJPY_20120101.csv" ) );
+        Files.createFile( directory.resolve( "CADJPY/readme.txt" ) );
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        Files.walkFileTree( directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile( final Path file, final BasicFileAttributes attrs )
+                throws IOException
+            {
+                Files.delete( file );
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory( final Path dir, final IOException exc )
+                throws IOException
+            {
+                Files.delete( dir );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    @Test
+    public void testFindDirectory()
+        throws Exception
+    {
+        List<ConversionJob> jobs = BatchProcessor.findJobs( directory.toString(), "out/{parent}/{name}.hst", "" );
+        Assert.assertEquals( 3, jobs.size() );
+        ConversionJob job = jobs.get( 0 );
+        Assert.assertEquals( directory.resolve( "CADJPY/CADJPY_20120101.csv" ).toString(), job.getInputFile() );
+        Assert.assertEquals( "out/CADJPY/CADJPY_20120101.hst", job.getOutputFile() );
+        Assert.assertEquals( "CADJPY", job.getSymbol() );
+        Assert.assertEquals( "", job.getFxtFile() );
+    }
+
+    @Test
+    public void testFindGlob()
+        throws Exception
+    {
+        String pattern = directory + File.separator + "*" + File.separator + "EURUSD_*.csv";
+        List<ConversionJob> jobs = BatchProcessor.findJobs( pattern, "out/{name}.csv", "fxt/{symbol}_{name}.fxt" );
+        Assert.assertEquals( 2, jobs.size() );
+        Assert.assertEquals( "out/EURUSD_20120102.csv", jobs.get( 1 ).getOutputFile() );
+        Assert.assertEquals( "fxt/EURUSD_EURUSD_20120102.fxt", jobs.get( 1 ).getFxtFile() );
+    }
+
+    @Test( expected = PropertyException.class )
+    public void testSameOutputFile()
+        throws Exception
+    {
+        BatchProcessor.findJobs( directory.toString(), "out/{parent}.csv", "" );
+    }
+
+    @Test( expected = PropertyException.class )
+    public void testSameFxtFile()
+        throws Exception
+    {
+        BatchProcessor.findJobs( directory.toString(), "out/{parent}/{name}.hst", "fxt/{parent}.fxt" );
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.bind.PropertyException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.util.CommandLineProperties;
+
+public class ControllerTest
+{
+    private Path input;
+
+    private ConversionJob job;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        input = Files.createTempFile( "controller", ".csv" );
+        Files.write( input, "Time,Ask,Bid,AskVolume,BidVolume\n".getBytes( StandardCharsets.US_ASCII ) );
+        job = new ConversionJob( input.toString(), "out.csv", "" );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        // the defaults for the following tests
+        isFused();
+        Files.delete( input );
+    }
+
+    private boolean isFused( final String... options )
+        throws Exception
+    {
+        String[] args = new String[options.length + 4];
+        args[0] = "-i";
+        args[1] = input.toString();
+        args[2] = "-o";
+        args[3] = "out.csv";
+        System.arraycopy( options, 0, args, 4, options.length );
+        new CommandLineProperties( args ).loadConfigProperties();
+        return Controller.isFused( job );
+    }
+
+    @Test
+    public void testSmallInput()
+        throws Exception
+    {
+        Assert.assertTrue( isFused() );
+        Assert.assertTrue( isFused( "-z", "33" ) );
+        Assert.assertFalse( isFused( "-z", "32" ) );
+    }
+
+    @Test
+    public void testMode()
+        throws Exception
+    {
+        Assert.assertTrue( isFused( "-m", "fused", "-z", "0" ) );
+        Assert.assertFalse( isFused( "-m", "threads" ) );
+        Assert.assertTrue( isFused( "-m", "auto" ) );
+    }
+
+    @Test
+    public void testCheckpoint()
+        throws Exception
+    {
+        Assert.assertTrue( isFused( "-m", "threads", "-k", "checkpoint.properties" ) );
+        Assert.assertTrue( isFused( "-z", "0", "-k", "checkpoint.properties" ) );
+    }
+
+    @Test
+    public void testCheckpointWithAppend()
+        throws Exception
+    {
+        try
+        {
+            isFused( "-a", "true", "-k", "checkpoint.properties" );
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( PropertyException e )
+        {
+            Assert.assertEquals( "checkpoints of appended outputfiles aren't supported", e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.convert.ConvertAdapter;
+import com.google.code.tickconverter.convert.Timeframe;
+import com.google.code.tickconverter.io.DukascopyCsvReader;
+import com.google.code.tickconverter.io.MetatraderCsvWriter;
+import com.google.code.tickconverter.io.MetatraderWriter;
+import com.google.code.tickconverter.io.ParallelDukascopyReader;
+import com.google.code.tickconverter.io.TickBlockHandler;
+
+public class FusedPipelineTest
+{
+    private Path directory;
+
+    private Path input;
+
+    private Path checkpoint;
+
+    private int batchSize;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        directory = Files.createTempDirectory( "fused" );
+        input = directory.resolve( "ticks.csv" );
+        checkpoint = directory.resolve( "checkpoint.properties" );
+        StringBuilder content = new StringBuilder( "Time,Ask,Bid,AskVolume,BidVolume\n" );
+        for ( int i = 0; i < 20000; i++ )
+        {
+            content.append( String.format( "01.05.2012 %02d:%02d:%02d.%03d,80.%03d,80.%03d,%d.5,1.58\n", i / 3600,
+                                           i / 60 % 60, i % 60, i % 1000, i % 1000, i % 997, i % 10 ) );
+        }
+        Files.write( input, content.toString().getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( directory ))
+        {
+            for ( Path file : files )
+            {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    private FusedPipeline createPipeline( final DukascopyCsvReader reader, final String prefix )
+    {
+        Map<Timeframe, MetatraderWriter> writers = new EnumMap<>( Timeframe.class );
+        for ( Timeframe timeframe : new Timeframe[] { Timeframe.M1, Timeframe.H1 } )
+        {
+            writers.put( timeframe, new MetatraderCsvWriter( null, directory.resolve( prefix + timeframe + ".csv" )
+                .toString() ) );
+        }
+        return new FusedPipeline( reader, writers );
+    }
+
+    private void assertSameFiles( final String expected, final String actual )
+        throws IOException
+    {
+        for ( Timeframe timeframe : new Timeframe[] { Timeframe.M1, Timeframe.H1 } )
+        {
+            byte[] expectedBytes = Files.readAllBytes( directory.resolve( expected + timeframe + ".csv" ) );
+            byte[] actualBytes = Files.readAllBytes( directory.resolve( actual + timeframe + ".csv" ) );
+            Assert.assertTrue( Arrays.equals( expectedBytes, actualBytes ) );
+        }
+    }
+
+    private DukascopyCsvReader createReader( final boolean parallel, final int failingBlock )
+    {
+        final DukascopyCsvReader reader =
+            parallel ? new ParallelDukascopyReader( null, input.toString(), 2, 9973 )
+                            : new DukascopyCsvReader( input.toString() );
+        if ( 0 < batchSize )
+        {
+            reader.setBatchSize( batchSize );
+        }
+        if ( 0 == failingBlock )
+        {
+            return reader;
+        }
+        // the reader fails at the block like a killed process
+        return new DukascopyCsvReader( input.toString() )
+        {
+            private int blocks;
+
+            @Override
+            public long getPosition()
+            {
+                return reader.getPosition();
+            }
+
+            @Override
+            public void setStartOffset( final long startOffset )
+            {
+                reader.setStartOffset( startOffset );
+            }
+
+            @Override
+            public void read( final TickBlockHandler handler )
+                throws IOException, ParseException, InterruptedException
+            {
+                reader.read( new TickBlockHandler()
+                {
+                    @Override
+                    public void blockRead( final TickBlock block )
+                        throws IOException, InterruptedException
+                    {
+                        if ( failingBlock == ++blocks )
+                        {
+                            throw new IOException( "interrupted" );
+                        }
+                        handler.blockRead( block );
+                    }
+                } );
+            }
+        };
+    }
+
+    private void restart( final boolean parallel, final int failingBlock, final long interval )
+        throws Exception
+    {
+        createPipeline( createReader( parallel, 0 ), "full" ).process();
+
+        FusedPipeline pipeline = createPipeline( createReader( parallel, failingBlock ), "restart" );
+        pipeline.setCheckpoint( checkpoint, interval );
+        try
+        {
+            pipeline.process();
+            Assert.fail();
+        }
+        catch ( IOException e )
+        {
+            Assert.assertEquals( "interrupted", e.getMessage() );
+        }
+        Assert.assertTrue( 0 < Checkpoint.load( checkpoint ).getInputOffset() );
+
+        pipeline = createPipeline( createReader( parallel, 0 ), "restart" );
+        pipeline.setCheckpoint( checkpoint, interval );
+        pipeline.process();
+        Assert.assertFalse( Files.exists( checkpoint ) );
+        assertSameFiles( "full", "restart" );
+    }
+
+    @Test
+    public void testRestart()
+        throws Exception
+    {
+        restart( false, 4, 1 );
+    }
+
+    @Test
+    public void testRestartAfterDuplicate()
+        throws Exception
+    {
+        // every tick is written twice, so the odd blocks end between a tick and its duplicate
+        StringBuilder content = new StringBuilder( "Time,Ask,Bid,AskVolume,BidVolume\n" );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            String line =
+                String.format( "01.05.2012 %02d:%02d:%02d.%03d,80.%03d,80.%03d,%d.5,1.58\n", i / 3600, i / 60 % 60,
+                               i % 60, i % 1000, i % 1000, i % 997, i % 10 );
+            content.append( line ).append( line );
+        }
+        Files.write( input, content.toString().getBytes( StandardCharsets.US_ASCII ) );
+        batchSize = 99;
+        restart( false, 2, 1 );
+    }
+
+    @Test
+    public void testRestartParallel()
+        throws Exception
+    {
+        restart( true, 45, 100000 );
+    }
+
+    @Test
+    public void testCloseError()
+        throws Exception
+    {
+        Map<Timeframe, MetatraderWriter> writers = new EnumMap<>( Timeframe.class );
+        writers.put( Timeframe.M1, new MetatraderCsvWriter( null, directory.resolve( "M1.csv" ).toString() ) );
+        writers.put( Timeframe.H1, new MetatraderCsvWriter( null, directory.resolve( "H1.csv" ).toString() )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                super.close();
+                throw new IOException( "disk full" );
+            }
+        } );
+        FusedPipeline pipeline = new FusedPipeline( createReader( false, 0 ), writers );
+        pipeline.setCheckpoint( checkpoint, 1 );
+        try
+        {
+            pipeline.process();
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( IOException e )
+        {
+            Assert.assertEquals( "disk full", e.getMessage() );
+        }
+        Assert.assertTrue( Files.exists( checkpoint ) );
+        Assert.assertTrue( 0 < Files.size( directory.resolve( "M1.csv" ) ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void testSameBarsAsThreads()
+        throws Exception
+    {
+        createPipeline( createReader( false, 0 ), "fused" ).process();
+
+        BlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<>( 4 );
+        Map<Timeframe, BlockingQueue<IMetatraderRO>> traderQueues = new EnumMap<>( Timeframe.class );
+        List<Thread> writers = new ArrayList<>();
+        for ( Timeframe timeframe : new Timeframe[] { Timeframe.M1, Timeframe.H1 } )
+        {
+            BlockingQueue<IMetatraderRO> traderQueue = new LinkedBlockingQueue<>( 16 );
+            traderQueues.put( timeframe, traderQueue );
+            String outputFile = directory.resolve( "threads" + timeframe + ".csv" ).toString();
+            writers.add( new Thread( new MetatraderCsvWriter( traderQueue, outputFile ) ) );
+        }
+        DukascopyCsvReader reader = new DukascopyCsvReader( dukaQueue, input.toString() );
+        reader.setBatchSize( 100 );
+        new Thread( reader ).start();
+        new Thread( new ConvertAdapter( dukaQueue, traderQueues ) ).start();
+        for ( Thread writer : writers )
+        {
+            writer.start();
+        }
+        for ( Thread writer : writers )
+        {
+            writer.join();
+        }
+        assertSameFiles( "fused", "threads" );
+    }
+}
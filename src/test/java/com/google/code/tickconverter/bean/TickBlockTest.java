@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.bean;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TickBlockTest
+{
+    private TickBlock block;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        block = new TickBlock( 2 );
+    }
+
+    @Test
+    public void testAdd()
+    {
+        Assert.assertTrue( block.isEmpty() );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 1 ).getMillis(), 80.928, 80.911, 2.33, 1.58 );
+        Assert.assertFalse( block.isFull() );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 2 ).getMillis(), 80.933, 80.914, 3.83, 1.58 );
+
+        Assert.assertTrue( block.isFull() );
+        Assert.assertEquals( 2, block.size() );
+        Assert.assertEquals( 80.933, block.getAsk( 1 ), 0 );
+        Assert.assertEquals( 80.914, block.getBid( 1 ), 0 );
+        Assert.assertEquals( 3.83, block.getAskVolume( 1 ), 0 );
+        Assert.assertEquals( 1.58, block.getBidVolume( 1 ), 0 );
+    }
+
+    @Test( expected = IndexOutOfBoundsException.class )
+    public void testAddFull()
+    {
+        block.add( 1, 1, 1, 1, 1 );
+        block.add( 2, 2, 2, 2, 2 );
+        block.add( 3, 3, 3, 3, 3 );
+    }
+
+    @Test
+    public void testView()
+    {
+        DateTime timeStamp = new DateTime( 2012, 8, 22, 0, 0, 1, 680 );
+        block.add( timeStamp.getMillis(), 80.928, 80.911, 2.33, 1.58 );
+
+        IDukascopyRO tick = block.get( 0 );
+        Assert.assertEquals( new DukascopyBean( timeStamp, 80.928, 80.911, 2.33, 1.58 ),
+                             new DukascopyBean( tick.getTimeStamp(), tick.getAsk(), tick.getBid(),
+                                                tick.getAskVolume(), tick.getBidVolume() ) );
+    }
+
+    @Test
+    public void testClear()
+    {
+        block.add( 1, 1, 1, 1, 1 );
+        block.clear();
+        Assert.assertTrue( block.isEmpty() );
+        Assert.assertEquals( 2, block.capacity() );
+    }
+}
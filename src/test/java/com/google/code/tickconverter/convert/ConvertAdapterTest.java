@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.MetatraderBean;
+import com.google.code.tickconverter.bean.TickBlock;
+import com.google.code.tickconverter.util.SpscRingBuffer;
+import com.google.code.tickconverter.util.WaitStrategy;
+
+public class ConvertAdapterTest
+{
+    @Test( timeout = 1000 )
+    public void testEndOfStream()
+        throws Exception
+    {
+        LinkedBlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<IMetatraderRO> traderQueue = new LinkedBlockingQueue<>();
+        TickBlock block = new TickBlock( 3 );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 1 ).getMillis(), 11, 9, 1, 1 );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 2 ).getMillis(), 13, 11, 1, 1 );
+        block.add( new DateTime( 2012, 8, 22, 0, 1, 0 ).getMillis(), 15, 13, 1, 1 );
+        dukaQueue.add( block );
+        dukaQueue.add( TickBlock.END_OF_STREAM );
+
+        new ConvertAdapter( dukaQueue, traderQueue ).run();
+
+        Assert.assertEquals( 3, traderQueue.size() );
+        IMetatraderRO first = traderQueue.take();
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 0, 0 ), first.getTimeStamp() );
+        Assert.assertEquals( 10, first.getOpen(), 0 );
+        Assert.assertEquals( 12, first.getClose(), 0 );
+        Assert.assertEquals( 4, first.getVolume(), 0 );
+        Assert.assertEquals( 14, traderQueue.take().getOpen(), 0 );
+        Assert.assertSame( MetatraderBean.END_OF_STREAM, traderQueue.take() );
+    }
+
+    @Test( timeout = 1000 )
+    public void testGapAndLateTick()
+        throws Exception
+    {
+        LinkedBlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<IMetatraderRO> traderQueue = new LinkedBlockingQueue<>();
+        TickBlock block = new TickBlock( 4 );
+        block.add( new DateTime( 2012, 8, 24, 23, 59, 1 ).getMillis(), 11, 9, 1, 1 );
+        // the weekend is skipped in one step, and the late tick is skipped
+        block.add( new DateTime( 2012, 8, 27, 0, 0, 1 ).getMillis(), 13, 11, 1, 1 );
+        block.add( new DateTime( 2012, 8, 24, 23, 59, 2 ).getMillis(), 21, 19, 1, 1 );
+        block.add( new DateTime( 2012, 8, 27, 0, 0, 2 ).getMillis(), 15, 13, 1, 1 );
+        dukaQueue.add( block );
+        dukaQueue.add( TickBlock.END_OF_STREAM );
+
+        new ConvertAdapter( dukaQueue, traderQueue ).run();
+
+        Assert.assertEquals( 3, traderQueue.size() );
+        Assert.assertEquals( new DateTime( 2012, 8, 24, 23, 59 ), traderQueue.take().getTimeStamp() );
+        IMetatraderRO second = traderQueue.take();
+        Assert.assertEquals( new DateTime( 2012, 8, 27, 0, 0 ), second.getTimeStamp() );
+        Assert.assertEquals( 12, second.getOpen(), 0 );
+        Assert.assertEquals( 14, second.getClose(), 0 );
+        Assert.assertEquals( 4, second.getVolume(), 0 );
+        Assert.assertSame( MetatraderBean.END_OF_STREAM, traderQueue.take() );
+    }
+
+    @Test( timeout = 1000 )
+    public void testBatches()
+        throws Exception
+    {
+        final List<Integer> drains = new ArrayList<>();
+        LinkedBlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<TickBlock>()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public int drainTo( final Collection<? super TickBlock> c, final int maxElements )
+            {
+                drains.add( maxElements );
+                return super.drainTo( c, maxElements );
+            }
+        };
+        final List<Integer> puts = new ArrayList<>();
+        SpscRingBuffer<IMetatraderRO> traderQueue = new SpscRingBuffer<IMetatraderRO>( 16, WaitStrategy.SPIN )
+        {
+            @Override
+            public void putAll( final List<? extends IMetatraderRO> elements )
+                throws InterruptedException
+            {
+                puts.add( elements.size() );
+                super.putAll( elements );
+            }
+
+            @Override
+            public void put( final IMetatraderRO e )
+                throws InterruptedException
+            {
+                puts.add( -1 );
+                super.put( e );
+            }
+        };
+        for ( int minute = 0; minute < 4; minute++ )
+        {
+            TickBlock block = new TickBlock( 1 );
+            block.add( new DateTime( 2012, 8, 22, 0, minute, 1 ).getMillis(), 11, 9, 1, 1 );
+            dukaQueue.add( block );
+        }
+        dukaQueue.add( TickBlock.END_OF_STREAM );
+
+        ConvertAdapter convertAdapter = new ConvertAdapter( dukaQueue, traderQueue );
+        convertAdapter.setBatchSize( 4 );
+        convertAdapter.run();
+
+        // the first batch takes four blocks, the second one the marker, and the bars are handed over at once
+        Assert.assertEquals( 2, drains.size() );
+        Assert.assertEquals( 3, drains.get( 0 ).intValue() );
+        Assert.assertEquals( 3, puts.get( 0 ).intValue() );
+        Assert.assertEquals( 1, puts.get( 1 ).intValue() );
+        Assert.assertEquals( 5, traderQueue.size() );
+        for ( int minute = 0; minute < 4; minute++ )
+        {
+            Assert.assertEquals( new DateTime( 2012, 8, 22, 0, minute ), traderQueue.take().getTimeStamp() );
+        }
+        Assert.assertSame( MetatraderBean.END_OF_STREAM, traderQueue.take() );
+    }
+
+    @Test( timeout = 5000 )
+    public void testErrorWithFullQueue()
+        throws Exception
+    {
+        final LinkedBlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<>( 2 );
+        LinkedBlockingQueue<IMetatraderRO> traderQueue = new LinkedBlockingQueue<>();
+        Thread reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for ( int minute = 0; minute < 6; minute++ )
+                    {
+                        TickBlock block = new TickBlock( 1 );
+                        block.add( new DateTime( 2012, 8, 22, 0, minute, 1 ).getMillis(), 11, 9, 1, 1 );
+                        dukaQueue.put( block );
+                    }
+                    dukaQueue.put( TickBlock.END_OF_STREAM );
+                }
+                catch ( InterruptedException e )
+                {
+                    // the test fails by the timeout
+                }
+            }
+        };
+        ConvertAdapter convertAdapter = new ConvertAdapter( dukaQueue, traderQueue );
+        convertAdapter.setTickListener( Timeframe.M1, new TickListener()
+        {
+            @Override
+            public void tickAdded( final MetatraderConverter bar, final long timeStamp )
+            {
+                // fail while the reader waits for the full queue
+                while ( 0 < dukaQueue.remainingCapacity() )
+                {
+                    Thread.yield();
+                }
+                throw new IllegalStateException( "conversion failed" );
+            }
+
+            @Override
+            public void close()
+            {
+                // nothing to close
+            }
+        } );
+        reader.start();
+
+        convertAdapter.run();
+        reader.join();
+
+        Assert.assertTrue( dukaQueue.isEmpty() );
+        Assert.assertSame( MetatraderBean.END_OF_STREAM, traderQueue.take() );
+    }
+
+    @Test( timeout = 1000 )
+    public void testZone()
+        throws Exception
+    {
+        DateTimeZone zone = DateTimeZone.forID( "Asia/Kolkata" );
+        LinkedBlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<IMetatraderRO> traderQueue = new LinkedBlockingQueue<>();
+        TickBlock block = new TickBlock( 2 );
+        block.add( new DateTime( 2012, 8, 22, 10, 10, DateTimeZone.UTC ).getMillis(), 11, 9, 1, 1 );
+        block.add( new DateTime( 2012, 8, 22, 10, 40, DateTimeZone.UTC ).getMillis(), 13, 11, 1, 1 );
+        dukaQueue.add( block );
+        dukaQueue.add( TickBlock.END_OF_STREAM );
+
+        ConvertAdapter convertAdapter =
+            new ConvertAdapter( dukaQueue, Collections.<Timeframe, BlockingQueue<IMetatraderRO>> singletonMap(
+                Timeframe.H1, traderQueue ) );
+        convertAdapter.setZone( zone );
+        convertAdapter.run();
+
+        // the hours of the zone start at the half hours of UTC, independent of the default time zone
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 15, 0, zone ), traderQueue.take().getTimeStamp() );
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 16, 0, zone ), traderQueue.take().getTimeStamp() );
+        Assert.assertSame( MetatraderBean.END_OF_STREAM, traderQueue.take() );
+    }
+
+    @Test( timeout = 1000 )
+    public void testDuplicateTick()
+        throws Exception
+    {
+        LinkedBlockingQueue<TickBlock> dukaQueue = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<IMetatraderRO> traderQueue = new LinkedBlockingQueue<>();
+        TickBlock block = new TickBlock( 3 );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 1 ).getMillis(), 11, 9, 1, 1 );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 1 ).getMillis(), 11, 9, 1, 1 );
+        block.add( new DateTime( 2012, 8, 22, 0, 0, 2 ).getMillis(), 13, 11, 1, 1 );
+        dukaQueue.add( block );
+        dukaQueue.add( TickBlock.END_OF_STREAM );
+
+        final List<Long> ticks = new ArrayList<>();
+        ConvertAdapter convertAdapter = new ConvertAdapter( dukaQueue, traderQueue );
+        convertAdapter.setTickListener( Timeframe.M1, new TickListener()
+        {
+            @Override
+            public void tickAdded( final MetatraderConverter bar, final long timeStamp )
+            {
+                ticks.add( timeStamp );
+            }
+
+            @Override
+            public void close()
+            {
+                // nothing to close
+            }
+        } );
+        convertAdapter.run();
+
+        // the skipped duplicate isn't passed to the listener
+        Assert.assertEquals( 2, ticks.size() );
+        Assert.assertEquals( 4, traderQueue.take().getVolume(), 0 );
+    }
+}
@@ -23,27 +23,19 @@ import junit.framework.Assert;
 import org.joda.time.DateTime;
 import org.joda.time.Period;
 import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.google.code.tickconverter.bean.DukascopyBean;
 
 public class MetatraderConverterTest
 {
-    private static MetatraderConverter converter;
-
-    @BeforeClass
-    public static void setUpBeforeClass()
-        throws Exception
-    {
-        converter = new MetatraderConverter( new DateTime( 2012, 8, 22, 0, 0 ), Period.minutes( 1 ) );
-    }
+    private MetatraderConverter converter;
 
     @Before
     public void setUp()
         throws Exception
     {
-
+        converter = new MetatraderConverter( new DateTime( 2012, 8, 22, 0, 0 ), Period.minutes( 1 ) );
     }
 
     @Test
@@ -92,4 +84,51 @@ public class MetatraderConverterTest
             Assert.fail( "don't throw expected exception" );
         }
     }
+
+    @Test
+    public void testAccumulateValues()
+    {
+        MetatraderConverter barConverter =
+            new MetatraderConverter( new DateTime( 2012, 8, 22, 0, 0 ), Period.minutes( 1 ) );
+        Assert.assertFalse( barConverter.hasElements() );
+        try
+        {
+            barConverter.addDukascopy( new DukascopyBean( new DateTime( 2012, 8, 22, 0, 0, 1 ), 12, 10, 1, 2 ) );
+            barConverter.addDukascopy( new DukascopyBean( new DateTime( 2012, 8, 22, 0, 0, 30 ), 16, 14, 1, 1 ) );
+            barConverter.addDukascopy( new DukascopyBean( new DateTime( 2012, 8, 22, 0, 0, 10 ), 9, 7, 0.5, 0.5 ) );
+            barConverter.addDukascopy( new DukascopyBean( new DateTime( 2012, 8, 22, 0, 0, 20 ), 13, 11, 2, 0 ) );
+        }
+        catch ( InvalidTimeException e )
+        {
+            Assert.fail( "throw unexpected exception: " + e );
+        }
+
+        Assert.assertTrue( barConverter.hasElements() );
+        Assert.assertEquals( 11, barConverter.getOpen(), 0 );
+        Assert.assertEquals( 15, barConverter.getMax(), 0 );
+        Assert.assertEquals( 8, barConverter.getMin(), 0 );
+        Assert.assertEquals( 15, barConverter.getClose(), 0 );
+        Assert.assertEquals( 8, barConverter.getVolume(), 0 );
+
+        barConverter.incrementInterval();
+        Assert.assertFalse( barConverter.hasElements() );
+        Assert.assertEquals( 0, barConverter.getVolume(), 0 );
+    }
+
+    @Test
+    public void testDuplicateTick()
+        throws InvalidTimeException
+    {
+        DateTime time = new DateTime( 2012, 8, 22, 0, 0, 1 );
+        converter.addDukascopy( new DukascopyBean( time, 12, 10, 1, 2 ) );
+        // the exact duplicate is skipped like in a set of ticks
+        converter.addDukascopy( new DukascopyBean( time, 12, 10, 1, 2 ) );
+        Assert.assertEquals( 3, converter.getVolume(), 0 );
+        // another tick at the same time is added
+        converter.addDukascopy( new DukascopyBean( time, 14, 12, 1, 2 ) );
+        Assert.assertEquals( 6, converter.getVolume(), 0 );
+        Assert.assertEquals( 13, converter.getClose(), 0 );
+        converter.addTick( time.getMillis(), 14, 12, 1, 2 );
+        Assert.assertEquals( 6, converter.getVolume(), 0 );
+    }
 }
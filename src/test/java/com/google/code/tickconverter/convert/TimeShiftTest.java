@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class TimeShiftTest
+{
+    private static final DateTimeZone NEW_YORK = DateTimeZone.forID( "America/New_York" );
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static long utc( final int year, final int month, final int day, final int hour, final int minute )
+    {
+        return new DateTime( year, month, day, hour, minute, DateTimeZone.UTC ).getMillis();
+    }
+
+    @Test
+    public void testShift()
+    {
+        TimeShift shift = new TimeShift( NEW_YORK, 7 * HOUR, Long.MIN_VALUE, Long.MAX_VALUE );
+        Assert.assertEquals( utc( 2012, 1, 16, 14, 0 ), shift.shift( utc( 2012, 1, 16, 12, 0 ) ) );
+        Assert.assertEquals( utc( 2012, 7, 16, 15, 0 ), shift.shift( utc( 2012, 7, 16, 12, 0 ) ) );
+        // the transition at 2 o'clock in New York
+        Assert.assertEquals( utc( 2012, 3, 11, 8, 59 ), shift.shift( utc( 2012, 3, 11, 6, 59 ) ) );
+        Assert.assertEquals( utc( 2012, 3, 11, 10, 0 ), shift.shift( utc( 2012, 3, 11, 7, 0 ) ) );
+    }
+
+    @Test
+    public void testShiftLikeZone()
+    {
+        Random random = new Random( 5 );
+        for ( DateTimeZone zone : new DateTimeZone[] { NEW_YORK, DateTimeZone.forID( "Australia/Lord_Howe" ), null } )
+        {
+            // a table of some years, the times before and after ask the zone
+            TimeShift shift = new TimeShift( zone, -HOUR / 2, utc( 2009, 1, 1, 0, 0 ), utc( 2013, 1, 1, 0, 0 ) );
+            for ( int i = 0; i < 100000; i++ )
+            {
+                long time = utc( 2005, 1, 1, 0, 0 ) + (long) ( random.nextDouble() * 12 * 365 * 24 * HOUR );
+                long expected = time - HOUR / 2 + ( null == zone ? 0 : zone.getOffset( time ) );
+                Assert.assertEquals( zone + " " + time, expected, shift.shift( time ) );
+            }
+        }
+    }
+
+    @Test
+    public void testUnshift()
+    {
+        TimeShift shift = new TimeShift( NEW_YORK, 7 * HOUR, Long.MIN_VALUE, Long.MAX_VALUE );
+        Assert.assertEquals( utc( 2012, 1, 16, 12, 0 ), shift.unshift( utc( 2012, 1, 16, 14, 0 ) ) );
+        // the broker time of the gap starts at the transition
+        Assert.assertEquals( utc( 2012, 3, 11, 7, 0 ), shift.unshift( utc( 2012, 3, 11, 9, 30 ) ) );
+        // the first of the repeated broker times
+        Assert.assertEquals( utc( 2012, 11, 4, 5, 30 ), shift.unshift( utc( 2012, 11, 4, 8, 30 ) ) );
+        Assert.assertEquals( utc( 2012, 11, 4, 7, 0 ), shift.unshift( utc( 2012, 11, 4, 9, 0 ) ) );
+        Assert.assertEquals( Long.MIN_VALUE, shift.unshift( Long.MIN_VALUE ) );
+
+        Random random = new Random( 11 );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            long brokerTime = utc( 2005, 1, 1, 0, 0 ) + (long) ( random.nextDouble() * 12 * 365 * 24 * HOUR );
+            long time = shift.unshift( brokerTime );
+            Assert.assertTrue( shift.shift( time ) >= brokerTime );
+            Assert.assertTrue( shift.shift( time - 1 ) < brokerTime );
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.convert;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class TimeframeTest
+{
+    private static final DateTime TIMESTAMP = new DateTime( 2012, 8, 22, 13, 47, 38, 512 );
+
+    @Test
+    public void testSecondStart()
+    {
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 47, 30 ), Timeframe.S10.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 47, 30 ), Timeframe.S30.getStart( TIMESTAMP ) );
+    }
+
+    @Test
+    public void testMinuteStart()
+    {
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 47 ), Timeframe.M1.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 45 ), Timeframe.M5.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 45 ), Timeframe.M15.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 30 ), Timeframe.M30.getStart( TIMESTAMP ) );
+    }
+
+    @Test
+    public void testHourStart()
+    {
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 13, 0 ), Timeframe.H1.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 12, 0 ), Timeframe.H4.getStart( TIMESTAMP ) );
+    }
+
+    @Test
+    public void testCalendarStart()
+    {
+        Assert.assertEquals( new DateTime( 2012, 8, 22, 0, 0 ), Timeframe.D1.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 19, 0, 0 ), Timeframe.W1.getStart( TIMESTAMP ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 19, 0, 0 ), Timeframe.W1.getStart( new DateTime( 2012, 8, 19, 5,
+                                                                                                     0 ) ) );
+        Assert.assertEquals( new DateTime( 2012, 8, 1, 0, 0 ), Timeframe.MN1.getStart( TIMESTAMP ) );
+    }
+
+    @Test
+    public void testMinutes()
+    {
+        Assert.assertEquals( 0, Timeframe.S30.getMinutes() );
+        Assert.assertEquals( 1, Timeframe.M1.getMinutes() );
+        Assert.assertEquals( 240, Timeframe.H4.getMinutes() );
+        Assert.assertEquals( 1440, Timeframe.D1.getMinutes() );
+        Assert.assertEquals( 10080, Timeframe.W1.getMinutes() );
+        Assert.assertEquals( 43200, Timeframe.MN1.getMinutes() );
+    }
+
+    @Test
+    public void testStartMillis()
+    {
+        Random random = new Random( 17 );
+        for ( String id : new String[] { "UTC", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata" } )
+        {
+            DateTimeZone zone = DateTimeZone.forID( id );
+            // joda rounds the hours in the gap of a half hour transition to a half hour, so compare only the bars
+            boolean compare = !"Australia/Lord_Howe".equals( id );
+            for ( int i = 0; i < 20000; i++ )
+            {
+                // the years around 2012 with their transitions of the daylight saving time
+                long time = 1230768000000L + (long) ( random.nextDouble() * 6 * 365 * 86400000L );
+                for ( Timeframe timeframe : Timeframe.values() )
+                {
+                    String message = id + " " + timeframe + " " + time;
+                    long start = timeframe.getStartMillis( time, zone );
+                    long end = timeframe.getEndMillis( start, zone );
+                    Assert.assertTrue( message, start <= time && time < end );
+                    Assert.assertEquals( message, end, timeframe.getStartMillis( end, zone ) );
+                    if ( compare )
+                    {
+                        long expected = timeframe.getStart( new DateTime( time, zone ) ).getMillis();
+                        Assert.assertEquals( message, expected, start );
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.LZMAOutputStream;
+
+import com.google.code.tickconverter.bean.TickBlock;
+
+public class DukascopyBi5ReaderTest
+{
+    private Path directory;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        directory = Files.createTempDirectory( "bi5" );
+        // the month of the directory counts from 00, so these are the first hours of the 1st May
+        writeHour( "CADJPY/2012/04/01/00h_ticks.bi5", 0, 1000 );
+        writeHour( "CADJPY/2012/04/01/01h_ticks.bi5", 1000, 500 );
+        Files.createFile( directory.resolve( "CADJPY/2012/04/01/02h_ticks.bi5" ) );
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        Files.walkFileTree( directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile( final Path file, final BasicFileAttributes attrs )
+                throws IOException
+            {
+                Files.delete( file );
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory( final Path dir, final IOException exc )
+                throws IOException
+            {
+                Files.delete( dir );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    private void writeHour( final String name, final int first, final int count )
+        throws IOException
+    {
+        ByteBuffer records = ByteBuffer.allocate( count * DukascopyBi5Reader.RECORD_LENGTH );
+        for ( int i = first; i < first + count; i++ )
+        {
+            records.putInt( ( i - first ) * 3000 + 680 );
+            records.putInt( 80928 + i );
+            records.putInt( 80911 + i );
+            records.putFloat( 2.33f );
+            records.putFloat( 1.58f );
+        }
+        Path file = directory.resolve( name );
+        Files.createDirectories( file.getParent() );
+        try (OutputStream out =
+            new LZMAOutputStream( Files.newOutputStream( file ), new LZMA2Options(), records.capacity() ))
+        {
+            out.write( records.array() );
+        }
+    }
+
+    private static List<TickBlock> read( final DukascopyBi5Reader reader )
+        throws Exception
+    {
+        final LinkedBlockingQueue<TickBlock> queue = new LinkedBlockingQueue<>();
+        reader.setBatchSize( 256 );
+        reader.read( new TickBlockHandler()
+        {
+            @Override
+            public void blockRead( final TickBlock block )
+            {
+                Assert.assertFalse( block.isEmpty() );
+                queue.add( block );
+            }
+        } );
+        return new ArrayList<>( queue );
+    }
+
+    private static int size( final List<TickBlock> blocks )
+    {
+        int size = 0;
+        for ( TickBlock block : blocks )
+        {
+            size += block.size();
+        }
+        return size;
+    }
+
+    @Test
+    public void testRead()
+        throws Exception
+    {
+        List<TickBlock> sequential = read( new DukascopyBi5Reader( null, directory.toString(), 0, 3 ) );
+        Assert.assertEquals( 1500, size( sequential ) );
+        TickBlock first = sequential.get( 0 );
+        Assert.assertEquals( new DateTime( 2012, 5, 1, 0, 0, 0, 680 ).getMillis(), first.getTimeStamp( 0 ) );
+        Assert.assertEquals( 80.928, first.getAsk( 0 ), 0 );
+        Assert.assertEquals( 80.911, first.getBid( 0 ), 0 );
+        Assert.assertEquals( 2.33, first.getAskVolume( 0 ), 0 );
+        Assert.assertEquals( 1.58, first.getBidVolume( 0 ), 0 );
+        TickBlock last = sequential.get( sequential.size() - 1 );
+        Assert.assertEquals( new DateTime( 2012, 5, 1, 1, 24, 57, 680 ).getMillis(),
+                             last.getTimeStamp( last.size() - 1 ) );
+        Assert.assertEquals( 82.427, last.getAsk( last.size() - 1 ), 0 );
+
+        List<TickBlock> parallel = read( new DukascopyBi5Reader( null, directory.toString(), 2, 3 ) );
+        Assert.assertEquals( sequential.size(), parallel.size() );
+        for ( int i = 0; i < sequential.size(); i++ )
+        {
+            Assert.assertEquals( sequential.get( i ).toString(), parallel.get( i ).toString() );
+        }
+    }
+
+    @Test
+    public void testStartTime()
+        throws Exception
+    {
+        DukascopyBi5Reader reader = new DukascopyBi5Reader( null, directory.toString(), 2, 3 );
+        long startTime = new DateTime( 2012, 5, 1, 0, 30, 0, 0 ).getMillis();
+        reader.setStartTime( startTime );
+        List<TickBlock> blocks = read( reader );
+        Assert.assertEquals( 900, size( blocks ) );
+        Assert.assertEquals( startTime + 680, blocks.get( 0 ).getTimeStamp( 0 ) );
+    }
+
+    @Test
+    public void testSingleFile()
+        throws Exception
+    {
+        Path file = directory.resolve( "CADJPY/2012/04/01/01h_ticks.bi5" );
+        Assert.assertEquals( 500, size( read( new DukascopyBi5Reader( null, file.toString(), 0, 3 ) ) ) );
+    }
+
+    @Test( expected = ParseException.class )
+    public void testInvalidLayout()
+        throws Exception
+    {
+        DukascopyBi5Reader.getHour( Paths.get( "CADJPY", "2012", "may", "01", "00h_ticks.bi5" ), DateTimeZone.UTC );
+    }
+
+    @Test
+    public void testGetDigits()
+    {
+        Assert.assertEquals( 3, DukascopyBi5Reader.getDigits( "CADJPY" ) );
+        Assert.assertEquals( 3, DukascopyBi5Reader.getDigits( "xauusd" ) );
+        Assert.assertEquals( 5, DukascopyBi5Reader.getDigits( "EURUSD" ) );
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.TickBlock;
+
+public class DukascopyTickParserTest
+{
+    private DukascopyTickParser parser;
+
+    private TickBlock block;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        parser = new DukascopyTickParser();
+        block = new TickBlock();
+    }
+
+    private static ByteBuffer toBuffer( final String content )
+    {
+        return ByteBuffer.wrap( content.getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    @Test
+    public void testParse()
+        throws Exception
+    {
+        ByteBuffer buffer =
+            toBuffer( "Time,Ask,Bid,AskVolume,BidVolume\r\n01.05.2012 00:00:01.680,80.928,80.911,2.33,1.58\r\n"
+                + "01.05.2012 00:00:01.991,80.933,80.914,3.83,1.58" );
+        parser.parse( buffer, block, true );
+
+        Assert.assertEquals( 2, block.size() );
+        Assert.assertEquals( 3, parser.getLineNumber() );
+        Assert.assertFalse( buffer.hasRemaining() );
+        SimpleDateFormat dateFormat = new SimpleDateFormat( DukascopyTickParser.DUKASCOPY_PATTERN );
+        Assert.assertEquals( dateFormat.parse( "01.05.2012 00:00:01.680" ).getTime(), block.getTimeStamp( 0 ) );
+        Assert.assertEquals( dateFormat.parse( "01.05.2012 00:00:01.991" ).getTime(), block.getTimeStamp( 1 ) );
+        Assert.assertEquals( 80.933, block.getAsk( 1 ), 0 );
+        Assert.assertEquals( 80.914, block.getBid( 1 ), 0 );
+        Assert.assertEquals( 3.83, block.getAskVolume( 1 ), 0 );
+        Assert.assertEquals( 1.58, block.getBidVolume( 1 ), 0 );
+    }
+
+    @Test
+    public void testIncompleteLine()
+        throws Exception
+    {
+        ByteBuffer buffer = toBuffer( "01.05.2012 00:00:01.680,80.928,80.911,2.33,1.58\n01.05.2012 00:00:01.991,80.9" );
+        parser.parse( buffer, block, false );
+
+        Assert.assertEquals( 1, block.size() );
+        Assert.assertEquals( 48, buffer.position() );
+    }
+
+    @Test
+    public void testFullBlock()
+        throws Exception
+    {
+        block = new TickBlock( 1 );
+        ByteBuffer buffer =
+            toBuffer( "01.05.2012 00:00:01.680,80.928,80.911,2.33,1.58\n"
+                + "01.05.2012 00:00:01.991,80.933,80.914,3.83,1.58\n" );
+        parser.parse( buffer, block, true );
+
+        Assert.assertTrue( block.isFull() );
+        Assert.assertEquals( 48, buffer.position() );
+    }
+
+    @Test
+    public void testDecimals()
+        throws Exception
+    {
+        Random random = new Random( 4711 );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            String ask =
+                String.format( "%d.%0" + ( 1 + i % 6 ) + "d", random.nextInt( 200 ), random.nextInt( 100000 ) );
+            block.clear();
+            parser.parse( toBuffer( "01.05.2012 00:00:01.680," + ask + "," + ask + ",1,0.5\n" ), block, true );
+            Assert.assertEquals( ask, Double.parseDouble( ask ), block.getAsk( 0 ), 0 );
+        }
+    }
+
+    @Test
+    public void testDatePattern()
+        throws Exception
+    {
+        parser = new DukascopyTickParser( "yyyy.MM.dd HH:mm:ss" );
+        parser.parse( toBuffer( "2012.05.01 00:00:01,80.928,80.911,2.33,1.58\n" ), block, true );
+
+        Assert.assertEquals( new SimpleDateFormat( "yyyy.MM.dd HH:mm:ss" ).parse( "2012.05.01 00:00:01" ).getTime(),
+                             block.getTimeStamp( 0 ) );
+    }
+
+    @Test
+    public void testMalformedLine()
+    {
+        ByteBuffer buffer =
+            toBuffer( "01.05.2012 00:00:01.680,80.928,80.911,2.33,1.58\n"
+                + "01.05.2012 00:00:01.991,80.933,abc,3.83,1.58\n" );
+        try
+        {
+            parser.parse( buffer, block, true );
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( ParseException e )
+        {
+            Assert.assertEquals( 2, e.getErrorOffset() );
+        }
+    }
+
+    @Test
+    public void testMalformedTimeStamp()
+    {
+        try
+        {
+            parser.parse( toBuffer( "01.13.2012 00:00:01.680,80.928,80.911,2.33,1.58\n" ), block, true );
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( ParseException e )
+        {
+            Assert.assertEquals( 1, e.getErrorOffset() );
+        }
+    }
+
+    @Test
+    public void testFixedPoint()
+        throws Exception
+    {
+        block = new TickBlock( 4, 5 );
+        parser.parse( toBuffer( "01.05.2012 00:00:01.680,1.30125,1.3012,2.33,1.58\n"
+                                    + "01.05.2012 00:00:01.991,1.3012600,80,3.83,1.58\n" ), block, true );
+
+        Assert.assertEquals( 2, block.size() );
+        Assert.assertEquals( 130125, block.getAskPoints( 0 ) );
+        Assert.assertEquals( 130120, block.getBidPoints( 0 ) );
+        Assert.assertEquals( 130126, block.getAskPoints( 1 ) );
+        Assert.assertEquals( 8000000, block.getBidPoints( 1 ) );
+        Assert.assertEquals( 1.30125, block.getAsk( 0 ), 0 );
+        Assert.assertEquals( 3.83, block.getAskVolume( 1 ), 0 );
+
+        try
+        {
+            parser.parse( toBuffer( "01.05.2012 00:00:02.680,1.301251,1.3012,2.33,1.58\n" ), block, true );
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( ParseException e )
+        {
+            Assert.assertEquals( 3, e.getErrorOffset() );
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.MetatraderBean;
+
+public class MetatraderCsvWriterTest
+{
+    private static final DateTime FIRST = new DateTime( 2012, 5, 1, 9, 7 );
+
+    private File file;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        file = File.createTempFile( "CADJPY1", ".csv" );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        Files.deleteIfExists( file.toPath() );
+    }
+
+    private static MetatraderBean createBar( final DateTime timeStamp, final double price )
+    {
+        MetatraderBean bean = new MetatraderBean();
+        bean.setTimeStamp( timeStamp );
+        bean.setOpen( price );
+        bean.setMax( price );
+        bean.setMin( price );
+        bean.setClose( price );
+        bean.setVolume( 1 );
+        return bean;
+    }
+
+    private MetatraderCsvWriter write( final long resumeTime, final int firstMinute, final double... prices )
+        throws Exception
+    {
+        MetatraderCsvWriter writer = new MetatraderCsvWriter( null, file.getPath() );
+        writer.setResumeTime( resumeTime );
+        writer.open();
+        for ( int i = 0; i < prices.length; i++ )
+        {
+            writer.append( createBar( FIRST.plusMinutes( firstMinute + i ), prices[i] ) );
+        }
+        writer.close();
+        return writer;
+    }
+
+    private String readFile()
+        throws Exception
+    {
+        return new String( Files.readAllBytes( file.toPath() ), StandardCharsets.US_ASCII );
+    }
+
+    @Test
+    public void testAppend()
+        throws Exception
+    {
+        MetatraderCsvWriter writer = write( Long.MIN_VALUE, 0, 1, 2, 3 );
+        String before = readFile();
+        Assert.assertEquals( FIRST.plusMinutes( 2 ).getMillis(), writer.readLastBarTime() );
+
+        // the partial last bar is replaced by its complete version
+        write( writer.readLastBarTime(), 2, 4, 5 );
+
+        String after = readFile();
+        String[] lines = after.split( "\n" );
+        Assert.assertEquals( 4, lines.length );
+        // the lines before the replaced bar are kept byte by byte
+        Assert.assertTrue( after.startsWith( before.substring( 0, before.indexOf( "2012.05.01,09:09" ) ) ) );
+        Assert.assertEquals( "2012.05.01,09:09,4.00000,4.00000,4.00000,4.00000,1", lines[2] );
+        Assert.assertEquals( "2012.05.01,09:10,5.00000,5.00000,5.00000,5.00000,1", lines[3] );
+        Assert.assertEquals( FIRST.plusMinutes( 3 ).getMillis(), writer.readLastBarTime() );
+    }
+
+    @Test
+    public void testTruncatedLine()
+        throws Exception
+    {
+        MetatraderCsvWriter writer = write( Long.MIN_VALUE, 0, 1, 2, 3 );
+        Files.write( file.toPath(), "2012.05.01,09:".getBytes( StandardCharsets.US_ASCII ),
+                     StandardOpenOption.APPEND );
+
+        // a line without a complete timestamp isn't a bar, so the whole file is written again
+        Assert.assertEquals( Long.MIN_VALUE, writer.readLastBarTime() );
+        write( writer.readLastBarTime(), 0, 4, 5 );
+        byte[] appended = Files.readAllBytes( file.toPath() );
+
+        write( Long.MIN_VALUE, 0, 4, 5 );
+        Assert.assertTrue( Arrays.equals( Files.readAllBytes( file.toPath() ), appended ) );
+    }
+}
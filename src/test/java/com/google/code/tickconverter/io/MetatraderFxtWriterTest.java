@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.convert.MetatraderConverter;
+
+public class MetatraderFxtWriterTest
+{
+    // wall clock 2012.05.01 00:00 in seconds since 1970
+    private static final long TIME = 1335830400L;
+
+    private File file;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        file = File.createTempFile( "CADJPY1_0", ".fxt" );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        Files.deleteIfExists( file.toPath() );
+    }
+
+    private static void addTick( final MetatraderFxtWriter writer, final MetatraderConverter bar,
+                                 final DateTime timeStamp, final double ask, final double bid )
+        throws Exception
+    {
+        bar.addTick( timeStamp.getMillis(), ask, bid, 1, 1 );
+        writer.tickAdded( bar, timeStamp.getMillis() );
+    }
+
+    @Test
+    public void testWrite()
+        throws Exception
+    {
+        MetatraderFxtWriter writer = new MetatraderFxtWriter( file.getPath(), "CADJPY", 1, 3 );
+        MetatraderConverter bar = new MetatraderConverter( new DateTime( 2012, 5, 1, 0, 0 ), Period.minutes( 1 ) );
+        addTick( writer, bar, new DateTime( 2012, 5, 1, 0, 0, 1 ), 81, 80 );
+        addTick( writer, bar, new DateTime( 2012, 5, 1, 0, 0, 30 ), 82, 81 );
+        bar.incrementInterval();
+        addTick( writer, bar, new DateTime( 2012, 5, 1, 0, 1, 5 ), 80, 79 );
+        writer.close();
+
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) ).order( ByteOrder.LITTLE_ENDIAN );
+        Assert.assertEquals( MetatraderFxtWriter.HEADER_LENGTH + 3 * MetatraderFxtWriter.RECORD_LENGTH,
+                             buffer.remaining() );
+        Assert.assertEquals( MetatraderFxtWriter.VERSION, buffer.getInt( 0 ) );
+        Assert.assertEquals( 1, buffer.getInt( 208 ) );
+        Assert.assertEquals( 2, buffer.getInt( 216 ) );
+        Assert.assertEquals( TIME + 1, buffer.getInt( 220 ) );
+        Assert.assertEquals( TIME + 65, buffer.getInt( 224 ) );
+        Assert.assertEquals( 3, buffer.getInt( 228 ) );
+        Assert.assertEquals( 3, buffer.getInt( 256 ) );
+
+        buffer.position( MetatraderFxtWriter.HEADER_LENGTH + MetatraderFxtWriter.RECORD_LENGTH );
+        Assert.assertEquals( TIME, buffer.getLong() );
+        Assert.assertEquals( 80.5, buffer.getDouble(), 0 );
+        Assert.assertEquals( 81.5, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.5, buffer.getDouble(), 0 );
+        Assert.assertEquals( 81.5, buffer.getDouble(), 0 );
+        Assert.assertEquals( 4, buffer.getLong() );
+        Assert.assertEquals( TIME + 30, buffer.getInt() );
+        Assert.assertEquals( 4, buffer.getInt() );
+
+        Assert.assertEquals( TIME + 60, buffer.getLong() );
+        Assert.assertEquals( 79.5, buffer.getDouble(), 0 );
+    }
+}
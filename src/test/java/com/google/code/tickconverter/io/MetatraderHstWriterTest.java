@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.IMetatraderRO;
+import com.google.code.tickconverter.bean.MetatraderBean;
+
+public class MetatraderHstWriterTest
+{
+    private static final DateTime TIMESTAMP = new DateTime( 2012, 5, 1, 9, 7, DateTimeZone.forOffsetHours( 2 ) );
+
+    // wall clock 2012.05.01 09:07 in seconds since 1970
+    private static final long TIME = 1335863220L;
+
+    private File file;
+
+    private LinkedBlockingQueue<IMetatraderRO> queue;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        file = File.createTempFile( "CADJPY1", ".hst" );
+        queue = new LinkedBlockingQueue<>();
+        MetatraderBean bean = new MetatraderBean();
+        bean.setTimeStamp( TIMESTAMP );
+        bean.setOpen( 80.9195 );
+        bean.setMax( 80.936 );
+        bean.setMin( 80.91 );
+        bean.setClose( 80.92 );
+        bean.setVolume( 56.4 );
+        queue.add( bean );
+        queue.add( MetatraderBean.END_OF_STREAM );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        Files.deleteIfExists( file.toPath() );
+    }
+
+    private ByteBuffer write( final int version )
+        throws Exception
+    {
+        new MetatraderHstWriter( queue, file.getPath(), version, "CADJPY", 1, 3 ).write();
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) ).order( ByteOrder.LITTLE_ENDIAN );
+
+        Assert.assertEquals( version, buffer.getInt() );
+        byte[] copyright = new byte[64];
+        buffer.get( copyright );
+        Assert.assertTrue( new String( copyright, StandardCharsets.US_ASCII ).startsWith( "(C)opyright 2003" ) );
+        byte[] symbol = new byte[12];
+        buffer.get( symbol );
+        Assert.assertEquals( "CADJPY\0\0\0\0\0\0", new String( symbol, StandardCharsets.US_ASCII ) );
+        Assert.assertEquals( 1, buffer.getInt() );
+        Assert.assertEquals( 3, buffer.getInt() );
+        buffer.position( MetatraderHstWriter.HEADER_LENGTH );
+        return buffer;
+    }
+
+    @Test
+    public void testVersion400()
+        throws Exception
+    {
+        ByteBuffer buffer = write( MetatraderHstWriter.VERSION_400 );
+        Assert.assertEquals( 44, buffer.remaining() );
+        Assert.assertEquals( TIME, buffer.getInt() );
+        Assert.assertEquals( 80.9195, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.91, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.936, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.92, buffer.getDouble(), 0 );
+        Assert.assertEquals( 56, buffer.getDouble(), 0 );
+    }
+
+    @Test
+    public void testVersion401()
+        throws Exception
+    {
+        ByteBuffer buffer = write( MetatraderHstWriter.VERSION_401 );
+        Assert.assertEquals( 60, buffer.remaining() );
+        Assert.assertEquals( TIME, buffer.getLong() );
+        Assert.assertEquals( 80.9195, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.936, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.91, buffer.getDouble(), 0 );
+        Assert.assertEquals( 80.92, buffer.getDouble(), 0 );
+        Assert.assertEquals( 56, buffer.getLong() );
+        Assert.assertEquals( 0, buffer.getInt() );
+        Assert.assertEquals( 0, buffer.getLong() );
+    }
+
+    private static MetatraderBean createBar( final DateTime timeStamp, final double price )
+    {
+        MetatraderBean bean = new MetatraderBean();
+        bean.setTimeStamp( timeStamp );
+        bean.setOpen( price );
+        bean.setMax( price );
+        bean.setMin( price );
+        bean.setClose( price );
+        bean.setVolume( 1 );
+        return bean;
+    }
+
+    @Test
+    public void testResume()
+        throws Exception
+    {
+        DateTime first = new DateTime( 2012, 5, 1, 9, 7 );
+        MetatraderHstWriter writer =
+            new MetatraderHstWriter( null, file.getPath(), MetatraderHstWriter.VERSION_401, "CADJPY", 1, 3 );
+        writer.open();
+        writer.append( createBar( first, 1 ) );
+        writer.append( createBar( first.plusMinutes( 1 ), 2 ) );
+        writer.close();
+        Assert.assertEquals( first.plusMinutes( 1 ).getMillis(), writer.readLastBarTime() );
+
+        writer.setResumeTime( first.plusMinutes( 1 ).getMillis() );
+        writer.open();
+        writer.append( createBar( first.plusMinutes( 1 ), 3 ) );
+        writer.append( createBar( first.plusMinutes( 2 ), 4 ) );
+        writer.close();
+        Assert.assertEquals( first.plusMinutes( 2 ).getMillis(), writer.readLastBarTime() );
+
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) ).order( ByteOrder.LITTLE_ENDIAN );
+        Assert.assertEquals( MetatraderHstWriter.HEADER_LENGTH + 3 * 60, buffer.limit() );
+        Assert.assertEquals( 1, buffer.getDouble( MetatraderHstWriter.HEADER_LENGTH + 8 ), 0 );
+        Assert.assertEquals( 3, buffer.getDouble( MetatraderHstWriter.HEADER_LENGTH + 60 + 8 ), 0 );
+        Assert.assertEquals( 4, buffer.getDouble( MetatraderHstWriter.HEADER_LENGTH + 120 + 8 ), 0 );
+    }
+
+    @Test( timeout = 5000 )
+    public void testErrorWithFullQueue()
+        throws Exception
+    {
+        final BlockingQueue<IMetatraderRO> barQueue = new ArrayBlockingQueue<>( 1 );
+        final DateTime first = new DateTime( 2012, 5, 1, 9, 7 );
+        Thread converter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for ( int minute = 0; minute < 6; minute++ )
+                    {
+                        barQueue.put( createBar( first.plusMinutes( minute ), minute ) );
+                    }
+                    barQueue.put( MetatraderBean.END_OF_STREAM );
+                }
+                catch ( InterruptedException e )
+                {
+                    // the test fails by the timeout
+                }
+            }
+        };
+        MetatraderHstWriter writer =
+            new MetatraderHstWriter( barQueue, file.getPath(), MetatraderHstWriter.VERSION_401, "CADJPY", 1, 3 )
+            {
+                @Override
+                protected void writeBar( final IMetatraderRO trader, final ByteBuffer buffer )
+                {
+                    // fail while the converter waits for the full queue
+                    while ( 0 < barQueue.remainingCapacity() )
+                    {
+                        Thread.yield();
+                    }
+                    throw new IllegalStateException( "writing failed" );
+                }
+            };
+        converter.start();
+
+        writer.run();
+        converter.join();
+
+        Assert.assertTrue( barQueue.isEmpty() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testUnknownVersion()
+    {
+        new MetatraderHstWriter( queue, file.getPath(), 402, "CADJPY", 1, 3 );
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.MetatraderBean;
+import com.google.code.tickconverter.convert.MetatraderConverter;
+
+public class MetatraderLineFormatterTest
+{
+    private final MetatraderLineFormatter formatter = new MetatraderLineFormatter();
+
+    private final DecimalFormat format = new DecimalFormat( "#####0.00000", new DecimalFormatSymbols( Locale.US ) );
+
+    private final DecimalFormat secondFormat = new DecimalFormat( "#####0", new DecimalFormatSymbols( Locale.US ) );
+
+    private String format( final MetatraderBean bean )
+    {
+        byte[] buffer = new byte[MetatraderLineFormatter.MAX_LINE_LENGTH];
+        int length = formatter.format( bean, buffer, 0 );
+        return new String( buffer, 0, length, StandardCharsets.US_ASCII );
+    }
+
+    private String expected( final MetatraderBean bean )
+    {
+        return bean.getTimeStamp().toString( "yyyy.MM.dd" ) + "," + bean.getTimeStamp().toString( "HH:mm" ) + ","
+            + format.format( bean.getOpen() ) + "," + format.format( bean.getMax() ) + ","
+            + format.format( bean.getMin() ) + "," + format.format( bean.getClose() ) + ","
+            + secondFormat.format( Math.round( bean.getVolume() ) ) + "\n";
+    }
+
+    private static MetatraderBean createBean( final DateTime timeStamp, final double open, final double max,
+                                              final double min, final double close, final double volume )
+    {
+        MetatraderBean bean = new MetatraderBean();
+        bean.setTimeStamp( timeStamp );
+        bean.setOpen( open );
+        bean.setMax( max );
+        bean.setMin( min );
+        bean.setClose( close );
+        bean.setVolume( volume );
+        return bean;
+    }
+
+    @Test
+    public void testFormat()
+    {
+        MetatraderBean bean =
+            createBean( new DateTime( 2012, 5, 1, 9, 7 ), 80.9195, 80.936, 80.91950000000001, 80.9, 56.4 );
+        Assert.assertEquals( "2012.05.01,09:07,80.91950,80.93600,80.91950,80.90000,56\n", format( bean ) );
+    }
+
+    @Test
+    public void testRoundingTies()
+    {
+        double[] values = { 0.000005, 0.000015, 1.000025, 80.123455, 80.123465, 2.5e-6, 0, 123456789.123455 };
+        for ( double value : values )
+        {
+            MetatraderBean bean = createBean( new DateTime( 999, 12, 31, 23, 59 ), value, value, value, value, 2.5 );
+            Assert.assertEquals( expected( bean ), format( bean ) );
+        }
+    }
+
+    @Test
+    public void testRandomValues()
+    {
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 100000; i++ )
+        {
+            double base = random.nextInt( 4 ) == 0 ? random.nextInt( 2000000 ) / 10000d : random.nextDouble() * 200;
+            MetatraderBean bean =
+                createBean( new DateTime( random.nextLong() % 200000000000000L ), base, base + random.nextDouble(),
+                            base * random.nextDouble(), random.nextInt( 100000 ) / 100000d, random.nextDouble()
+                                * random.nextInt( 100000 ) );
+            Assert.assertEquals( expected( bean ), format( bean ) );
+        }
+    }
+
+    @Test
+    public void testFixedPoint()
+        throws Exception
+    {
+        // the means of the ticks with 5 digits have 6 digits and are rounded half even
+        MetatraderConverter bar = new MetatraderConverter( new DateTime( 2012, 5, 1, 9, 7 ), Period.minutes( 1 ), 6 );
+        bar.addTickPoints( new DateTime( 2012, 5, 1, 9, 7, 1 ).getMillis(), 130125, 130120, 1, 1 );
+        bar.addTickPoints( new DateTime( 2012, 5, 1, 9, 7, 2 ).getMillis(), 130126, 130121, 1, 1 );
+        Assert.assertEquals( 1301225, bar.getOpenPoints() );
+        Assert.assertEquals( 1301235, bar.getClosePoints() );
+        Assert.assertEquals( "2012.05.01,09:07,1.30122,1.30124,1.30122,1.30124,4\n",
+                             format( new MetatraderBean( bar ) ) );
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.TickBlock;
+
+public class ParallelDukascopyReaderTest
+{
+    private File file;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        file = File.createTempFile( "ticks", ".csv" );
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        Files.deleteIfExists( file.toPath() );
+    }
+
+    private void writeTicks( final int count, final String malformed )
+        throws Exception
+    {
+        StringBuilder content = new StringBuilder( "Time,Ask,Bid,AskVolume,BidVolume\n" );
+        for ( int i = 0; i < count; i++ )
+        {
+            content.append( String.format( "01.05.2012 %02d:%02d:%02d.%03d,80.%03d,80.%03d,%d.5,1.58\n", i / 3600,
+                                           i / 60 % 60, i % 60, i % 1000, i % 1000, i % 997, i % 10 ) );
+            if ( i == count / 2 && null != malformed )
+            {
+                content.append( malformed ).append( '\n' );
+            }
+        }
+        Files.write( file.toPath(), content.toString().getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    private static long[] readAll( final LinkedBlockingQueue<TickBlock> queue )
+    {
+        int size = 0;
+        for ( TickBlock block : queue )
+        {
+            size += block.size();
+        }
+        long[] values = new long[size * 2];
+        int index = 0;
+        for ( TickBlock block : queue )
+        {
+            for ( int i = 0; i < block.size(); i++ )
+            {
+                values[index++] = block.getTimeStamp( i );
+                values[index++] = Double.doubleToLongBits( block.getAsk( i ) + block.getBidVolume( i ) );
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void testRead()
+        throws Exception
+    {
+        writeTicks( 5000, null );
+        LinkedBlockingQueue<TickBlock> sequential = new LinkedBlockingQueue<>();
+        new DukascopyCsvReader( sequential, file.getPath() ).read();
+        LinkedBlockingQueue<TickBlock> parallel = new LinkedBlockingQueue<>();
+        new ParallelDukascopyReader( parallel, file.getPath(), 3, 997 ).read();
+
+        long[] expected = readAll( sequential );
+        Assert.assertEquals( 10000, expected.length );
+        Assert.assertTrue( java.util.Arrays.equals( expected, readAll( parallel ) ) );
+    }
+
+    @Test
+    public void testStartTime()
+        throws Exception
+    {
+        writeTicks( 5000, null );
+        long startTime = new DateTime( 2012, 5, 1, 0, 20, 34, 234 ).getMillis();
+        LinkedBlockingQueue<TickBlock> sequential = new LinkedBlockingQueue<>();
+        DukascopyCsvReader reader = new DukascopyCsvReader( sequential, file.getPath() );
+        reader.setStartTime( startTime );
+        reader.read();
+        LinkedBlockingQueue<TickBlock> parallel = new LinkedBlockingQueue<>();
+        ParallelDukascopyReader parallelReader = new ParallelDukascopyReader( parallel, file.getPath(), 3, 997 );
+        parallelReader.setStartTime( startTime );
+        parallelReader.read();
+
+        long[] expected = readAll( sequential );
+        Assert.assertEquals( 2 * ( 5000 - 1234 ), expected.length );
+        Assert.assertEquals( startTime, expected[0] );
+        Assert.assertTrue( java.util.Arrays.equals( expected, readAll( parallel ) ) );
+    }
+
+    @Test
+    public void testTimeWindow()
+        throws Exception
+    {
+        writeTicks( 5000, null );
+        long startTime = new DateTime( 2012, 5, 1, 0, 20, 34, 234 ).getMillis();
+        long endTime = new DateTime( 2012, 5, 1, 1, 0, 0, 0 ).getMillis();
+        LinkedBlockingQueue<TickBlock> sequential = new LinkedBlockingQueue<>();
+        DukascopyCsvReader reader = new DukascopyCsvReader( sequential, file.getPath() );
+        reader.setStartTime( startTime );
+        reader.setEndTime( endTime );
+        reader.read();
+        LinkedBlockingQueue<TickBlock> parallel = new LinkedBlockingQueue<>();
+        ParallelDukascopyReader parallelReader = new ParallelDukascopyReader( parallel, file.getPath(), 3, 997 );
+        parallelReader.setStartTime( startTime );
+        parallelReader.setEndTime( endTime );
+        parallelReader.read();
+
+        long[] expected = readAll( sequential );
+        Assert.assertEquals( 2 * ( 3600 - 1234 ), expected.length );
+        Assert.assertEquals( startTime, expected[0] );
+        Assert.assertTrue( expected[expected.length - 2] < endTime );
+        Assert.assertTrue( java.util.Arrays.equals( expected, readAll( parallel ) ) );
+
+        File gzip = new File( file.getPath() + DukascopyCsvReader.GZIP_EXTENSION );
+        try
+        {
+            try (OutputStream out = new GZIPOutputStream( new FileOutputStream( gzip ) ))
+            {
+                out.write( Files.readAllBytes( file.toPath() ) );
+            }
+            LinkedBlockingQueue<TickBlock> compressed = new LinkedBlockingQueue<>();
+            DukascopyCsvReader compressedReader = new DukascopyCsvReader( compressed, gzip.getPath() );
+            compressedReader.setStartTime( startTime );
+            compressedReader.setEndTime( endTime );
+            compressedReader.read();
+            Assert.assertTrue( java.util.Arrays.equals( expected, readAll( compressed ) ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( gzip.toPath() );
+        }
+    }
+
+    @Test
+    public void testMalformedLine()
+        throws Exception
+    {
+        writeTicks( 3000, "01.05.2012 00:25:00.000,abc,80.1,1,1" );
+        try
+        {
+            new ParallelDukascopyReader( new LinkedBlockingQueue<TickBlock>(), file.getPath(), 2, 1000 ).read();
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( ParseException e )
+        {
+            Assert.assertEquals( 1503, e.getErrorOffset() );
+        }
+    }
+
+    @Test
+    public void testMalformedLineAfterStartTime()
+        throws Exception
+    {
+        writeTicks( 3000, "01.05.2012 00:25:00.000,abc,80.1,1,1" );
+        long startTime = new DateTime( 2012, 5, 1, 0, 10, 0, 0 ).getMillis();
+        DukascopyCsvReader[] readers =
+            { new DukascopyCsvReader( new LinkedBlockingQueue<TickBlock>(), file.getPath() ),
+                new ParallelDukascopyReader( new LinkedBlockingQueue<TickBlock>(), file.getPath(), 2, 1000 ) };
+        for ( DukascopyCsvReader reader : readers )
+        {
+            reader.setStartTime( startTime );
+            try
+            {
+                reader.read();
+                Assert.fail( "don't throw expected exception" );
+            }
+            catch ( ParseException e )
+            {
+                Assert.assertEquals( 1503, e.getErrorOffset() );
+                Assert.assertTrue( e.getMessage(), e.getMessage().contains( "line 1503" ) );
+            }
+        }
+    }
+
+    @Test
+    public void testCompressed()
+        throws Exception
+    {
+        writeTicks( 5000, null );
+        LinkedBlockingQueue<TickBlock> plain = new LinkedBlockingQueue<>();
+        new DukascopyCsvReader( plain, file.getPath() ).read();
+        long[] expected = readAll( plain );
+
+        byte[] content = Files.readAllBytes( file.toPath() );
+        File gzip = new File( file.getPath() + DukascopyCsvReader.GZIP_EXTENSION );
+        File zip = new File( file.getPath() + DukascopyCsvReader.ZIP_EXTENSION );
+        try
+        {
+            try (OutputStream out = new GZIPOutputStream( new FileOutputStream( gzip ) ))
+            {
+                out.write( content );
+            }
+            // the archive splits the ticks into two members, each with a header line
+            int middle = content.length / 2;
+            while ( '\n' != content[middle - 1] )
+            {
+                middle++;
+            }
+            try (ZipOutputStream out = new ZipOutputStream( new FileOutputStream( zip ) ))
+            {
+                out.putNextEntry( new ZipEntry( "first.csv" ) );
+                out.write( content, 0, middle );
+                out.putNextEntry( new ZipEntry( "second.csv" ) );
+                out.write( "Time,Ask,Bid,AskVolume,BidVolume\n".getBytes( StandardCharsets.US_ASCII ) );
+                out.write( content, middle, content.length - middle );
+            }
+
+            LinkedBlockingQueue<TickBlock> compressed = new LinkedBlockingQueue<>();
+            new DukascopyCsvReader( compressed, gzip.getPath() ).read();
+            Assert.assertTrue( java.util.Arrays.equals( expected, readAll( compressed ) ) );
+            compressed.clear();
+            new DukascopyCsvReader( compressed, zip.getPath() ).read();
+            Assert.assertTrue( java.util.Arrays.equals( expected, readAll( compressed ) ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( gzip.toPath() );
+            Files.deleteIfExists( zip.toPath() );
+        }
+    }
+}
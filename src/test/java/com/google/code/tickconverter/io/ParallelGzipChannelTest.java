@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class ParallelGzipChannelTest
+{
+    private static byte[] createContent()
+    {
+        // text like bytes, which are compressible
+        byte[] content = new byte[3 * ParallelGzipChannel.BLOCK_SIZE + 12345];
+        Random random = new Random( 17 );
+        for ( int i = 0; i < content.length; i++ )
+        {
+            content[i] = (byte) ( '0' + random.nextInt( 10 ) );
+        }
+        return content;
+    }
+
+    private static byte[] compress( final byte[] content, final int parallelism )
+        throws Exception
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipChannel channel = new ParallelGzipChannel( Channels.newChannel( compressed ), parallelism ))
+        {
+            // writes across the borders of the blocks
+            for ( int offset = 0; offset < content.length; offset += 100000 )
+            {
+                channel.write( ByteBuffer.wrap( content, offset, Math.min( 100000, content.length - offset ) ) );
+            }
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress( final byte[] compressed )
+        throws Exception
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream( new ByteArrayInputStream( compressed ) ))
+        {
+            byte[] buffer = new byte[8192];
+            for ( int read = in.read( buffer ); 0 <= read; read = in.read( buffer ) )
+            {
+                content.write( buffer, 0, read );
+            }
+        }
+        return content.toByteArray();
+    }
+
+    @Test
+    public void testWrite()
+        throws Exception
+    {
+        byte[] content = createContent();
+        byte[] parallel = compress( content, 3 );
+        Assert.assertTrue( parallel.length < content.length );
+        Assert.assertTrue( Arrays.equals( content, decompress( parallel ) ) );
+        // the members don't depend on the number of threads
+        Assert.assertTrue( Arrays.equals( parallel, compress( content, 0 ) ) );
+    }
+
+    @Test
+    public void testFlush()
+        throws Exception
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelGzipChannel channel = new ParallelGzipChannel( Channels.newChannel( compressed ), 2 );
+        channel.write( ByteBuffer.wrap( "first".getBytes( "US-ASCII" ) ) );
+        channel.flush();
+        // the flushed bytes are a complete gzip file
+        Assert.assertEquals( "first", new String( decompress( compressed.toByteArray() ), "US-ASCII" ) );
+        channel.write( ByteBuffer.wrap( ",second".getBytes( "US-ASCII" ) ) );
+        channel.close();
+        Assert.assertEquals( "first,second", new String( decompress( compressed.toByteArray() ), "US-ASCII" ) );
+    }
+}
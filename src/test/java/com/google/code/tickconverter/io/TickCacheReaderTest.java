@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.code.tickconverter.bean.TickBlock;
+
+public class TickCacheReaderTest
+{
+    private Path directory;
+
+    private Path file;
+
+    private Path cacheFile;
+
+    private int parsed;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        directory = Files.createTempDirectory( "cache" );
+        file = directory.resolve( "ticks.csv" );
+        cacheFile = TickCacheReader.getCacheFile( directory.resolve( "cache" ), file.toString() );
+        StringBuilder content = new StringBuilder( "Time,Ask,Bid,AskVolume,BidVolume\n" );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            content.append( String.format( "01.05.2012 %02d:%02d:%02d.%03d,80.%03d,80.%03d,%d.5,1.58\n", i / 3600,
+                                           i / 60 % 60, i % 60, i % 1000, i % 1000, i % 997, i % 10 ) );
+        }
+        // a price with more digits than a scaled column, which is stored as double
+        content.append( "01.05.2012 01:23:21.000,80.12345678912,80.1,0.1,0.2\n" );
+        Files.write( file, content.toString().getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        Files.deleteIfExists( cacheFile );
+        Files.deleteIfExists( cacheFile.getParent() );
+        Files.deleteIfExists( file );
+        Files.deleteIfExists( directory );
+    }
+
+    private TickCacheReader createReader()
+    {
+        DukascopyCsvReader source = new DukascopyCsvReader( file.toString() )
+        {
+            @Override
+            public void read( final TickBlockHandler handler )
+                throws IOException, ParseException, InterruptedException
+            {
+                parsed++;
+                super.read( handler );
+            }
+        };
+        source.setBatchSize( 1000 );
+        return new TickCacheReader( null, source, cacheFile );
+    }
+
+    private static List<String> read( final DukascopyCsvReader reader )
+        throws Exception
+    {
+        final List<String> ticks = new ArrayList<>();
+        reader.read( new TickBlockHandler()
+        {
+            @Override
+            public void blockRead( final TickBlock block )
+            {
+                for ( int i = 0; i < block.size(); i++ )
+                {
+                    ticks.add( block.getTimeStamp( i ) + "," + block.getAsk( i ) + "," + block.getBid( i ) + ","
+                        + block.getAskVolume( i ) + "," + block.getBidVolume( i ) );
+                }
+            }
+        } );
+        return ticks;
+    }
+
+    @Test
+    public void testRead()
+        throws Exception
+    {
+        List<String> expected = read( new DukascopyCsvReader( file.toString() ) );
+        Assert.assertEquals( 5001, expected.size() );
+
+        Assert.assertEquals( expected, read( createReader() ) );
+        Assert.assertEquals( 1, parsed );
+        Assert.assertTrue( Files.exists( cacheFile ) );
+        Assert.assertTrue( Files.size( cacheFile ) < Files.size( file ) / 4 );
+
+        Assert.assertEquals( expected, read( createReader() ) );
+        Assert.assertEquals( 1, parsed );
+    }
+
+    @Test
+    public void testModifiedSource()
+        throws Exception
+    {
+        read( createReader() );
+        Files.setLastModifiedTime( file, FileTime.fromMillis( Files.getLastModifiedTime( file ).toMillis() + 2000 ) );
+        List<String> ticks = read( createReader() );
+        Assert.assertEquals( 2, parsed );
+        Assert.assertEquals( 5001, ticks.size() );
+        read( createReader() );
+        Assert.assertEquals( 2, parsed );
+    }
+
+    @Test
+    public void testStartTime()
+        throws Exception
+    {
+        read( createReader() );
+        TickCacheReader reader = createReader();
+        long startTime = new DateTime( 2012, 5, 1, 0, 20, 34, 234 ).getMillis();
+        reader.setStartTime( startTime );
+        List<String> ticks = read( reader );
+        Assert.assertEquals( 1, parsed );
+        Assert.assertEquals( 5001 - 1234, ticks.size() );
+        Assert.assertTrue( ticks.get( 0 ).startsWith( startTime + "," ) );
+        Assert.assertTrue( Arrays.asList( ticks.get( ticks.size() - 1 ).split( "," ) ).contains( "80.12345678912" ) );
+    }
+}
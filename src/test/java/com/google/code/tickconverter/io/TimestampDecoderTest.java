@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class TimestampDecoderTest
+{
+    private static long decode( final TimestampDecoder decoder, final String timestamp )
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( ( "x" + timestamp + "," ).getBytes( StandardCharsets.US_ASCII ) );
+        return decoder.decode( buffer, 1, buffer.limit() - 1 );
+    }
+
+    private static void assertDecode( final String pattern, final String zoneId )
+        throws Exception
+    {
+        DateTimeZone zone = DateTimeZone.forID( zoneId );
+        TimestampDecoder decoder = TimestampDecoder.compile( pattern, zone );
+        Assert.assertTrue( decoder.isCompiled() );
+        SimpleDateFormat dateFormat = new SimpleDateFormat( pattern );
+        dateFormat.setTimeZone( zone.toTimeZone() );
+
+        long end = new DateTime( 2012, 11, 5, 0, 0, zone ).getMillis();
+        for ( long time = new DateTime( 2012, 3, 10, 0, 0, zone ).getMillis(); time < end; time += 1433217 )
+        {
+            String timestamp = dateFormat.format( new Date( time ) );
+            Assert.assertEquals( timestamp, dateFormat.parse( timestamp ).getTime(), decode( decoder, timestamp ) );
+        }
+    }
+
+    @Test
+    public void testDukascopyPattern()
+        throws Exception
+    {
+        assertDecode( DukascopyTickParser.DUKASCOPY_PATTERN, "UTC" );
+        assertDecode( DukascopyTickParser.DUKASCOPY_PATTERN, "Europe/Berlin" );
+        assertDecode( DukascopyTickParser.DUKASCOPY_PATTERN, "America/New_York" );
+    }
+
+    @Test
+    public void testOtherPatterns()
+        throws Exception
+    {
+        assertDecode( "yyyy.MM.dd HH:mm:ss", "Europe/Berlin" );
+        assertDecode( "yyyyMMdd HHmmssSSS", "America/New_York" );
+    }
+
+    @Test
+    public void testDstGap()
+        throws Exception
+    {
+        DateTimeZone zone = DateTimeZone.forID( "Europe/Berlin" );
+        TimestampDecoder decoder = TimestampDecoder.compile( DukascopyTickParser.DUKASCOPY_PATTERN, zone );
+        SimpleDateFormat dateFormat = new SimpleDateFormat( DukascopyTickParser.DUKASCOPY_PATTERN );
+        dateFormat.setTimeZone( zone.toTimeZone() );
+
+        for ( String timestamp : new String[] { "25.03.2012 02:30:00.000", "28.10.2012 02:30:00.000" } )
+        {
+            Assert.assertEquals( timestamp, dateFormat.parse( timestamp ).getTime(), decode( decoder, timestamp ) );
+        }
+    }
+
+    @Test
+    public void testFallback()
+        throws Exception
+    {
+        TimestampDecoder decoder = TimestampDecoder.compile( "d.M.yy H:mm", DateTimeZone.UTC );
+        Assert.assertFalse( decoder.isCompiled() );
+        Assert.assertEquals( new DateTime( 2012, 5, 1, 7, 5, DateTimeZone.UTC ).getMillis(),
+                             decode( decoder, "1.5.12 7:05" ) );
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        TimestampDecoder decoder = TimestampDecoder.compile( DukascopyTickParser.DUKASCOPY_PATTERN, DateTimeZone.UTC );
+        Assert.assertEquals( TimestampDecoder.INVALID, decode( decoder, "01.05.2012 00:00:01,680" ) );
+        Assert.assertEquals( TimestampDecoder.INVALID, decode( decoder, "01.05.2012 00:60:01.680" ) );
+        Assert.assertEquals( TimestampDecoder.INVALID, decode( decoder, "01.05.2012 24:00:01.680" ) );
+        Assert.assertEquals( TimestampDecoder.INVALID, decode( decoder, "01.05.2012 00:00:01.6" ) );
+    }
+}
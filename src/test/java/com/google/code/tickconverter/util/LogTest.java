@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogTest
+{
+    private final Logger logger = Logger.getLogger( LogTest.class );
+
+    private final List<String> messages = new ArrayList<>();
+
+    private final AppenderSkeleton appender = new AppenderSkeleton()
+    {
+        @Override
+        protected void append( final LoggingEvent event )
+        {
+            messages.add( event.getRenderedMessage() );
+        }
+
+        @Override
+        public boolean requiresLayout()
+        {
+            return false;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    };
+
+    // fails if a message of a disabled level is built
+    private static final Object UNPRINTABLE = new Object()
+    {
+        @Override
+        public String toString()
+        {
+            throw new AssertionError( "message of a disabled level was built" );
+        }
+    };
+
+    @Before
+    public void setUp()
+    {
+        logger.setAdditivity( false );
+        logger.addAppender( appender );
+    }
+
+    @After
+    public void tearDown()
+    {
+        logger.removeAppender( appender );
+        logger.setAdditivity( true );
+        logger.setLevel( null );
+    }
+
+    @Test
+    public void testFormat()
+    {
+        Assert.assertEquals( "read 5 lines of a.csv", Log.format( "read {} lines of {}", 5, "a.csv" ) );
+        Assert.assertEquals( "no placeholder", Log.format( "no placeholder", 1 ) );
+        Assert.assertEquals( "null and {}", Log.format( "{} and {}", (Object) null ) );
+    }
+
+    @Test
+    public void testLevel()
+    {
+        logger.setLevel( Level.INFO );
+        Log log = Log.getLog( LogTest.class );
+        log.debug( "tick {}", UNPRINTABLE );
+        log.debug( "tick {} of {}", UNPRINTABLE, UNPRINTABLE );
+        log.debugSampled( "tick {}", UNPRINTABLE );
+        log.info( "bars: {}", 3 );
+        Assert.assertEquals( 1, messages.size() );
+        Assert.assertEquals( "bars: 3", messages.get( 0 ) );
+    }
+
+    @Test
+    public void testSampled()
+    {
+        logger.setLevel( Level.DEBUG );
+        Log log = Log.getLog( LogTest.class );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            log.debugSampled( "tick {}", i );
+        }
+        // the interval of a second isn't over
+        Assert.assertEquals( 1, messages.size() );
+        Assert.assertEquals( "tick 0", messages.get( 0 ) );
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 Karsten Schulz <lennylinux.ks@googlemail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT
+ * OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.google.code.tickconverter.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class SpscRingBufferTest
+{
+    @Test
+    public void testCapacity()
+    {
+        Assert.assertEquals( 1, new SpscRingBuffer<Integer>( 1, WaitStrategy.SPIN ).getCapacity() );
+        Assert.assertEquals( 8, new SpscRingBuffer<Integer>( 5, WaitStrategy.SPIN ).getCapacity() );
+        Assert.assertEquals( 8, new SpscRingBuffer<Integer>( 8, WaitStrategy.SPIN ).getCapacity() );
+    }
+
+    @Test
+    public void testOfferPoll()
+        throws Exception
+    {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>( 2, WaitStrategy.YIELD );
+        Assert.assertNull( buffer.poll() );
+        Assert.assertTrue( buffer.offer( 1 ) );
+        Assert.assertTrue( buffer.offer( 2 ) );
+        Assert.assertFalse( buffer.offer( 3 ) );
+        Assert.assertFalse( buffer.offer( 3, 1, TimeUnit.MILLISECONDS ) );
+        Assert.assertEquals( 2, buffer.size() );
+        Assert.assertEquals( 0, buffer.remainingCapacity() );
+        Assert.assertEquals( Integer.valueOf( 1 ), buffer.peek() );
+        Assert.assertEquals( Integer.valueOf( 1 ), buffer.poll() );
+        Assert.assertTrue( buffer.offer( 3 ) );
+
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals( 2, buffer.drainTo( drained ) );
+        Assert.assertEquals( 2, drained.get( 0 ).intValue() );
+        Assert.assertEquals( 3, drained.get( 1 ).intValue() );
+        Assert.assertTrue( buffer.isEmpty() );
+        Assert.assertNull( buffer.poll( 1, TimeUnit.MILLISECONDS ) );
+    }
+
+    @Test
+    public void testIterator()
+    {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>( 4, WaitStrategy.SPIN );
+        for ( int i = 1; i <= 4; i++ )
+        {
+            buffer.offer( i );
+        }
+        buffer.poll();
+        // the elements wrap around the end of the slots
+        buffer.offer( 5 );
+
+        Assert.assertTrue( Arrays.equals( new Object[] { 2, 3, 4, 5 }, buffer.toArray() ) );
+        Assert.assertTrue( buffer.contains( 5 ) );
+        Assert.assertFalse( buffer.contains( 1 ) );
+        Assert.assertTrue( buffer.containsAll( Arrays.asList( 2, 4 ) ) );
+        try
+        {
+            buffer.remove( Integer.valueOf( 3 ) );
+            Assert.fail( "don't throw expected exception" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            Assert.assertEquals( 4, buffer.size() );
+        }
+    }
+
+    @Test( timeout = 10000 )
+    public void testProducerConsumer()
+        throws Exception
+    {
+        // busy spinning needs a core for each thread
+        for ( WaitStrategy waitStrategy : new WaitStrategy[] { WaitStrategy.YIELD, WaitStrategy.PARK } )
+        {
+            final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>( 16, waitStrategy );
+            final int count = 100000;
+            Thread producer = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for ( int i = 0; i < count; i++ )
+                        {
+                            buffer.put( i );
+                        }
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            producer.start();
+            for ( int i = 0; i < count; i++ )
+            {
+                Assert.assertEquals( i, buffer.take().intValue() );
+            }
+            producer.join();
+            Assert.assertTrue( buffer.isEmpty() );
+        }
+    }
+}